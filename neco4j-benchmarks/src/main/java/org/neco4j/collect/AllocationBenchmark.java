@@ -0,0 +1,396 @@
+package org.neco4j.collect;
+
+import org.neco4j.collect.deque.Deque;
+import org.neco4j.collect.indexed.Array;
+import org.neco4j.collect.indexed.List;
+import org.neco4j.collect.map.HashMap;
+import org.neco4j.collect.map.IntHashMap;
+import org.neco4j.collect.multiset.MultiSet;
+import org.neco4j.collect.set.HashSet;
+import org.neco4j.collect.set.IntSet;
+import org.neco4j.collect.unitkey.Queue;
+import org.neco4j.collect.unitkey.Stack;
+import org.neco4j.tuple.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.PrimitiveIterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the allocations of the Coll operations for collections with {@link #SIZE} elements.
+ *
+ * The interesting numbers are the bytes per operation reported by the GC profiler, run this class via
+ * {@link AllocationCheck} to compare them with the recorded baseline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Thread)
+public class AllocationBenchmark {
+
+    public static final int SIZE = 1000;
+
+    private int[] _present;
+    private int[] _absent;
+    // boxed in advance, for the operations which are supposed to allocate nothing
+    private Integer[] _presentBoxed;
+    private Integer[] _absentBoxed;
+    private int[] _indexes;
+    private int _index;
+
+    private HashMap<Integer, Integer> _hashMap;
+    private IntHashMap<Integer> _intHashMap;
+    private HashSet<Integer> _hashSet;
+    private IntSet _intSet;
+    private MultiSet<Integer> _multiSet;
+    private List<Integer> _list;
+    private Array<Integer> _array;
+    private Stack<Integer> _stack;
+    private Queue<Integer> _queue;
+    private Deque<Integer> _deque;
+
+    @Setup
+    public void setup() {
+        int[] keys = BenchmarkData.keys(SIZE);
+        _present = BenchmarkData.shuffled(keys);
+        _absent = BenchmarkData.keys(SIZE, SIZE);
+        _indexes = BenchmarkData.indexes(SIZE, SIZE);
+        _presentBoxed = new Integer[SIZE];
+        _absentBoxed = new Integer[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            _presentBoxed[i] = _present[i];
+            _absentBoxed[i] = _absent[i];
+        }
+
+        HashMap<Integer, Integer> hashMap = HashMap.empty();
+        IntHashMap<Integer> intHashMap = IntHashMap.empty();
+        HashSet<Integer> hashSet = HashSet.empty();
+        IntSet intSet = IntSet.empty();
+        MultiSet<Integer> multiSet = MultiSet.empty();
+        Integer[] boxed = new Integer[SIZE];
+        Stack<Integer> stack = Stack.empty();
+        Queue<Integer> queue = Queue.empty();
+        Deque<Integer> deque = Deque.empty();
+        for (int i = 0; i < SIZE; i++) {
+            int key = keys[i];
+            hashMap = hashMap.put(key, key);
+            intHashMap = intHashMap.put(key, _presentBoxed[0]);
+            hashSet = hashSet.put(key);
+            intSet = intSet.put(key);
+            multiSet = multiSet.put(key, 1 + (key & 7));
+            boxed[i] = key;
+            stack = stack.add(key);
+            queue = queue.add(key);
+            deque = i % 2 == 0 ? deque.addFirst(key) : deque.addLast(key);
+        }
+        _hashMap = hashMap;
+        _intHashMap = intHashMap;
+        _hashSet = hashSet;
+        _intSet = intSet;
+        _multiSet = multiSet;
+        _list = List.of(boxed);
+        _array = Array.of(boxed);
+        _stack = stack;
+        _queue = queue.removeIfPossible().add(42);
+        _deque = deque;
+    }
+
+    private int next() {
+        int index = _index;
+        _index = index + 1 == SIZE ? 0 : index + 1;
+        return index;
+    }
+
+    @Benchmark
+    public Object hashMapGetOpt() {
+        return _hashMap.getOpt(_present[next()]);
+    }
+
+    @Benchmark
+    public Object hashMapGetOrElse() {
+        return _hashMap.getOrElse(_presentBoxed[next()], 0);
+    }
+
+    @Benchmark
+    public Object hashMapGetOrElseMissing() {
+        return _hashMap.getOrElse(_absentBoxed[next()], 0);
+    }
+
+    @Benchmark
+    public boolean hashMapContainsKey() {
+        return _hashMap.containsKey(_presentBoxed[next()]);
+    }
+
+    @Benchmark
+    public Object hashMapPutOpt() {
+        int key = _present[next()];
+        return _hashMap.putOpt(key, -key);
+    }
+
+    @Benchmark
+    public Object hashMapAddOpt() {
+        int key = _absent[next()];
+        return _hashMap.addOpt(key, key);
+    }
+
+    @Benchmark
+    public Object hashMapRemoveOpt() {
+        return _hashMap.removeOpt(_present[next()]);
+    }
+
+    @Benchmark
+    public void hashMapIterate(Blackhole bh) {
+        for (Pair<Integer, Integer> pair : _hashMap.asKeyValuePairs()) {
+            bh.consume(pair);
+        }
+    }
+
+    @Benchmark
+    public Object intHashMapGetOrElse() {
+        return _intHashMap.getOrElse(_present[next()], null);
+    }
+
+    @Benchmark
+    public boolean intHashMapContainsKey() {
+        return _intHashMap.containsKey(_absent[next()]);
+    }
+
+    @Benchmark
+    public Object intHashMapAddOpt() {
+        return _intHashMap.addOpt(_absent[next()], _presentBoxed[0]);
+    }
+
+    @Benchmark
+    public Object intHashMapRemoveOpt() {
+        return _intHashMap.removeOpt(_present[next()]);
+    }
+
+    @Benchmark
+    public boolean intSetContains() {
+        return _intSet.contains(_absent[next()]);
+    }
+
+    @Benchmark
+    public Object intSetAddOpt() {
+        return _intSet.addOpt(_absent[next()]);
+    }
+
+    @Benchmark
+    public Object intSetRemoveOpt() {
+        return _intSet.removeOpt(_present[next()]);
+    }
+
+    @Benchmark
+    public void intSetIterate(Blackhole bh) {
+        PrimitiveIterator.OfInt iterator = _intSet.iterator();
+        while (iterator.hasNext()) {
+            bh.consume(iterator.nextInt());
+        }
+    }
+
+    @Benchmark
+    public Object hashSetGetOpt() {
+        return _hashSet.getOpt(_present[next()]);
+    }
+
+    @Benchmark
+    public Object hashSetPutOpt() {
+        return _hashSet.putOpt(_present[next()]);
+    }
+
+    @Benchmark
+    public Object hashSetAddOpt() {
+        return _hashSet.addOpt(_absent[next()]);
+    }
+
+    @Benchmark
+    public Object hashSetRemoveOpt() {
+        return _hashSet.removeOpt(_present[next()]);
+    }
+
+    @Benchmark
+    public void hashSetIterate(Blackhole bh) {
+        for (Integer key : _hashSet) {
+            bh.consume(key);
+        }
+    }
+
+    @Benchmark
+    public void hashSetForEach(Blackhole bh) {
+        _hashSet.forEach(bh::consume);
+    }
+
+    @Benchmark
+    public Object multiSetGetOpt() {
+        return _multiSet.getOpt(_present[next()]);
+    }
+
+    @Benchmark
+    public Object multiSetPutOpt() {
+        return _multiSet.putOpt(_present[next()], 42);
+    }
+
+    @Benchmark
+    public Object multiSetAddOpt() {
+        return _multiSet.addOpt(_present[next()], 1);
+    }
+
+    @Benchmark
+    public Object multiSetRemoveOpt() {
+        return _multiSet.removeOpt(_present[next()]);
+    }
+
+    @Benchmark
+    public void multiSetIterate(Blackhole bh) {
+        for (Pair<Integer, Integer> pair : _multiSet.asKeyValuePairs()) {
+            bh.consume(pair);
+        }
+    }
+
+    @Benchmark
+    public Object listGetOpt() {
+        return _list.getOpt(_indexes[next()]);
+    }
+
+    @Benchmark
+    public Object listPutOpt() {
+        return _list.putOpt(_indexes[next()], 42);
+    }
+
+    @Benchmark
+    public Object listAddOpt() {
+        return _list.addOpt(_indexes[next()], 42);
+    }
+
+    @Benchmark
+    public Object listRemoveOpt() {
+        return _list.removeOpt(_indexes[next()]);
+    }
+
+    @Benchmark
+    public void listIterate(Blackhole bh) {
+        for (Integer value : _list) {
+            bh.consume(value);
+        }
+    }
+
+    @Benchmark
+    public Object arrayGetOpt() {
+        return _array.getOpt(_indexes[next()]);
+    }
+
+    @Benchmark
+    public Object arrayPutOpt() {
+        return _array.putOpt(_indexes[next()], 42);
+    }
+
+    @Benchmark
+    public Object arrayAddOpt() {
+        return _array.addOpt(_indexes[next()], 42);
+    }
+
+    @Benchmark
+    public Object arrayRemoveOpt() {
+        return _array.removeOpt(_indexes[next()]);
+    }
+
+    @Benchmark
+    public void arrayIterate(Blackhole bh) {
+        for (Integer value : _array) {
+            bh.consume(value);
+        }
+    }
+
+    @Benchmark
+    public Object stackGetOpt() {
+        return _stack.getOpt();
+    }
+
+    @Benchmark
+    public Object stackPutOpt() {
+        return _stack.putOpt(42);
+    }
+
+    @Benchmark
+    public Object stackAddOpt() {
+        return _stack.addOpt(42);
+    }
+
+    @Benchmark
+    public Object stackRemoveOpt() {
+        return _stack.removeOpt();
+    }
+
+    @Benchmark
+    public void stackIterate(Blackhole bh) {
+        for (Integer value : _stack) {
+            bh.consume(value);
+        }
+    }
+
+    @Benchmark
+    public Object queueGetOpt() {
+        return _queue.getOpt();
+    }
+
+    @Benchmark
+    public Object queuePutOpt() {
+        return _queue.putOpt(42);
+    }
+
+    @Benchmark
+    public Object queueAddOpt() {
+        return _queue.addOpt(42);
+    }
+
+    @Benchmark
+    public Object queueRemoveOpt() {
+        return _queue.removeOpt();
+    }
+
+    @Benchmark
+    public void queueIterate(Blackhole bh) {
+        for (Integer value : _queue) {
+            bh.consume(value);
+        }
+    }
+
+    @Benchmark
+    public Object dequeGetOpt() {
+        return _deque.getFirstOpt();
+    }
+
+    @Benchmark
+    public Object dequePutOpt() {
+        return _deque.putFirstOpt(42);
+    }
+
+    @Benchmark
+    public Object dequeAddOpt() {
+        return _deque.addFirstOpt(42);
+    }
+
+    @Benchmark
+    public Object dequeRemoveOpt() {
+        return _deque.removeFirstOpt();
+    }
+
+    @Benchmark
+    public void dequeIterate(Blackhole bh) {
+        for (Integer value : _deque) {
+            bh.consume(value);
+        }
+    }
+}
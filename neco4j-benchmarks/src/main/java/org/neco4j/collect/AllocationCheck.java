@@ -0,0 +1,130 @@
+package org.neco4j.collect;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * Runs the {@link AllocationBenchmark} with the GC profiler, and compares the allocated bytes per operation with
+ * a baseline file. Exits with status 1 if an operation allocates more than recorded in the baseline.
+ *
+ * Usage: {@code AllocationCheck <baseline-file> [--update]}, where {@code --update} rewrites the baseline file
+ * with the measured values instead of checking them.
+ */
+public final class AllocationCheck {
+
+    private static final String BYTES_PER_OP = "gc.alloc.rate.norm";
+
+    /**
+     * Allowed relative increase, to compensate measurement noise.
+     */
+    private static final double TOLERANCE = 0.05;
+
+    /**
+     * Allowed absolute increase in bytes, as tiny values (e.g. a single Opt) can't be measured with 5% accuracy.
+     */
+    private static final double SLACK = 16.0;
+
+    /**
+     * Measured bytes per operation which still count as allocation free.
+     */
+    private static final double ZERO_NOISE = 1.0;
+
+    private AllocationCheck() {
+    }
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        if (args.length < 1) {
+            System.err.println("Usage: AllocationCheck <baseline-file> [--update]");
+            System.exit(2);
+        }
+        Path baselineFile = Paths.get(args[0]);
+        boolean update = args.length > 1 && args[1].equals("--update");
+
+        Map<String, Double> measured = measure();
+        if (update) {
+            writeBaseline(baselineFile, measured);
+            System.out.println("Wrote allocation baseline to " + baselineFile);
+            return;
+        }
+
+        Properties baseline = readBaseline(baselineFile);
+        int regressions = 0;
+        System.out.println();
+        System.out.println(String.format("%-24s %14s %14s", "Benchmark", "Baseline B/op", "Measured B/op"));
+        for (Map.Entry<String, Double> entry : measured.entrySet()) {
+            String expected = baseline.getProperty(entry.getKey());
+            double bytes = entry.getValue();
+            String verdict = "";
+            if (expected == null) {
+                verdict = "  (no baseline)";
+            } else if (bytes > allowed(Double.parseDouble(expected))) {
+                verdict = "  REGRESSION";
+                regressions++;
+            }
+            System.out.println(String.format("%-24s %14s %14.1f%s",
+                entry.getKey(), expected == null ? "-" : expected, bytes, verdict));
+        }
+        if (regressions > 0) {
+            System.err.println(regressions + " operation(s) allocate more than recorded in " + baselineFile);
+            System.exit(1);
+        }
+    }
+
+    private static double allowed(double expected) {
+        // operations without allocations must stay that way, and not even allocate a single object
+        return expected == 0.0
+                   ? ZERO_NOISE
+                   : expected * (1 + TOLERANCE) + SLACK;
+    }
+
+    private static Map<String, Double> measure() throws RunnerException {
+        Options options = new OptionsBuilder()
+                              .include(AllocationBenchmark.class.getName())
+                              .addProfiler(GCProfiler.class)
+                              .build();
+        Map<String, Double> result = new TreeMap<>();
+        for (RunResult runResult : new Runner(options).run()) {
+            String benchmark = runResult.getParams().getBenchmark();
+            Result<?> bytesPerOp = runResult.getSecondaryResults().get(BYTES_PER_OP);
+            if (bytesPerOp != null) {
+                result.put(benchmark.substring(benchmark.lastIndexOf('.') + 1), bytesPerOp.getScore());
+            }
+        }
+        return result;
+    }
+
+    private static Properties readBaseline(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return properties;
+    }
+
+    private static void writeBaseline(Path file, Map<String, Double> measured) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("# bytes per operation of AllocationBenchmark, as measured by the JMH GC profiler\n");
+            writer.write("# regenerate with: java -cp target/benchmarks.jar org.neco4j.collect.AllocationCheck "
+                             + "allocation-baseline.properties --update\n");
+            for (Map.Entry<String, Double> entry : measured.entrySet()) {
+                writer.write(entry.getKey() + "=" + Math.round(entry.getValue()) + "\n");
+            }
+        }
+    }
+}
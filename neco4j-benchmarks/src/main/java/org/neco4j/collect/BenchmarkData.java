@@ -0,0 +1,98 @@
+package org.neco4j.collect;
+
+import java.util.Random;
+
+/**
+ * Deterministic key material for the benchmarks.
+ *
+ * Keys are produced by a bijective scrambling of their index, so they are distinct, spread over the whole int
+ * range, and keys which are not stored in a collection can be produced by just continuing the sequence.
+ */
+public final class BenchmarkData {
+
+    public static final long SEED = 0x5EED_CAFEL;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Returns the i-th key of the sequence. Different indexes always yield different keys.
+     * @param i the index
+     * @return the key
+     */
+    public static int key(int i) {
+        return i * 0x9E3779B9;
+    }
+
+    /**
+     * Returns the keys with index 0 until n, in insertion order.
+     * @param n the number of keys
+     * @return the keys
+     */
+    public static int[] keys(int n) {
+        return keys(0, n);
+    }
+
+    /**
+     * Returns the keys with index from until from + n, in insertion order.
+     * @param from the index of the first key
+     * @param n the number of keys
+     * @return the keys
+     */
+    public static int[] keys(int from, int n) {
+        int[] result = new int[n];
+        for (int i = 0; i < n; i++) {
+            result[i] = key(from + i);
+        }
+        return result;
+    }
+
+    /**
+     * Returns a random permutation of the given keys, so that lookups don't follow the insertion order.
+     * @param keys the keys
+     * @return a shuffled copy of the keys
+     */
+    public static int[] shuffled(int[] keys) {
+        int[] result = keys.clone();
+        Random random = new Random(SEED);
+        for (int i = result.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = result[i];
+            result[i] = result[j];
+            result[j] = tmp;
+        }
+        return result;
+    }
+
+    /**
+     * Returns a random permutation of the given keys, so that lookups don't follow the insertion order.
+     * @param keys the keys
+     * @return a shuffled copy of the keys
+     */
+    public static Object[] shuffled(Object[] keys) {
+        Object[] result = keys.clone();
+        Random random = new Random(SEED);
+        for (int i = result.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            Object tmp = result[i];
+            result[i] = result[j];
+            result[j] = tmp;
+        }
+        return result;
+    }
+
+    /**
+     * Returns a random sequence of valid indexes for a collection of the given size.
+     * @param size the collection size
+     * @param n the number of indexes
+     * @return the indexes
+     */
+    public static int[] indexes(int size, int n) {
+        int[] result = new int[n];
+        Random random = new Random(SEED);
+        for (int i = 0; i < n; i++) {
+            result[i] = random.nextInt(size);
+        }
+        return result;
+    }
+}
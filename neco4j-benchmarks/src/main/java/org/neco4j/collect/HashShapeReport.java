@@ -0,0 +1,144 @@
+package org.neco4j.collect;
+
+import org.neco4j.collect.map.HashMap;
+import org.neco4j.collect.map.HashMapShapeBenchmark;
+import org.neco4j.collect.multiset.MultiSet;
+import org.neco4j.collect.multiset.MultiSetShapeBenchmark;
+import org.neco4j.collect.set.HashSet;
+import org.neco4j.collect.set.HashSetShapeBenchmark;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stress test for the hash based collections: builds them from keys of every {@link KeyShape} with growing sizes,
+ * and reports the depth of the resulting trees together with build and lookup times.
+ *
+ * The times are simple wall clock measurements meant to show the asymptotic behavior, use the *ShapeBenchmark
+ * classes for exact numbers. Once building a collection takes longer than the time budget, larger sizes of the
+ * same shape are skipped. A {@link StackOverflowError} is reported instead of a depth.
+ *
+ * Usage: {@code HashShapeReport [maxSize] [budgetSeconds]}
+ */
+public final class HashShapeReport {
+
+    private enum Structure {
+        HASH_MAP {
+            @Override
+            Object build(Object[] keys) {
+                HashMap<Object, Object> map = HashMap.empty();
+                for (Object key : keys) {
+                    map = map.put(key, key);
+                }
+                return map;
+            }
+
+            @Override
+            int depth(Object coll) {
+                return HashMapShapeBenchmark.depth((HashMap<?, ?>) coll);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            boolean contains(Object coll, Object key) {
+                return ((HashMap<Object, Object>) coll).containsKey(key);
+            }
+        },
+        HASH_SET {
+            @Override
+            Object build(Object[] keys) {
+                HashSet<Object> set = HashSet.empty();
+                for (Object key : keys) {
+                    set = set.put(key);
+                }
+                return set;
+            }
+
+            @Override
+            int depth(Object coll) {
+                return HashSetShapeBenchmark.depth((HashSet<?>) coll);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            boolean contains(Object coll, Object key) {
+                return ((HashSet<Object>) coll).contains(key);
+            }
+        },
+        MULTI_SET {
+            @Override
+            Object build(Object[] keys) {
+                MultiSet<Object> multiSet = MultiSet.empty();
+                for (Object key : keys) {
+                    multiSet = multiSet.add(key);
+                }
+                return multiSet;
+            }
+
+            @Override
+            int depth(Object coll) {
+                return MultiSetShapeBenchmark.depth((MultiSet<?>) coll);
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            boolean contains(Object coll, Object key) {
+                return ((MultiSet<Object>) coll).containsKey(key);
+            }
+        };
+
+        abstract Object build(Object[] keys);
+
+        abstract int depth(Object coll);
+
+        abstract boolean contains(Object coll, Object key);
+    }
+
+    private HashShapeReport() {
+    }
+
+    public static void main(String[] args) {
+        int maxSize = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        long budget = TimeUnit.SECONDS.toNanos(args.length > 1 ? Long.parseLong(args[1]) : 10);
+
+        System.out.println(String.format("%-10s %-11s %9s %9s %14s %14s",
+            "Structure", "Shape", "Size", "Depth", "Build ns/key", "Lookup ns/key"));
+        for (Structure structure : Structure.values()) {
+            for (KeyShape shape : KeyShape.values()) {
+                boolean skip = false;
+                for (int size = 1000; size <= maxSize; size *= 10) {
+                    if (skip) {
+                        print(structure, shape, size, "skipped", "", "");
+                        continue;
+                    }
+                    Object[] keys = shape.keys(size);
+                    long start = System.nanoTime();
+                    Object coll;
+                    try {
+                        coll = structure.build(keys);
+                    } catch (StackOverflowError ex) {
+                        print(structure, shape, size, "overflow", "", "");
+                        skip = true;
+                        continue;
+                    }
+                    long buildTime = System.nanoTime() - start;
+                    skip = buildTime > budget;
+
+                    Object[] lookups = BenchmarkData.shuffled(keys);
+                    start = System.nanoTime();
+                    for (Object key : lookups) {
+                        if (!structure.contains(coll, key)) {
+                            throw new AssertionError("missing key " + key);
+                        }
+                    }
+                    long lookupTime = System.nanoTime() - start;
+                    print(structure, shape, size, String.valueOf(structure.depth(coll)),
+                        String.valueOf(buildTime / size), String.valueOf(lookupTime / size));
+                }
+            }
+        }
+    }
+
+    private static void print(Structure structure, KeyShape shape, int size, String depth, String build, String lookup) {
+        System.out.println(String.format("%-10s %-11s %9d %9s %14s %14s", structure, shape, size, depth, build, lookup));
+    }
+}
@@ -0,0 +1,84 @@
+package org.neco4j.collect;
+
+import java.util.Random;
+
+/**
+ * Distributions of key hash codes, from benign to adversarial.
+ */
+public enum KeyShape {
+
+    /**
+     * Integers 0, 1, 2... which have increasing hash codes in insertion order.
+     */
+    SEQUENTIAL {
+        @Override
+        public Object[] keys(int n) {
+            Object[] result = new Object[n];
+            for (int i = 0; i < n; i++) {
+                result[i] = i;
+            }
+            return result;
+        }
+    },
+
+    /**
+     * Distinct strings which all have the same hash code, built from the blocks "Aa" and "BB".
+     */
+    COLLIDING {
+        @Override
+        public Object[] keys(int n) {
+            int blocks = Math.max(1, 32 - Integer.numberOfLeadingZeros(n - 1));
+            Object[] result = new Object[n];
+            for (int i = 0; i < n; i++) {
+                StringBuilder sb = new StringBuilder(2 * blocks);
+                for (int b = blocks - 1; b >= 0; b--) {
+                    sb.append((i >>> b & 1) == 0 ? "Aa" : "BB");
+                }
+                result[i] = sb.toString();
+            }
+            return result;
+        }
+    },
+
+    /**
+     * Integers with uniformly distributed hash codes.
+     */
+    RANDOM {
+        @Override
+        public Object[] keys(int n) {
+            Object[] result = new Object[n];
+            for (int i = 0; i < n; i++) {
+                result[i] = BenchmarkData.key(i);
+            }
+            return result;
+        }
+    },
+
+    /**
+     * Integers forming a few dense clusters, with sequential hash codes inside each cluster, inserted round robin.
+     */
+    CLUSTERED {
+        @Override
+        public Object[] keys(int n) {
+            int[] clusterStarts = new int[CLUSTERS];
+            Random random = new Random(BenchmarkData.SEED);
+            for (int c = 0; c < CLUSTERS; c++) {
+                clusterStarts[c] = random.nextInt() & ~0xFFFFF;
+            }
+            Object[] result = new Object[n];
+            for (int i = 0; i < n; i++) {
+                result[i] = clusterStarts[i % CLUSTERS] + i / CLUSTERS;
+            }
+            return result;
+        }
+    };
+
+    private static final int CLUSTERS = 8;
+
+    /**
+     * Returns n distinct keys of this shape, in insertion order.
+     * @param n the number of keys
+     * @return the keys
+     */
+    public abstract Object[] keys(int n);
+}
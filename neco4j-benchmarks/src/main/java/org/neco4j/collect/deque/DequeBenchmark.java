@@ -0,0 +1,89 @@
+package org.neco4j.collect.deque;
+
+import org.neco4j.collect.BenchmarkData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+@State(Scope.Thread)
+public class DequeBenchmark {
+
+    @Param({"10", "1000", "100000", "10000000"})
+    public int size;
+
+    private Deque<Integer> _deque;
+
+    @Setup
+    public void setup() {
+        Deque<Integer> deque = Deque.empty();
+        int[] keys = BenchmarkData.keys(size);
+        // fill both ends, so that neither side has to be rebuilt from the other one
+        for (int i = 0; i < keys.length; i++) {
+            deque = i % 2 == 0 ? deque.addFirst(keys[i]) : deque.addLast(keys[i]);
+        }
+        _deque = deque;
+    }
+
+    @Benchmark
+    public Object getFirst() {
+        return _deque.getFirstOpt();
+    }
+
+    @Benchmark
+    public Object getLast() {
+        return _deque.getLastOpt();
+    }
+
+    @Benchmark
+    public Object putFirst() {
+        return _deque.putFirstOpt(42);
+    }
+
+    @Benchmark
+    public Object putLast() {
+        return _deque.putLastOpt(42);
+    }
+
+    @Benchmark
+    public Object addFirst() {
+        return _deque.addFirst(42);
+    }
+
+    @Benchmark
+    public Object addLast() {
+        return _deque.addLast(42);
+    }
+
+    @Benchmark
+    public Object removeFirst() {
+        return _deque.removeFirstOpt();
+    }
+
+    @Benchmark
+    public Object removeLast() {
+        return _deque.removeLastOpt();
+    }
+
+    @Benchmark
+    public void iterate(Blackhole bh) {
+        for (Integer value : _deque) {
+            bh.consume(value);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package org.neco4j.collect.indexed;
+
+import org.neco4j.collect.BenchmarkData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+@State(Scope.Thread)
+public class ArrayBenchmark {
+
+    private static final int PROBES = 1 << 16;
+
+    @Param({"10", "1000", "100000", "10000000"})
+    public int size;
+
+    private Array<Integer> _ints;
+    private Array<Integer> _boxed;
+    private int[] _indexes;
+    private int _index;
+
+    @Setup
+    public void setup() {
+        int[] ints = BenchmarkData.keys(size);
+        Integer[] boxed = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            boxed[i] = ints[i];
+        }
+        _ints = Array.ints(ints);
+        _boxed = Array.of(boxed);
+        _indexes = BenchmarkData.indexes(size, Math.min(size, PROBES));
+    }
+
+    private int nextIndex() {
+        int index = _index;
+        _index = index + 1 == _indexes.length ? 0 : index + 1;
+        return _indexes[index];
+    }
+
+    @Benchmark
+    public Object get() {
+        return _ints.getOpt(nextIndex());
+    }
+
+    @Benchmark
+    public Object getBoxed() {
+        return _boxed.getOpt(nextIndex());
+    }
+
+    @Benchmark
+    public Object put() {
+        return _ints.putOpt(nextIndex(), 42);
+    }
+
+    @Benchmark
+    public Object putBoxed() {
+        return _boxed.putOpt(nextIndex(), 42);
+    }
+
+    @Benchmark
+    public Object add() {
+        return _ints.addOpt(nextIndex(), 42);
+    }
+
+    @Benchmark
+    public Object remove() {
+        return _ints.removeOpt(nextIndex());
+    }
+
+    @Benchmark
+    public void iterate(Blackhole bh) {
+        for (Integer value : _ints) {
+            bh.consume(value);
+        }
+    }
+
+    @Benchmark
+    public void iterateBoxed(Blackhole bh) {
+        for (Integer value : _boxed) {
+            bh.consume(value);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.neco4j.collect.map;
+
+import org.neco4j.collect.BenchmarkData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares bulk loading a HashMap by chained put calls with loading it through a {@link HashMap.Transient}.
+ * Run with {@code -prof gc} to see the garbage produced by both.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+@State(Scope.Thread)
+public class HashMapBuildBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private Integer[] _keys;
+
+    @Setup
+    public void setup() {
+        int[] keys = BenchmarkData.keys(size);
+        _keys = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            _keys[i] = keys[i];
+        }
+    }
+
+    @Benchmark
+    public Object persistentPut() {
+        HashMap<Integer, Integer> map = HashMap.empty();
+        for (Integer key : _keys) {
+            map = map.put(key, key);
+        }
+        return map;
+    }
+
+    @Benchmark
+    public Object transientPut() {
+        HashMap.Transient<Integer, Integer> builder = HashMap.transientBuilder();
+        for (Integer key : _keys) {
+            builder.put(key, key);
+        }
+        return builder.persistent();
+    }
+}
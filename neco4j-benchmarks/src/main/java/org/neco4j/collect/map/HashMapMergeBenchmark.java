@@ -0,0 +1,81 @@
+package org.neco4j.collect.map;
+
+import org.neco4j.collect.BenchmarkData;
+import org.neco4j.tuple.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares merging two HashMaps node by node with putting the entries of one map into the other. The second map
+ * is either derived from the first one by a few updates, so both share most of their structure, or built
+ * independently from half overlapping keys.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+@State(Scope.Thread)
+public class HashMapMergeBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"true", "false"})
+    public boolean shared;
+
+    private HashMap<Integer, Integer> _left;
+    private HashMap<Integer, Integer> _right;
+
+    @Setup
+    public void setup() {
+        HashMap.Transient<Integer, Integer> left = HashMap.transientBuilder();
+        for (int key : BenchmarkData.keys(size)) {
+            left.put(key, key);
+        }
+        _left = left.persistent();
+        if (shared) {
+            HashMap.Transient<Integer, Integer> right = _left.asTransient();
+            for (int key : BenchmarkData.keys(size, Math.max(1, size / 100))) {
+                right.put(key, key);
+            }
+            _right = right.persistent();
+        } else {
+            HashMap.Transient<Integer, Integer> right = HashMap.transientBuilder();
+            for (int key : BenchmarkData.keys(size / 2, size)) {
+                right.put(key, key);
+            }
+            _right = right.persistent();
+        }
+    }
+
+    @Benchmark
+    public Object mergeStructural() {
+        return _left.merge(_right, Integer::max);
+    }
+
+    @Benchmark
+    public Object mergeByPut() {
+        HashMap<Integer, Integer> result = _left;
+        for (Pair<Integer, Integer> pair : _right.asKeyValuePairs()) {
+            result = result.merge(pair.get1(), pair.get2(), Integer::max);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public Object removeKeys() {
+        return _left.removeKeys(_right);
+    }
+}
@@ -0,0 +1,81 @@
+package org.neco4j.collect.map;
+
+import org.neco4j.collect.BenchmarkData;
+import org.neco4j.collect.KeyShape;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup and update costs of HashMap depending on the distribution of the key hash codes.
+ * See {@link org.neco4j.collect.HashShapeReport} for the resulting tree depths.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xss16m"})
+@State(Scope.Thread)
+public class HashMapShapeBenchmark {
+
+    @Param({"SEQUENTIAL", "COLLIDING", "RANDOM", "CLUSTERED"})
+    public KeyShape shape;
+
+    @Param({"100", "1000", "10000"})
+    public int size;
+
+    private HashMap<Object, Object> _map;
+    private Object[] _keys;
+    private int _index;
+
+    @Setup
+    public void setup() {
+        Object[] keys = shape.keys(size);
+        HashMap<Object, Object> map = HashMap.empty();
+        for (Object key : keys) {
+            map = map.put(key, key);
+        }
+        _map = map;
+        _keys = BenchmarkData.shuffled(keys);
+    }
+
+    private Object nextKey() {
+        int index = _index;
+        _index = index + 1 == _keys.length ? 0 : index + 1;
+        return _keys[index];
+    }
+
+    @Benchmark
+    public Object get() {
+        return _map.getOpt(nextKey());
+    }
+
+    @Benchmark
+    public Object put() {
+        return _map.put(nextKey(), Boolean.TRUE);
+    }
+
+    @Benchmark
+    public Object remove() {
+        return _map.removeOpt(nextKey());
+    }
+
+    /**
+     * Gives access to the package private tree depth of a HashMap.
+     * @param map the map
+     * @return the depth of its tree
+     */
+    public static int depth(HashMap<?, ?> map) {
+        return map.depth();
+    }
+}
@@ -0,0 +1,109 @@
+package org.neco4j.collect.map;
+
+import org.neco4j.collect.BenchmarkData;
+import org.neco4j.tuple.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the B-tree map with the AVL based TreeMap and the HashMap, for point lookups and for scans of
+ * {@link #RANGE} consecutive keys. The keys are the integers from 0 until size, so the HashMap can answer a range
+ * by looking up every key in it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+@State(Scope.Thread)
+public class OrderedMapBenchmark {
+
+    public static final int RANGE = 100;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    private HashMap<Integer, Integer> _hashMap;
+    private TreeMap<Integer, Integer> _treeMap;
+    private BTreeMap<Integer, Integer> _bTreeMap;
+    private int[] _lookups;
+    private int _index;
+
+    @Setup
+    public void setup() {
+        int[] keys = new int[size];
+        for (int i = 0; i < size; i++) {
+            keys[i] = i;
+        }
+        keys = BenchmarkData.shuffled(keys);
+        HashMap.Transient<Integer, Integer> hashMap = HashMap.transientBuilder();
+        TreeMap<Integer, Integer> treeMap = TreeMap.empty();
+        BTreeMap<Integer, Integer> bTreeMap = BTreeMap.empty();
+        for (int key : keys) {
+            hashMap.put(key, key);
+            treeMap = treeMap.put(key, key);
+            bTreeMap = bTreeMap.put(key, key);
+        }
+        _hashMap = hashMap.persistent();
+        _treeMap = treeMap;
+        _bTreeMap = bTreeMap;
+        _lookups = keys;
+    }
+
+    private int next() {
+        int index = _index;
+        _index = index + 1 == size ? 0 : index + 1;
+        return _lookups[index];
+    }
+
+    @Benchmark
+    public Object hashMapGet() {
+        return _hashMap.getOrElse(next(), 0);
+    }
+
+    @Benchmark
+    public Object treeMapGet() {
+        return _treeMap.getOrElse(next(), 0);
+    }
+
+    @Benchmark
+    public Object bTreeMapGet() {
+        return _bTreeMap.getOrElse(next(), 0);
+    }
+
+    @Benchmark
+    public void hashMapRange(Blackhole bh) {
+        int from = next();
+        for (int key = from; key < from + RANGE; key++) {
+            bh.consume(_hashMap.getOrElse(key, 0));
+        }
+    }
+
+    @Benchmark
+    public void treeMapRange(Blackhole bh) {
+        int from = next();
+        for (Pair<Integer, Integer> pair : _treeMap.subMap(from, from + RANGE)) {
+            bh.consume(pair);
+        }
+    }
+
+    @Benchmark
+    public void bTreeMapRange(Blackhole bh) {
+        int from = next();
+        for (Pair<Integer, Integer> pair : _bTreeMap.range(from, from + RANGE)) {
+            bh.consume(pair);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package org.neco4j.collect.multiset;
+
+import org.neco4j.collect.BenchmarkData;
+import org.neco4j.tuple.Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+@State(Scope.Thread)
+public class MultiSetBenchmark {
+
+    private static final int PROBES = 1 << 16;
+
+    @Param({"10", "1000", "100000", "10000000"})
+    public int size;
+
+    private MultiSet<Integer> _multiSet;
+    private int[] _present;
+    private int[] _absent;
+    private int _index;
+
+    @Setup
+    public void setup() {
+        int[] keys = BenchmarkData.keys(size);
+        MultiSet<Integer> multiSet = MultiSet.empty();
+        for (int key : keys) {
+            multiSet = multiSet.put(key, 1 + (key & 7));
+        }
+        _multiSet = multiSet;
+        _present = BenchmarkData.shuffled(BenchmarkData.keys(Math.min(size, PROBES)));
+        _absent = BenchmarkData.keys(size, Math.min(size, PROBES));
+    }
+
+    private int nextIndex() {
+        int index = _index;
+        _index = index + 1 == _present.length ? 0 : index + 1;
+        return index;
+    }
+
+    @Benchmark
+    public int get() {
+        return _multiSet.get(_present[nextIndex()]);
+    }
+
+    @Benchmark
+    public int getMissing() {
+        return _multiSet.get(_absent[nextIndex()]);
+    }
+
+    @Benchmark
+    public Object put() {
+        return _multiSet.put(_present[nextIndex()], 42);
+    }
+
+    @Benchmark
+    public Object add() {
+        return _multiSet.addOpt(_present[nextIndex()], 1);
+    }
+
+    @Benchmark
+    public Object addNew() {
+        return _multiSet.addOpt(_absent[nextIndex()], 1);
+    }
+
+    @Benchmark
+    public Object remove() {
+        return _multiSet.removeOpt(_present[nextIndex()]);
+    }
+
+    @Benchmark
+    public void iterate(Blackhole bh) {
+        for (Pair<Integer, Integer> pair : _multiSet.asKeyValuePairs()) {
+            bh.consume(pair);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package org.neco4j.collect.set;
+
+import org.neco4j.collect.BenchmarkData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the structural set operations of HashSet with looping over one set and putting the elements one at a
+ * time. The second set is either derived from the first one by a few updates, so both share most of their
+ * structure, or built independently from half overlapping elements.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+@State(Scope.Thread)
+public class HashSetAlgebraBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"true", "false"})
+    public boolean shared;
+
+    private HashSet<Integer> _left;
+    private HashSet<Integer> _right;
+
+    @Setup
+    public void setup() {
+        _left = HashSet.from(() -> Arrays.stream(BenchmarkData.keys(size)).iterator());
+        if (shared) {
+            HashSet<Integer> right = _left;
+            for (int key : BenchmarkData.keys(size, Math.max(1, size / 100))) {
+                right = right.put(key);
+            }
+            _right = right;
+        } else {
+            _right = HashSet.from(() -> Arrays.stream(BenchmarkData.keys(size / 2, size)).iterator());
+        }
+    }
+
+    @Benchmark
+    public Object union() {
+        return _left.union(_right);
+    }
+
+    @Benchmark
+    public Object unionByPut() {
+        HashSet<Integer> result = _left;
+        for (Integer key : _right) {
+            result = result.put(key);
+        }
+        return result;
+    }
+
+    @Benchmark
+    public Object intersect() {
+        return _left.intersect(_right);
+    }
+
+    @Benchmark
+    public Object intersectByPut() {
+        HashSet<Integer> result = HashSet.empty();
+        for (Integer key : _right) {
+            if (_left.contains(key)) {
+                result = result.put(key);
+            }
+        }
+        return result;
+    }
+
+    @Benchmark
+    public Object difference() {
+        return _left.difference(_right);
+    }
+
+    @Benchmark
+    public boolean isSubsetOf() {
+        return _left.isSubsetOf(_right);
+    }
+}
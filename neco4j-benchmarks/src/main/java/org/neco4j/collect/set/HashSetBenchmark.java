@@ -0,0 +1,86 @@
+package org.neco4j.collect.set;
+
+import org.neco4j.collect.BenchmarkData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+@State(Scope.Thread)
+public class HashSetBenchmark {
+
+    private static final int PROBES = 1 << 16;
+
+    @Param({"10", "1000", "100000", "10000000"})
+    public int size;
+
+    private HashSet<Integer> _set;
+    private int[] _present;
+    private int[] _absent;
+    private int _index;
+
+    @Setup
+    public void setup() {
+        int[] keys = BenchmarkData.keys(size);
+        HashSet<Integer> set = HashSet.empty();
+        for (int key : keys) {
+            set = set.put(key);
+        }
+        _set = set;
+        _present = BenchmarkData.shuffled(BenchmarkData.keys(Math.min(size, PROBES)));
+        _absent = BenchmarkData.keys(size, Math.min(size, PROBES));
+    }
+
+    private int nextIndex() {
+        int index = _index;
+        _index = index + 1 == _present.length ? 0 : index + 1;
+        return index;
+    }
+
+    @Benchmark
+    public boolean get() {
+        return _set.contains(_present[nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean getMissing() {
+        return _set.contains(_absent[nextIndex()]);
+    }
+
+    @Benchmark
+    public Object put() {
+        return _set.put(_present[nextIndex()]);
+    }
+
+    @Benchmark
+    public Object add() {
+        return _set.addOpt(_absent[nextIndex()]);
+    }
+
+    @Benchmark
+    public Object remove() {
+        return _set.removeOpt(_present[nextIndex()]);
+    }
+
+    @Benchmark
+    public void iterate(Blackhole bh) {
+        for (Integer key : _set) {
+            bh.consume(key);
+        }
+    }
+}
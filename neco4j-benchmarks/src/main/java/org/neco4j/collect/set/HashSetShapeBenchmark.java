@@ -0,0 +1,88 @@
+package org.neco4j.collect.set;
+
+import org.neco4j.collect.BenchmarkData;
+import org.neco4j.collect.KeyShape;
+import org.neco4j.collect.map.HashMap;
+import org.neco4j.collect.map.HashMapShapeBenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookup and update costs of HashSet depending on the distribution of the key hash codes.
+ * See {@link org.neco4j.collect.HashShapeReport} for the resulting tree depths.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xss16m"})
+@State(Scope.Thread)
+public class HashSetShapeBenchmark {
+
+    @Param({"SEQUENTIAL", "COLLIDING", "RANDOM", "CLUSTERED"})
+    public KeyShape shape;
+
+    @Param({"100", "1000", "10000"})
+    public int size;
+
+    private HashSet<Object> _set;
+    private Object[] _keys;
+    private int _index;
+
+    @Setup
+    public void setup() {
+        Object[] keys = shape.keys(size);
+        HashSet<Object> set = HashSet.empty();
+        for (Object key : keys) {
+            set = set.put(key);
+        }
+        _set = set;
+        _keys = BenchmarkData.shuffled(keys);
+    }
+
+    private Object nextKey() {
+        int index = _index;
+        _index = index + 1 == _keys.length ? 0 : index + 1;
+        return _keys[index];
+    }
+
+    @Benchmark
+    public boolean get() {
+        return _set.contains(nextKey());
+    }
+
+    @Benchmark
+    public Object put() {
+        return _set.put(nextKey());
+    }
+
+    @Benchmark
+    public Object remove() {
+        return _set.removeOpt(nextKey());
+    }
+
+    /**
+     * Returns the tree depth of a HashSet. The set is backed by a HashMap, whose shape depends only on the keys, so
+     * this is the depth of a HashMap with the same keys.
+     * @param set the set
+     * @return the depth of its tree
+     */
+    public static int depth(HashSet<?> set) {
+        HashMap<Object, Object> map = HashMap.empty();
+        for (Object key : set) {
+            map = map.put(key, key);
+        }
+        return HashMapShapeBenchmark.depth(map);
+    }
+}
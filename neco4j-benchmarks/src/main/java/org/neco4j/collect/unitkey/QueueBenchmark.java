@@ -0,0 +1,81 @@
+package org.neco4j.collect.unitkey;
+
+import org.neco4j.collect.BenchmarkData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+@State(Scope.Thread)
+public class QueueBenchmark {
+
+    @Param({"10", "1000", "100000", "10000000"})
+    public int size;
+
+    private Queue<Integer> _filled;
+    private Queue<Integer> _unbalanced;
+
+    @Setup
+    public void setup() {
+        Queue<Integer> queue = Queue.empty();
+        for (int key : BenchmarkData.keys(size)) {
+            queue = queue.add(key);
+        }
+        // all elements sit on the front stack, so reading the head has to walk the whole stack
+        _unbalanced = queue;
+        // after the first removal, the elements were moved to the rear stack, which is the amortized steady state
+        _filled = queue.removeIfPossible().add(42);
+    }
+
+    @Benchmark
+    public Object get() {
+        return _filled.getOpt();
+    }
+
+    @Benchmark
+    public Object getUnbalanced() {
+        return _unbalanced.getOpt();
+    }
+
+    @Benchmark
+    public Object put() {
+        return _filled.putOpt(42);
+    }
+
+    @Benchmark
+    public Object add() {
+        return _filled.add(42);
+    }
+
+    @Benchmark
+    public Object remove() {
+        return _filled.removeOpt();
+    }
+
+    @Benchmark
+    public Object removeUnbalanced() {
+        return _unbalanced.removeOpt();
+    }
+
+    @Benchmark
+    public void iterate(Blackhole bh) {
+        for (Integer value : _filled) {
+            bh.consume(value);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.neco4j.collect.unitkey;
+
+import org.neco4j.collect.BenchmarkData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+@State(Scope.Thread)
+public class StackBenchmark {
+
+    @Param({"10", "1000", "100000", "10000000"})
+    public int size;
+
+    private Stack<Integer> _stack;
+
+    @Setup
+    public void setup() {
+        Stack<Integer> stack = Stack.empty();
+        for (int key : BenchmarkData.keys(size)) {
+            stack = stack.add(key);
+        }
+        _stack = stack;
+    }
+
+    @Benchmark
+    public Object get() {
+        return _stack.getOpt();
+    }
+
+    @Benchmark
+    public Object put() {
+        return _stack.putOpt(42);
+    }
+
+    @Benchmark
+    public Object add() {
+        return _stack.add(42);
+    }
+
+    @Benchmark
+    public Object remove() {
+        return _stack.removeOpt();
+    }
+
+    @Benchmark
+    public void iterate(Blackhole bh) {
+        for (Integer value : _stack) {
+            bh.consume(value);
+        }
+    }
+}
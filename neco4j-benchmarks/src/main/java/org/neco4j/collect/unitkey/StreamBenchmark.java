@@ -0,0 +1,72 @@
+package org.neco4j.collect.unitkey;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams are infinite, so the size parameter is the number of elements which are consumed.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+@State(Scope.Thread)
+public class StreamBenchmark {
+
+    @Param({"10", "1000", "100000", "10000000"})
+    public int size;
+
+    private Stream<Integer> _stream;
+
+    @Setup
+    public void setup() {
+        _stream = Stream.iterate(0, i -> i + 1);
+    }
+
+    @Benchmark
+    public Object get() {
+        return _stream.get();
+    }
+
+    @Benchmark
+    public Object put() {
+        return _stream.put(42);
+    }
+
+    @Benchmark
+    public Object add() {
+        return _stream.add(42);
+    }
+
+    @Benchmark
+    public Object remove() {
+        return _stream.remove();
+    }
+
+    @Benchmark
+    public void iterate(Blackhole bh) {
+        Iterator<Integer> iterator = _stream.iterator();
+        for (int i = 0; i < size; i++) {
+            bh.consume(iterator.next());
+        }
+    }
+
+    @Benchmark
+    public Object take() {
+        return _stream.take(size);
+    }
+}
@@ -0,0 +1,162 @@
+package org.neco4j.collect;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Objects;
+import java.util.function.BiPredicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * A thread-safe table of canonical instances, which holds them only weakly, so instances which are not used anymore
+ * can be garbage collected. Hash code and equality are given as functions, so the table can intern objects by a
+ * notion of equality other than their own, e.g. tree nodes whose sub-nodes have to be identical.
+ * <p>
+ * The table is split into segments with their own locks, so threads interning unrelated objects rarely block each
+ * other. Cleared references are removed on the next access of their segment.
+ *
+ * @param <T> the type of the interned objects
+ */
+public final class WeakInterner<T> {
+
+    private static final int SEGMENT_BITS = 4;
+    private static final int SEGMENTS = 1 << SEGMENT_BITS;
+
+    private final ToIntFunction<? super T> _hash;
+    private final BiPredicate<? super T, ? super T> _equal;
+    private final Segment<T>[] _segments;
+
+    @SuppressWarnings("unchecked")
+    public WeakInterner(ToIntFunction<? super T> hash, BiPredicate<? super T, ? super T> equal) {
+        _hash = Objects.requireNonNull(hash);
+        _equal = Objects.requireNonNull(equal);
+        _segments = (Segment<T>[]) new Segment<?>[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            _segments[i] = new Segment<>();
+        }
+    }
+
+    /**
+     * Returns the canonical instance equal to the given object. If there is none, the object becomes the canonical
+     * instance.
+     * @param t the object
+     * @return the canonical instance
+     */
+    public T intern(T t) {
+        int hash = spread(_hash.applyAsInt(t));
+        return _segments[hash & (SEGMENTS - 1)].find(t, hash, _equal, true);
+    }
+
+    /**
+     * Returns the canonical instance equal to the given object, without adding it.
+     * @param t the object
+     * @return the canonical instance, or null if there is none
+     */
+    public T find(T t) {
+        int hash = spread(_hash.applyAsInt(t));
+        return _segments[hash & (SEGMENTS - 1)].find(t, hash, _equal, false);
+    }
+
+    /**
+     * Returns the number of canonical instances which were not garbage collected yet.
+     * @return the size
+     */
+    public int size() {
+        int size = 0;
+        for (Segment<T> segment : _segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static final class Entry<T> extends WeakReference<T> {
+        final int _hash;
+        Entry<T> _next;
+
+        private Entry(T t, int hash, ReferenceQueue<T> queue, Entry<T> next) {
+            super(t, queue);
+            _hash = hash;
+            _next = next;
+        }
+    }
+
+    private static final class Segment<T> {
+        private final ReferenceQueue<T> _queue = new ReferenceQueue<>();
+        private Entry<T>[] _table = newTable(16);
+        private int _count;
+
+        @SuppressWarnings("unchecked")
+        private static <T> Entry<T>[] newTable(int length) {
+            return (Entry<T>[]) new Entry<?>[length];
+        }
+
+        private static int index(int hash, int length) {
+            return (hash >>> SEGMENT_BITS) & (length - 1);
+        }
+
+        synchronized T find(T t, int hash, BiPredicate<? super T, ? super T> equal, boolean add) {
+            expunge();
+            int index = index(hash, _table.length);
+            for (Entry<T> entry = _table[index]; entry != null; entry = entry._next) {
+                if (entry._hash == hash) {
+                    T canonical = entry.get();
+                    if (canonical != null && (canonical == t || equal.test(canonical, t))) {
+                        return canonical;
+                    }
+                }
+            }
+            if (!add) {
+                return null;
+            }
+            if (++_count > _table.length / 4 * 3) {
+                resize();
+                index = index(hash, _table.length);
+            }
+            _table[index] = new Entry<>(t, hash, _queue, _table[index]);
+            return t;
+        }
+
+        synchronized int size() {
+            expunge();
+            return _count;
+        }
+
+        private void resize() {
+            Entry<T>[] table = newTable(2 * _table.length);
+            for (Entry<T> entry : _table) {
+                while (entry != null) {
+                    Entry<T> next = entry._next;
+                    int index = index(entry._hash, table.length);
+                    entry._next = table[index];
+                    table[index] = entry;
+                    entry = next;
+                }
+            }
+            _table = table;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void expunge() {
+            for (Object cleared = _queue.poll(); cleared != null; cleared = _queue.poll()) {
+                Entry<T> entry = (Entry<T>) cleared;
+                int index = index(entry._hash, _table.length);
+                Entry<T> previous = null;
+                for (Entry<T> current = _table[index]; current != null; current = current._next) {
+                    if (current == entry) {
+                        if (previous == null) {
+                            _table[index] = current._next;
+                        } else {
+                            previous._next = current._next;
+                        }
+                        _count--;
+                        break;
+                    }
+                    previous = current;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package org.neco4j.collect.map;
+
+import java.util.Comparator;
+import java.util.function.Consumer;
+
+/**
+ * A node of a persistent AVL tree of key-value entries, which is augmented with the subtree sizes, so entries can
+ * also be accessed by their index in key order. The empty tree is represented by null. Updates copy the path to the
+ * changed entry and return the tree itself if nothing changed.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+final class AvlNode<K, V> {
+
+    final K _key;
+    final V _value;
+    final AvlNode<K, V> _left;
+    final AvlNode<K, V> _right;
+    final int _height;
+    final long _size;
+
+    private AvlNode(K key, V value, AvlNode<K, V> left, AvlNode<K, V> right) {
+        _key = key;
+        _value = value;
+        _left = left;
+        _right = right;
+        _height = Math.max(height(left), height(right)) + 1;
+        _size = size(left) + size(right) + 1;
+    }
+
+    static long size(AvlNode<?, ?> node) {
+        return node == null ? 0L : node._size;
+    }
+
+    static int height(AvlNode<?, ?> node) {
+        return node == null ? 0 : node._height;
+    }
+
+    /**
+     * Passes the keys to the action in key order. This doesn't allocate, and the recursion depth is bounded by the
+     * height of the tree.
+     */
+    static <K> void forEachKey(AvlNode<K, ?> node, Consumer<? super K> action) {
+        for (; node != null; node = node._right) {
+            forEachKey(node._left, action);
+            action.accept(node._key);
+        }
+    }
+
+    /**
+     * Copies the entries in key order into the array, as alternating keys and values starting at the offset.
+     * Returns the offset after the last copied entry.
+     */
+    static int copyEntries(AvlNode<?, ?> node, Object[] array, int offset) {
+        for (; node != null; node = node._right) {
+            offset = copyEntries(node._left, array, offset);
+            array[offset++] = node._key;
+            array[offset++] = node._value;
+        }
+        return offset;
+    }
+
+    /**
+     * Returns the node with a key equal to the given object, or null. This visits the nodes in key order without
+     * comparing, so it works for keys which can't be compared with the keys in the tree.
+     */
+    static <K, V> AvlNode<K, V> scan(AvlNode<K, V> node, Object key) {
+        for (; node != null; node = node._right) {
+            AvlNode<K, V> found = scan(node._left, key);
+            if (found != null) {
+                return found;
+            }
+            if (key.equals(node._key)) {
+                return node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the node with a key comparing equal to the given key, or null. This doesn't allocate.
+     */
+    static <K, V> AvlNode<K, V> find(AvlNode<K, V> node, K key, Comparator<? super K> comparator) {
+        while (node != null) {
+            int c = comparator.compare(key, node._key);
+            if (c == 0) {
+                return node;
+            }
+            node = c < 0 ? node._left : node._right;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the node with the greatest key less than or equal to the given key, or null.
+     */
+    static <K, V> AvlNode<K, V> floor(AvlNode<K, V> node, K key, Comparator<? super K> comparator) {
+        AvlNode<K, V> result = null;
+        while (node != null) {
+            int c = comparator.compare(key, node._key);
+            if (c == 0) {
+                return node;
+            }
+            if (c < 0) {
+                node = node._left;
+            } else {
+                result = node;
+                node = node._right;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the node with the least key greater than or equal to the given key, or null.
+     */
+    static <K, V> AvlNode<K, V> ceiling(AvlNode<K, V> node, K key, Comparator<? super K> comparator) {
+        AvlNode<K, V> result = null;
+        while (node != null) {
+            int c = comparator.compare(key, node._key);
+            if (c == 0) {
+                return node;
+            }
+            if (c > 0) {
+                node = node._right;
+            } else {
+                result = node;
+                node = node._left;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of keys less than the given key.
+     */
+    static <K> long rank(AvlNode<K, ?> node, K key, Comparator<? super K> comparator) {
+        long rank = 0;
+        while (node != null) {
+            int c = comparator.compare(key, node._key);
+            if (c <= 0) {
+                if (c == 0) {
+                    return rank + size(node._left);
+                }
+                node = node._left;
+            } else {
+                rank += size(node._left) + 1;
+                node = node._right;
+            }
+        }
+        return rank;
+    }
+
+    /**
+     * Returns the node at the given index in key order.
+     */
+    static <K, V> AvlNode<K, V> at(AvlNode<K, V> node, long index) {
+        while (true) {
+            long leftSize = size(node._left);
+            if (index < leftSize) {
+                node = node._left;
+            } else if (index == leftSize) {
+                return node;
+            } else {
+                index -= leftSize + 1;
+                node = node._right;
+            }
+        }
+    }
+
+    /**
+     * Returns a tree where the key has the given value. The key of an existing entry is kept.
+     */
+    static <K, V> AvlNode<K, V> put(AvlNode<K, V> node, K key, V value, Comparator<? super K> comparator) {
+        if (node == null) {
+            return new AvlNode<>(key, value, null, null);
+        }
+        int c = comparator.compare(key, node._key);
+        if (c == 0) {
+            return node._value == value ? node : new AvlNode<>(node._key, value, node._left, node._right);
+        }
+        if (c < 0) {
+            AvlNode<K, V> left = put(node._left, key, value, comparator);
+            return left == node._left ? node : balance(node._key, node._value, left, node._right);
+        }
+        AvlNode<K, V> right = put(node._right, key, value, comparator);
+        return right == node._right ? node : balance(node._key, node._value, node._left, right);
+    }
+
+    /**
+     * Returns a tree without the key.
+     */
+    static <K, V> AvlNode<K, V> remove(AvlNode<K, V> node, K key, Comparator<? super K> comparator) {
+        if (node == null) {
+            return null;
+        }
+        int c = comparator.compare(key, node._key);
+        if (c < 0) {
+            AvlNode<K, V> left = remove(node._left, key, comparator);
+            return left == node._left ? node : balance(node._key, node._value, left, node._right);
+        }
+        if (c > 0) {
+            AvlNode<K, V> right = remove(node._right, key, comparator);
+            return right == node._right ? node : balance(node._key, node._value, node._left, right);
+        }
+        if (node._left == null) {
+            return node._right;
+        }
+        if (node._right == null) {
+            return node._left;
+        }
+        AvlNode<K, V> min = node._right;
+        while (min._left != null) {
+            min = min._left;
+        }
+        return balance(min._key, min._value, node._left, removeMin(node._right));
+    }
+
+    private static <K, V> AvlNode<K, V> removeMin(AvlNode<K, V> node) {
+        if (node._left == null) {
+            return node._right;
+        }
+        return balance(node._key, node._value, removeMin(node._left), node._right);
+    }
+
+    private static <K, V> AvlNode<K, V> balance(K key, V value, AvlNode<K, V> left, AvlNode<K, V> right) {
+        int diff = height(left) - height(right);
+        if (diff > 1) {
+            if (height(left._left) < height(left._right)) {
+                left = rotateLeft(left._key, left._value, left._left, left._right);
+            }
+            return rotateRight(key, value, left, right);
+        }
+        if (diff < -1) {
+            if (height(right._right) < height(right._left)) {
+                right = rotateRight(right._key, right._value, right._left, right._right);
+            }
+            return rotateLeft(key, value, left, right);
+        }
+        return new AvlNode<>(key, value, left, right);
+    }
+
+    private static <K, V> AvlNode<K, V> rotateLeft(K key, V value, AvlNode<K, V> left, AvlNode<K, V> right) {
+        return new AvlNode<>(right._key, right._value, new AvlNode<>(key, value, left, right._left), right._right);
+    }
+
+    private static <K, V> AvlNode<K, V> rotateRight(K key, V value, AvlNode<K, V> left, AvlNode<K, V> right) {
+        return new AvlNode<>(left._key, left._value, left._left, new AvlNode<>(key, value, left._right, right));
+    }
+}
@@ -0,0 +1,573 @@
+package org.neco4j.collect.map;
+
+import org.neco4j.collect.Puttable;
+import org.neco4j.collect.unitkey.Opt;
+import org.neco4j.tuple.Pair;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.StringJoiner;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An immutable sorted map based on a B+tree with wide nodes.
+ * <p>
+ * The entries are stored in leaves with up to {@link #MAX_WIDTH} sorted keys and values, and inner nodes have up to
+ * {@link #MAX_WIDTH} children. So even maps with many millions of entries have only a few levels, which costs much
+ * less memory and fewer cache misses than a binary tree. Updates copy the arrays along the path to the changed
+ * leaf. Entries are iterated in key order, and {@link #range(Object, Object)} starts a scan at any key in O(log n).
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class BTreeMap<K, V> implements Puttable<K, V, BTreeMap<K, V>> {
+
+    static final int MAX_WIDTH = 32;
+    static final int MIN_WIDTH = MAX_WIDTH / 2;
+
+    private static final int CHARACTERISTICS = Spliterator.IMMUTABLE | Spliterator.DISTINCT | Spliterator.NONNULL
+                                                   | Spliterator.ORDERED;
+
+    private final Node<K, V> _root;
+    private final Comparator<? super K> _comparator;
+
+    private BTreeMap(Node<K, V> root, Comparator<? super K> comparator) {
+        _root = root;
+        _comparator = comparator;
+    }
+
+    public static <K extends Comparable<? super K>, V> BTreeMap<K, V> empty() {
+        return new BTreeMap<>(null, Comparator.naturalOrder());
+    }
+
+    public static <K, V> BTreeMap<K, V> empty(Comparator<? super K> comparator) {
+        return new BTreeMap<>(null, Objects.requireNonNull(comparator));
+    }
+
+    public static <K extends Comparable<? super K>, V> BTreeMap<K, V> of(K k0, V v0) {
+        return BTreeMap.<K, V>empty().put(k0, v0);
+    }
+
+    public static <K extends Comparable<? super K>, V> BTreeMap<K, V> of(K k0, V v0, K k1, V v1) {
+        return of(k0, v0).put(k1, v1);
+    }
+
+    public static <K extends Comparable<? super K>, V> BTreeMap<K, V> of(K k0, V v0, K k1, V v1, K k2, V v2) {
+        return of(k0, v0, k1, v1).put(k2, v2);
+    }
+
+    public static <K extends Comparable<? super K>, V> BTreeMap<K, V> ofAll(Iterable<Pair<K, V>> pairs) {
+        BTreeMap<K, V> result = empty();
+        for (Pair<K, V> pair : pairs) {
+            result = result.put(pair.get1(), pair.get2());
+        }
+        return result;
+    }
+
+    public Comparator<? super K> comparator() {
+        return _comparator;
+    }
+
+    @Override
+    public BTreeMap<K, V> put(K k, V v) {
+        Objects.requireNonNull(k);
+        Objects.requireNonNull(v);
+        if (_root == null) {
+            return new BTreeMap<>(new Leaf<>(new Object[]{k}, new Object[]{v}), _comparator);
+        }
+        Node<K, V> root = insert(_root, k, v);
+        if (root == _root) {
+            return this;
+        }
+        if (root.width() > MAX_WIDTH) {
+            Object[] parts = split(root);
+            root = new Inner<>(new Object[]{parts[1]}, new Object[]{parts[0], parts[2]});
+        }
+        return new BTreeMap<>(root, _comparator);
+    }
+
+    @Override
+    public Opt<BTreeMap<K, V>> addOpt(K k, V v) {
+        return containsKey(k) ? Opt.none() : Opt.some(put(k, v));
+    }
+
+    @Override
+    public Opt<V> getOpt(K k) {
+        return Opt.from(find(k));
+    }
+
+    /**
+     * Retrieves the value for a key, or returns a given default value. This doesn't allocate.
+     * @param k the key
+     * @param defaultValue the default value
+     * @return the value, or the default value if there is no value for the key
+     */
+    @Override
+    public V getOrElse(K k, V defaultValue) {
+        V v = find(k);
+        return v == null ? defaultValue : v;
+    }
+
+    public boolean containsKey(K k) {
+        return find(k) != null;
+    }
+
+    @Override
+    public Opt<BTreeMap<K, V>> removeOpt(K k) {
+        if (_root == null) {
+            return Opt.none();
+        }
+        Node<K, V> root = remove(_root, k);
+        if (root == _root) {
+            return Opt.none();
+        }
+        if (root instanceof Inner && root.width() == 1) {
+            root = ((Inner<K, V>) root).child(0);
+        }
+        return Opt.some(new BTreeMap<>(root.width() == 0 ? null : root, _comparator));
+    }
+
+    @Override
+    public long size() {
+        return _root == null ? 0L : _root.size();
+    }
+
+    public Opt<Pair<K, V>> firstOpt() {
+        if (_root == null) {
+            return Opt.none();
+        }
+        Node<K, V> node = _root;
+        while (node instanceof Inner) {
+            node = ((Inner<K, V>) node).child(0);
+        }
+        return Opt.some(((Leaf<K, V>) node).entry(0));
+    }
+
+    public Opt<Pair<K, V>> lastOpt() {
+        if (_root == null) {
+            return Opt.none();
+        }
+        Node<K, V> node = _root;
+        while (node instanceof Inner) {
+            node = ((Inner<K, V>) node).child(node.width() - 1);
+        }
+        return Opt.some(((Leaf<K, V>) node).entry(node.width() - 1));
+    }
+
+    /**
+     * Returns the entries with keys from the lower bound (inclusive) to the upper bound (exclusive) in key order.
+     * The scan starts with a single descent, and then walks along the leaves.
+     * @param from the lower bound
+     * @param to the upper bound
+     * @return the entries
+     */
+    public Iterable<Pair<K, V>> range(K from, K to) {
+        Objects.requireNonNull(from);
+        Objects.requireNonNull(to);
+        return () -> new RangeIterator(from, to);
+    }
+
+    @Override
+    public Iterable<Pair<K, V>> asKeyValuePairs() {
+        return () -> new RangeIterator(null, null);
+    }
+
+    public Stream<Pair<K, V>> stream() {
+        return StreamSupport.stream(Spliterators.spliterator(new RangeIterator(null, null), size(), CHARACTERISTICS),
+            false);
+    }
+
+    /**
+     * Returns the number of levels of the underlying tree, for diagnostic purposes.
+     * @return the depth, 0 for an empty collection
+     */
+    int depth() {
+        int depth = 0;
+        for (Node<K, V> node = _root; node != null; depth++) {
+            node = node instanceof Inner ? ((Inner<K, V>) node).child(0) : null;
+        }
+        return depth;
+    }
+
+    private V find(K key) {
+        Node<K, V> node = _root;
+        if (node == null) {
+            return null;
+        }
+        while (node instanceof Inner) {
+            Inner<K, V> inner = (Inner<K, V>) node;
+            node = inner.child(childIndex(inner, key));
+        }
+        int index = search(node._keys, key);
+        return index < 0 ? null : ((Leaf<K, V>) node).valueAt(index);
+    }
+
+    @SuppressWarnings("unchecked")
+    private int search(Object[] keys, K key) {
+        return Arrays.binarySearch(keys, key, (Comparator<Object>) _comparator);
+    }
+
+    private int childIndex(Inner<K, V> inner, K key) {
+        int index = search(inner._keys, key);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    /**
+     * Returns a node with the entry, or the node itself if nothing changed. The result may be one entry or child
+     * wider than allowed, then the caller has to split it.
+     */
+    private Node<K, V> insert(Node<K, V> node, K key, V value) {
+        if (node instanceof Leaf) {
+            Leaf<K, V> leaf = (Leaf<K, V>) node;
+            int index = search(leaf._keys, key);
+            if (index >= 0) {
+                if (leaf._values[index] == value) {
+                    return leaf;
+                }
+                Object[] values = leaf._values.clone();
+                values[index] = value;
+                return new Leaf<>(leaf._keys, values);
+            }
+            index = -index - 1;
+            return new Leaf<>(insertAt(leaf._keys, index, key), insertAt(leaf._values, index, value));
+        }
+        Inner<K, V> inner = (Inner<K, V>) node;
+        int index = childIndex(inner, key);
+        Node<K, V> child = inner.child(index);
+        Node<K, V> newChild = insert(child, key, value);
+        if (newChild == child) {
+            return inner;
+        }
+        if (newChild.width() <= MAX_WIDTH) {
+            return inner.withChild(index, newChild, child);
+        }
+        Object[] parts = split(newChild);
+        Object[] children = insertAt(inner._children, index + 1, parts[2]);
+        children[index] = parts[0];
+        return new Inner<>(insertAt(inner._keys, index, parts[1]), children, inner._size + 1);
+    }
+
+    /**
+     * Returns a node without the key, or the node itself if the key doesn't exist. The result may be one entry or
+     * child narrower than allowed, then the caller has to rebalance it.
+     */
+    private Node<K, V> remove(Node<K, V> node, K key) {
+        if (node instanceof Leaf) {
+            Leaf<K, V> leaf = (Leaf<K, V>) node;
+            int index = search(leaf._keys, key);
+            return index < 0 ? leaf : new Leaf<>(removeAt(leaf._keys, index), removeAt(leaf._values, index));
+        }
+        Inner<K, V> inner = (Inner<K, V>) node;
+        int index = childIndex(inner, key);
+        Node<K, V> child = inner.child(index);
+        Node<K, V> newChild = remove(child, key);
+        if (newChild == child) {
+            return inner;
+        }
+        if (newChild.width() >= MIN_WIDTH) {
+            return inner.withChild(index, newChild, child);
+        }
+        // merge the child with a sibling, or move entries over from the sibling
+        int left = index > 0 ? index - 1 : index;
+        Object[] parts = index > left
+                             ? join(inner.child(left), inner._keys[left], newChild)
+                             : join(newChild, inner._keys[left], inner.child(left + 1));
+        Object[] keys;
+        Object[] children;
+        if (parts.length == 1) {
+            keys = removeAt(inner._keys, left);
+            children = removeAt(inner._children, left + 1);
+            children[left] = parts[0];
+        } else {
+            keys = inner._keys.clone();
+            keys[left] = parts[1];
+            children = inner._children.clone();
+            children[left] = parts[0];
+            children[left + 1] = parts[2];
+        }
+        return new Inner<>(keys, children, inner._size - 1);
+    }
+
+    /**
+     * Splits a node in two halves, and returns the left half, the separator key and the right half.
+     */
+    private static Object[] split(Node<?, ?> node) {
+        int half = node.width() / 2;
+        if (node instanceof Leaf) {
+            Leaf<?, ?> leaf = (Leaf<?, ?>) node;
+            Object[] keys = leaf._keys;
+            Object[] values = leaf._values;
+            return new Object[]{
+                new Leaf<>(Arrays.copyOfRange(keys, 0, half), Arrays.copyOfRange(values, 0, half)),
+                keys[half],
+                new Leaf<>(Arrays.copyOfRange(keys, half, keys.length), Arrays.copyOfRange(values, half, keys.length))
+            };
+        }
+        Inner<?, ?> inner = (Inner<?, ?>) node;
+        Object[] keys = inner._keys;
+        Object[] children = inner._children;
+        return new Object[]{
+            new Inner<>(Arrays.copyOfRange(keys, 0, half - 1), Arrays.copyOfRange(children, 0, half)),
+            keys[half - 1],
+            new Inner<>(Arrays.copyOfRange(keys, half, keys.length), Arrays.copyOfRange(children, half, children.length))
+        };
+    }
+
+    /**
+     * Joins two neighbouring nodes, and returns either the joined node, or the result of splitting it evenly if it
+     * is too wide.
+     */
+    private static Object[] join(Node<?, ?> left, Object separator, Node<?, ?> right) {
+        Node<?, ?> joined;
+        if (left instanceof Leaf) {
+            joined = new Leaf<>(concat(left._keys, right._keys),
+                concat(((Leaf<?, ?>) left)._values, ((Leaf<?, ?>) right)._values));
+        } else {
+            joined = new Inner<>(concat(insertAt(left._keys, left._keys.length, separator), right._keys),
+                concat(((Inner<?, ?>) left)._children, ((Inner<?, ?>) right)._children),
+                left.size() + right.size());
+        }
+        return joined.width() <= MAX_WIDTH ? new Object[]{joined} : split(joined);
+    }
+
+    private static Object[] insertAt(Object[] array, int index, Object element) {
+        Object[] result = new Object[array.length + 1];
+        System.arraycopy(array, 0, result, 0, index);
+        result[index] = element;
+        System.arraycopy(array, index, result, index + 1, array.length - index);
+        return result;
+    }
+
+    private static Object[] removeAt(Object[] array, int index) {
+        Object[] result = new Object[array.length - 1];
+        System.arraycopy(array, 0, result, 0, index);
+        System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+        return result;
+    }
+
+    private static Object[] concat(Object[] left, Object[] right) {
+        Object[] result = Arrays.copyOf(left, left.length + right.length);
+        System.arraycopy(right, 0, result, left.length, right.length);
+        return result;
+    }
+
+    private static abstract class Node<K, V> {
+        final Object[] _keys;
+
+        Node(Object[] keys) {
+            _keys = keys;
+        }
+
+        @SuppressWarnings("unchecked")
+        K keyAt(int index) {
+            return (K) _keys[index];
+        }
+
+        /**
+         * Returns the number of entries of a leaf, or the number of children of an inner node.
+         */
+        abstract int width();
+
+        abstract long size();
+    }
+
+    private static final class Leaf<K, V> extends Node<K, V> {
+        final Object[] _values;
+
+        private Leaf(Object[] keys, Object[] values) {
+            super(keys);
+            _values = values;
+        }
+
+        @SuppressWarnings("unchecked")
+        V valueAt(int index) {
+            return (V) _values[index];
+        }
+
+        Pair<K, V> entry(int index) {
+            return Pair.of(keyAt(index), valueAt(index));
+        }
+
+        @Override
+        int width() {
+            return _keys.length;
+        }
+
+        @Override
+        long size() {
+            return _keys.length;
+        }
+    }
+
+    /**
+     * An inner node, where all keys in _children[i + 1] are at least _keys[i], and all keys in _children[i] are less.
+     */
+    private static final class Inner<K, V> extends Node<K, V> {
+        final Object[] _children;
+        final long _size;
+
+        private Inner(Object[] keys, Object[] children, long size) {
+            super(keys);
+            _children = children;
+            _size = size;
+        }
+
+        private Inner(Object[] keys, Object[] children) {
+            this(keys, children, sizeOf(children));
+        }
+
+        private static long sizeOf(Object[] children) {
+            long size = 0;
+            for (Object child : children) {
+                size += ((Node<?, ?>) child).size();
+            }
+            return size;
+        }
+
+        @SuppressWarnings("unchecked")
+        Node<K, V> child(int index) {
+            return (Node<K, V>) _children[index];
+        }
+
+        Inner<K, V> withChild(int index, Node<K, V> newChild, Node<K, V> oldChild) {
+            Object[] children = _children.clone();
+            children[index] = newChild;
+            return new Inner<>(_keys, children, _size - oldChild.size() + newChild.size());
+        }
+
+        @Override
+        int width() {
+            return _children.length;
+        }
+
+        @Override
+        long size() {
+            return _size;
+        }
+    }
+
+    /**
+     * Walks along the leaves in key order, keeping the path from the root to the current leaf. The bounds are
+     * optional, the lower one is inclusive and the upper one exclusive.
+     */
+    private final class RangeIterator implements Iterator<Pair<K, V>> {
+        private final K _to;
+        private final Object[] _path;
+        private final int[] _indexes;
+        private final int _leafLevel;
+        private boolean _done;
+
+        private RangeIterator(K from, K to) {
+            _to = to;
+            int depth = depth();
+            _path = new Object[Math.max(depth, 1)];
+            _indexes = new int[Math.max(depth, 1)];
+            _leafLevel = depth - 1;
+            if (_root == null) {
+                _done = true;
+                return;
+            }
+            Node<K, V> node = _root;
+            for (int level = 0; level < _leafLevel; level++) {
+                Inner<K, V> inner = (Inner<K, V>) node;
+                int index = from == null ? 0 : childIndex(inner, from);
+                _path[level] = inner;
+                _indexes[level] = index;
+                node = inner.child(index);
+            }
+            int index = from == null ? 0 : search(node._keys, from);
+            _path[_leafLevel] = node;
+            _indexes[_leafLevel] = index >= 0 ? index : -index - 1;
+            normalize();
+        }
+
+        /**
+         * Moves on to the next leaf if the current one is exhausted, and checks the upper bound.
+         */
+        @SuppressWarnings("unchecked")
+        private void normalize() {
+            int level = _leafLevel;
+            while (_indexes[level] == ((Node<K, V>) _path[level]).width()) {
+                if (level == 0) {
+                    _done = true;
+                    return;
+                }
+                level--;
+                _indexes[level]++;
+            }
+            for (; level < _leafLevel; level++) {
+                _path[level + 1] = ((Inner<K, V>) _path[level]).child(_indexes[level]);
+                _indexes[level + 1] = 0;
+            }
+            Leaf<K, V> leaf = (Leaf<K, V>) _path[_leafLevel];
+            if (_to != null && _comparator.compare(leaf.keyAt(_indexes[_leafLevel]), _to) >= 0) {
+                _done = true;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !_done;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Pair<K, V> next() {
+            if (_done) {
+                throw new NoSuchElementException();
+            }
+            Leaf<K, V> leaf = (Leaf<K, V>) _path[_leafLevel];
+            Pair<K, V> result = leaf.entry(_indexes[_leafLevel]++);
+            normalize();
+            return result;
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = 0;
+        for (Pair<K, V> pair : asKeyValuePairs()) {
+            hashCode += pair.hashCode();
+        }
+        return hashCode;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (o == null || !o.getClass().equals(this.getClass())) {
+            return false;
+        }
+        BTreeMap<K, V> that = (BTreeMap<K, V>) o;
+        if (that.size() != this.size()) {
+            return false;
+        }
+        for (Pair<K, V> pair : asKeyValuePairs()) {
+            try {
+                if (!pair.get2().equals(that.getOrElse(pair.get1(), (V) null))) {
+                    return false;
+                }
+            } catch (ClassCastException ex) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ");
+        this.asKeyValuePairs().forEach(p -> joiner.add(p.get1().toString() + ":" + p.get2().toString()));
+        return String.format("%s[%s]", getClass().getSimpleName(), joiner.toString());
+    }
+
+}
@@ -0,0 +1,209 @@
+package org.neco4j.collect.map;
+
+import org.neco4j.collect.Coll;
+import org.neco4j.collect.unitkey.Opt;
+import org.neco4j.tuple.Pair;
+
+import java.util.NoSuchElementException;
+import java.util.StringJoiner;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * An immutable map where the values are unique too, so it can be looked up in both directions.
+ * <p>
+ * It consists of a {@link HashMap} from keys to values and one from values to keys, which are always updated
+ * together, so lookups in both directions need O(log n) steps. {@link #inverse()} just swaps them. Operations that
+ * would map a value to a second key fail with Opt.none.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class BiMap<K, V> implements Coll<K, V, BiMap<K, V>> {
+
+    private final static BiMap<?, ?> EMPTY = new BiMap<>(HashMap.empty(), HashMap.empty());
+
+    private final HashMap<K, V> _forward;
+    private final HashMap<V, K> _backward;
+
+    private BiMap(HashMap<K, V> forward, HashMap<V, K> backward) {
+        _forward = forward;
+        _backward = backward;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> BiMap<K, V> empty() {
+        return (BiMap<K, V>) EMPTY;
+    }
+
+    public static <K, V> BiMap<K, V> of(K k0, V v0) {
+        return BiMap.<K, V>empty().with(k0, v0);
+    }
+
+    public static <K, V> BiMap<K, V> of(K k0, V v0, K k1, V v1) {
+        return of(k0, v0).with(k1, v1);
+    }
+
+    public static <K, V> BiMap<K, V> of(K k0, V v0, K k1, V v1, K k2, V v2) {
+        return of(k0, v0, k1, v1).with(k2, v2);
+    }
+
+    /**
+     * Creates a BiMap from key-value pairs.
+     * @param pairs the pairs
+     * @param <K> the key type
+     * @param <V> the value type
+     * @return the BiMap
+     * @throws IllegalArgumentException if a key or a value occurs twice
+     */
+    public static <K, V> BiMap<K, V> ofAll(Iterable<Pair<K, V>> pairs) {
+        BiMap<K, V> result = empty();
+        for (Pair<K, V> pair : pairs) {
+            result = result.with(pair.get1(), pair.get2());
+        }
+        return result;
+    }
+
+    private BiMap<K, V> with(K k, V v) {
+        return addOpt(k, v).orElse(() -> {
+            throw new IllegalArgumentException("Duplicate key or value in BiMap: " + k + ":" + v);
+        });
+    }
+
+    /**
+     * Returns the BiMap in the other direction, in O(1).
+     * @return the inverse BiMap
+     */
+    public BiMap<V, K> inverse() {
+        return new BiMap<>(_backward, _forward);
+    }
+
+    /**
+     * Adds an entry, if neither the key nor the value exist yet.
+     * @param k the key
+     * @param v the value
+     * @return if successful, the enlarged BiMap wrapped in an Opt, else Opt.none
+     */
+    @Override
+    public Opt<BiMap<K, V>> addOpt(K k, V v) {
+        if (_forward.containsKey(k) || _backward.containsKey(v)) {
+            return Opt.none();
+        }
+        return Opt.some(new BiMap<>(_forward.put(k, v), _backward.put(v, k)));
+    }
+
+    /**
+     * Maps the key to the value, replacing its old value, if the value isn't mapped to another key yet.
+     * @param k the key
+     * @param v the value
+     * @return if successful, the modified BiMap wrapped in an Opt, else Opt.none
+     */
+    @Override
+    public Opt<BiMap<K, V>> putOpt(K k, V v) {
+        K oldKey = _backward.getOrElse(v, (K) null);
+        if (oldKey != null) {
+            return oldKey.equals(k) ? Opt.some(this) : Opt.none();
+        }
+        V oldValue = _forward.getOrElse(k, (V) null);
+        HashMap<V, K> backward = oldValue == null ? _backward : _backward.removeIfPossible(oldValue);
+        return Opt.some(new BiMap<>(_forward.put(k, v), backward.put(v, k)));
+    }
+
+    @Override
+    public Opt<V> getOpt(K k) {
+        return _forward.getOpt(k);
+    }
+
+    /**
+     * Retrieves the value for a key, or returns a given default value. This doesn't allocate.
+     * @param k the key
+     * @param defaultValue the default value
+     * @return the value, or the default value if there is no value for the key
+     */
+    @Override
+    public V getOrElse(K k, V defaultValue) {
+        return _forward.getOrElse(k, defaultValue);
+    }
+
+    @Override
+    public V getOrElse(K k, Supplier<V> supplier) {
+        return _forward.getOrElse(k, supplier);
+    }
+
+    @Override
+    public V getOrFail(K k) throws NoSuchElementException {
+        return _forward.getOrFail(k);
+    }
+
+    /**
+     * Retrieves the key for a value.
+     * @param v the value
+     * @return the key wrapped in an Opt, or Opt.none if the value doesn't exist
+     */
+    public Opt<K> getKeyOpt(V v) {
+        return _backward.getOpt(v);
+    }
+
+    public boolean containsKey(K k) {
+        return _forward.containsKey(k);
+    }
+
+    public boolean containsValue(V v) {
+        return _backward.containsKey(v);
+    }
+
+    @Override
+    public Opt<BiMap<K, V>> removeOpt(K k) {
+        V v = _forward.getOrElse(k, (V) null);
+        if (v == null) {
+            return Opt.none();
+        }
+        return Opt.some(new BiMap<>(_forward.removeIfPossible(k), _backward.removeIfPossible(v)));
+    }
+
+    @Override
+    public long size() {
+        return _forward.size();
+    }
+
+    @Override
+    public Iterable<Pair<K, V>> asKeyValuePairs() {
+        return _forward.asKeyValuePairs();
+    }
+
+    public Stream<Pair<K, V>> stream() {
+        return _forward.stream();
+    }
+
+    /**
+     * Returns the map from keys to values.
+     * @return the HashMap
+     */
+    public HashMap<K, V> toHashMap() {
+        return _forward;
+    }
+
+    @Override
+    public int hashCode() {
+        return _forward.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (o == null || !o.getClass().equals(this.getClass())) {
+            return false;
+        }
+        return _forward.equals(((BiMap<?, ?>) o)._forward);
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ");
+        this.asKeyValuePairs().forEach(p -> joiner.add(p.get1().toString() + ":" + p.get2().toString()));
+        return String.format("%s[%s]", getClass().getSimpleName(), joiner.toString());
+    }
+
+}
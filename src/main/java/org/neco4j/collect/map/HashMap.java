@@ -1,22 +1,50 @@
 package org.neco4j.collect.map;
 
 import org.neco4j.collect.Puttable;
+import org.neco4j.collect.WeakInterner;
 import org.neco4j.collect.indexed.List;
 import org.neco4j.collect.set.HashSet;
 import org.neco4j.collect.unitkey.Opt;
-import org.neco4j.collect.unitkey.Stack;
-import org.neco4j.collect.unitkey.UnitKeyAddable;
 import org.neco4j.tuple.Pair;
+import org.neco4j.tuple.Triple;
 
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.StringJoiner;
-import java.util.stream.Collectors;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BiFunction;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
+/**
+ * An immutable map based on a compressed hash-array mapped prefix tree (CHAMP).
+ * <p>
+ * Every level of the tree consumes five bits of the key hash codes, so a node has up to 32 entries, and lookups
+ * and updates need O(log32 n) steps. Only keys with identical hash codes end up in the same collision node.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
 public class HashMap<K, V> implements Puttable<K, V, HashMap<K, V>> {
 
-    private final static Node<?, ?> EMPTY = new Node<>();
+    private static final int ENTRY_CHARACTERISTICS =
+        Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.IMMUTABLE | Spliterator.DISTINCT | Spliterator.NONNULL;
+
+    private final static Node<?, ?> EMPTY = new BitmapNode<>(0, 0, new Object[0], 0L, 0, null);
+
+    private final static WeakInterner<Node<?, ?>> INTERNED = new WeakInterner<>(Node::internHash, Node::sameAs);
 
     private final Node<K, V> _root;
     private final long _size;
@@ -31,55 +59,139 @@ public class HashMap<K, V> implements Puttable<K, V, HashMap<K, V>> {
     }
 
     public static <K, V> HashMap<K, V> of(K k0, V v0) {
-        return HashMap.<K, V>empty().put(k0, v0);
+        return HashMap.<K, V>transientBuilder().put(k0, v0).persistent();
     }
 
     public static <K, V> HashMap<K, V> of(K k0, V v0, K k1, V v1) {
-        return of(k0, v0).put(k1, v1);
+        return HashMap.<K, V>transientBuilder().put(k0, v0).put(k1, v1).persistent();
     }
 
     public static <K, V> HashMap<K, V> of(K k0, V v0, K k1, V v1, K k2, V v2) {
-        return of(k0, v0, k1, v1).put(k2, v2);
+        return HashMap.<K, V>transientBuilder().put(k0, v0).put(k1, v1).put(k2, v2).persistent();
     }
 
     public static <K, V> HashMap<K, V> of(K k0, V v0, K k1, V v1, K k2, V v2, K k3, V v3) {
-        return of(k0, v0, k1, v1, k2, v2).put(k3, v3);
+        return HashMap.<K, V>transientBuilder().put(k0, v0).put(k1, v1).put(k2, v2).put(k3, v3).persistent();
     }
 
     public static <K, V> HashMap<K, V> of(K k0, V v0, K k1, V v1, K k2, V v2, K k3, V v3, K k4, V v4) {
-        return of(k0, v0, k1, v1, k2, v2, k3, v3).put(k4, v4);
+        return HashMap.<K, V>transientBuilder().put(k0, v0).put(k1, v1).put(k2, v2).put(k3, v3).put(k4, v4)
+                   .persistent();
     }
 
     public static <K, V> HashMap<K, V> of(K k0, V v0, K k1, V v1, K k2, V v2, K k3, V v3, K k4, V v4, K k5, V v5) {
-        return of(k0, v0, k1, v1, k2, v2, k3, v3, k4, v4).put(k5, v5);
+        return HashMap.<K, V>transientBuilder().put(k0, v0).put(k1, v1).put(k2, v2).put(k3, v3).put(k4, v4)
+                   .put(k5, v5).persistent();
+    }
+
+    public static <K, V> HashMap<K, V> ofAll(Iterable<Pair<K, V>> pairs) {
+        return HashMap.<K, V>transientBuilder().putAll(pairs).persistent();
+    }
+
+    /**
+     * Creates a mutable builder for a new HashMap.
+     * @param <K> the key type
+     * @param <V> the value type
+     * @return the {@link Transient}
+     */
+    public static <K, V> Transient<K, V> transientBuilder() {
+        return new Transient<>(emptyNode(), 0L);
+    }
+
+    /**
+     * Creates a mutable builder starting with the content of this HashMap. This HashMap itself is not affected.
+     * @return the {@link Transient}
+     */
+    public Transient<K, V> asTransient() {
+        return new Transient<>(_root, _size);
     }
 
     @Override
     public Opt<HashMap<K, V>> addOpt(K k, V v) {
-        return _root.addOpt(k, v).map(root -> new HashMap<>(root, _size + 1));
+        Node<K, V> root = _root.put(k, Objects.requireNonNull(v), k.hashCode(), 0, false, new Change(), null);
+        return root == _root
+                   ? Opt.none()
+                   : Opt.some(new HashMap<>(root, _size + 1));
     }
 
     @Override
     public Opt<V> getOpt(K k) {
-        return _root.getOpt(k);
+        return Opt.from(_root.find(k, k.hashCode(), 0));
+    }
+
+    /**
+     * Retrieves an element of the map, or returns a given default value. Unlike getOpt, this doesn't allocate.
+     * @param k the key
+     * @param defaultValue the defaultValue
+     * @return the element, or the default value if there is no element for the key
+     */
+    @Override
+    public V getOrElse(K k, V defaultValue) {
+        V v = _root.find(k, k.hashCode(), 0);
+        return v == null ? defaultValue : v;
+    }
+
+    @Override
+    public V getOrElse(K k, Supplier<V> supplier) {
+        V v = _root.find(k, k.hashCode(), 0);
+        return v == null ? supplier.get() : v;
+    }
+
+    @Override
+    public V getOrFail(K k) throws NoSuchElementException {
+        V v = _root.find(k, k.hashCode(), 0);
+        if (v == null) {
+            throw new NoSuchElementException();
+        }
+        return v;
     }
 
     public boolean containsKey(K key) {
-        return _root.contains(key);
+        return _root.find(key, key.hashCode(), 0) != null;
     }
 
+    /**
+     * Returns the entries of the map. The iteration walks the tree lazily and needs only O(depth) memory.
+     * @return the key-value pairs
+     */
     @Override
     public Iterable<Pair<K, V>> asKeyValuePairs() {
-        return _root.asKeyValuePairs().collect(Collectors.toList());
+        return new Iterable<Pair<K, V>>() {
+            @Override
+            public Iterator<Pair<K, V>> iterator() {
+                return new NodeIterator<>(_root, Pair::of);
+            }
+
+            @Override
+            public Spliterator<Pair<K, V>> spliterator() {
+                return HashMap.this.spliterator();
+            }
+        };
+    }
+
+    private Spliterator<Pair<K, V>> spliterator() {
+        return new NodeSpliterator<>(_root, Pair::of, ENTRY_CHARACTERISTICS);
     }
 
     public Stream<Pair<K, V>> stream() {
-        return StreamSupport.stream(asKeyValuePairs().spliterator(), false);
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Returns a parallel stream of the entries, which is split along the structure of the underlying tree.
+     * @return the stream
+     */
+    public Stream<Pair<K, V>> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
     }
 
     @Override
     public Opt<HashMap<K, V>> removeOpt(K k) {
-        return _root.removeOpt(k).map(root -> new HashMap<>(root, _size - 1));
+        Node<K, V> root = _root.remove(k, k.hashCode(), 0, new Change(), null);
+        if (root == _root) {
+            return Opt.none();
+        }
+        return Opt.some(_size == 1 ? empty() : new HashMap<>(root, _size - 1));
     }
 
     @Override
@@ -89,15 +201,175 @@ public class HashMap<K, V> implements Puttable<K, V, HashMap<K, V>> {
 
     @Override
     public HashMap<K, V> put(K k, V v) {
-        return new HashMap<>(_root.put(k, v), _size + 1);
+        Change change = new Change();
+        Node<K, V> root = _root.put(k, Objects.requireNonNull(v), k.hashCode(), 0, true, change, null);
+        return root == _root
+                   ? this
+                   : new HashMap<>(root, change._added ? _size + 1 : _size);
+    }
+
+    /**
+     * Replaces the value of a key by the result of the given function, which gets the current value or null if
+     * the key doesn't exist. If the function returns null, the key is removed. Like all other update methods, this
+     * needs only one traversal of the tree, and returns this map if the value didn't change.
+     * @param k the key
+     * @param fn the function computing the new value
+     * @return the updated map
+     */
+    public HashMap<K, V> compute(K k, BiFunction<? super K, ? super V, ? extends V> fn) {
+        Change change = new Change();
+        Node<K, V> root = _root.update(k, k.hashCode(), 0, fn, change, null);
+        if (root == _root) {
+            return this;
+        }
+        if (change._removed) {
+            return _size == 1 ? empty() : new HashMap<>(root, _size - 1);
+        }
+        return new HashMap<>(root, change._added ? _size + 1 : _size);
+    }
+
+    /**
+     * Adds the result of the given function for a key, if the key doesn't exist yet and the result is not null.
+     * @param k the key
+     * @param fn the function computing the value
+     * @return the updated map
+     */
+    public HashMap<K, V> computeIfAbsent(K k, Function<? super K, ? extends V> fn) {
+        return compute(k, (key, v) -> v == null ? fn.apply(key) : v);
     }
 
-    public HashSet<K> keys() {
-        return HashSet.from(_root.asKeyValuePairs().map(Pair::get1).collect(Collectors.toList()));
+    /**
+     * Replaces the value of an existing key by the result of the given function. If the function returns null,
+     * the key is removed.
+     * @param k the key
+     * @param fn the function computing the new value from the current one
+     * @return the updated map
+     */
+    public HashMap<K, V> computeIfPresent(K k, BiFunction<? super K, ? super V, ? extends V> fn) {
+        return compute(k, (key, v) -> v == null ? null : fn.apply(key, v));
     }
 
-    public List<V> values() {
-        return List.ofAll(_root.asKeyValuePairs().map(Pair::get2).collect(Collectors.toList()));
+    /**
+     * Adds the value for a key if the key doesn't exist yet, else replaces the current value by the result of the
+     * given function applied to the current and the given value. If the function returns null, the key is removed.
+     * @param k the key
+     * @param v the value
+     * @param fn the function combining the current and the given value
+     * @return the updated map
+     */
+    public HashMap<K, V> merge(K k, V v, BinaryOperator<V> fn) {
+        Objects.requireNonNull(v);
+        return compute(k, (key, old) -> old == null ? v : fn.apply(old, v));
+    }
+
+    /**
+     * Combines this map with another one. Keys from only one map keep their values, for keys in both maps the
+     * values are combined by the given function; if it returns null, the key is removed. The maps are combined
+     * node by node, so subtrees existing in only one map are shared with the result instead of being copied.
+     * Large maps are combined in parallel, so the function must be safe to call from multiple threads.
+     * @param that the other map
+     * @param fn the function combining the value of this map and the value of the other map
+     * @return the combined map
+     */
+    public HashMap<K, V> merge(HashMap<K, V> that, BiFunction<? super V, ? super V, ? extends V> fn) {
+        return combine(new Combiner<>(Combiner.MERGE, fn), that);
+    }
+
+    /**
+     * Combines this map with another one, keeping the values of this map for keys in both maps. Like
+     * {@link #merge(HashMap, BiFunction)}, but subtrees shared by both maps are taken over without visiting them.
+     * @param that the other map
+     * @return the combined map
+     */
+    @SuppressWarnings("unchecked")
+    public HashMap<K, V> union(HashMap<K, V> that) {
+        return combine(new Combiner<>(Combiner.MERGE, (BiFunction<V, V, V>) Combiner.FIRST), that);
+    }
+
+    /**
+     * Returns a map with only the entries whose keys are contained in the given map.
+     * @param that the map with the keys to keep
+     * @return the restricted map
+     */
+    public HashMap<K, V> retainKeys(HashMap<K, ?> that) {
+        return combine(new Combiner<>(Combiner.RETAIN, null), that);
+    }
+
+    /**
+     * Returns a map without the entries whose keys are contained in the given map.
+     * @param that the map with the keys to remove
+     * @return the reduced map
+     */
+    public HashMap<K, V> removeKeys(HashMap<K, ?> that) {
+        return combine(new Combiner<>(Combiner.REMOVE, null), that);
+    }
+
+    /**
+     * Checks whether all keys of the given map are contained in this map. Both tries are walked in lockstep, so
+     * subtrees shared by both maps are skipped, and the check stops at the first missing key without allocating.
+     * @param that the other map
+     * @return whether the keys of the other map are a subset of the keys of this map
+     */
+    public boolean containsKeys(HashMap<K, ?> that) {
+        return that._size <= _size && Node.containsKeys(_root, that._root, 0);
+    }
+
+    private HashMap<K, V> combine(Combiner<K, V> combiner, HashMap<K, ?> that) {
+        Node<K, V> root = combiner.combine(_root, that._root, 0);
+        if (root == _root) {
+            return this;
+        }
+        return root.size() == 0 ? empty() : new HashMap<>(root, root.size());
+    }
+
+    /**
+     * Returns an equal map whose nodes are canonical instances, shared by all interned maps with equal subtrees.
+     * This pays off when many similar maps are kept, as they need less memory, and comparing interned maps stops
+     * at the first identical subtree. The canonical nodes are held weakly, so interning doesn't prevent garbage
+     * collection. Equal keys and values are not distinguished, so the entries of the result may be equal instances
+     * from another map. Interning an already interned map takes O(1), a modified one O(log n).
+     * @return the interned map
+     */
+    public HashMap<K, V> intern() {
+        Node<K, V> root = Node.intern(_root);
+        return root == _root ? this : new HashMap<>(root, _size);
+    }
+
+    /**
+     * Returns the differences between an older version of this map and this map, as triples of the key, the old
+     * value and the new value. Added keys have no old value, removed keys have no new value. Values are compared by
+     * equals. The stream is lazy, and subtrees shared by both versions are skipped without looking at them, so for
+     * a map derived from the older one the cost depends on the number of changes rather than on the map size.
+     * @param older the older version
+     * @return the differences
+     */
+    public Stream<Triple<K, Opt<V>, Opt<V>>> diff(HashMap<K, V> older) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(new DiffIterator<>(_root, older._root),
+            Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE), false);
+    }
+
+    /**
+     * Returns a view of the keys, which is created in O(1) and iterates the tree of this map directly.
+     * @return the keys
+     */
+    public KeySet<K> keys() {
+        return new KeySet<>(this);
+    }
+
+    /**
+     * Returns a view of the values, which is created in O(1) and iterates the tree of this map directly.
+     * @return the values
+     */
+    public Values<V> values() {
+        return new Values<>(this);
+    }
+
+    /**
+     * Returns the number of levels of the underlying tree, for diagnostic purposes.
+     * @return the depth, 0 for an empty collection
+     */
+    int depth() {
+        return _size == 0 ? 0 : _root.depth();
     }
 
     @SuppressWarnings("unchecked")
@@ -105,163 +377,1712 @@ public class HashMap<K, V> implements Puttable<K, V, HashMap<K, V>> {
         return (Node<K, V>) EMPTY;
     }
 
-    private static class Node<K, V> {
-        final int _hashCode;
-        final Stack<Pair<K, V>> _kv;
-        final Node<K, V> _left;
-        final Node<K, V> _right;
+    private static <K, V> Iterator<K> keyIterator(Node<K, V> root) {
+        return new NodeIterator<>(root, (k, v) -> k);
+    }
+
+    private static <K, V> Spliterator<K> keySpliterator(Node<K, V> root) {
+        return new NodeSpliterator<>(root, (k, v) -> k, ENTRY_CHARACTERISTICS);
+    }
+
+    private static <K, V> Iterator<V> valueIterator(Node<K, V> root) {
+        return new NodeIterator<>(root, (k, v) -> v);
+    }
+
+    private static <K, V> Spliterator<V> valueSpliterator(Node<K, V> root) {
+        return new NodeSpliterator<>(root, (k, v) -> v, ENTRY_CHARACTERISTICS & ~Spliterator.DISTINCT);
+    }
+
+    /**
+     * A read-only view of the keys of a HashMap. Lookups go through the map, and a {@link HashSet} is only built
+     * when {@link #toHashSet()} is called.
+     *
+     * @param <K> the key type
+     */
+    public static final class KeySet<K> implements Iterable<K> {
+        private final HashMap<K, ?> _map;
+
+        private KeySet(HashMap<K, ?> map) {
+            _map = map;
+        }
+
+        public long size() {
+            return _map.size();
+        }
+
+        public boolean isEmpty() {
+            return _map.isEmpty();
+        }
+
+        public boolean contains(K key) {
+            return _map.containsKey(key);
+        }
+
+        @Override
+        public Iterator<K> iterator() {
+            return keyIterator(_map._root);
+        }
+
+        @Override
+        public Spliterator<K> spliterator() {
+            return keySpliterator(_map._root);
+        }
+
+        public Stream<K> stream() {
+            return StreamSupport.stream(spliterator(), false);
+        }
+
+        public Stream<K> parallelStream() {
+            return StreamSupport.stream(spliterator(), true);
+        }
+
+        /**
+         * Passes all keys to the action. Unlike the iterator, this walks the tree recursively and doesn't allocate.
+         * @param action the action
+         */
+        @Override
+        public void forEach(Consumer<? super K> action) {
+            _map._root.forEachKey(action);
+        }
 
-        private Node() {
-            _hashCode = 0;
-            _kv = null;
-            _left = null;
-            _right = null;
+        public HashSet<K> toHashSet() {
+            return HashSet.from(this);
         }
 
-        private Node(int hashCode, Stack<Pair<K, V>> kv, Node<K, V> left, Node<K, V> right) {
-            _hashCode = hashCode;
-            _kv = Objects.requireNonNull(kv);
-            _left = left == null || left.isEmpty() ? null : left;
-            _right = right == null || right.isEmpty() ? null : right;
+        @Override
+        public String toString() {
+            StringJoiner joiner = new StringJoiner(", ");
+            forEach(k -> joiner.add(k.toString()));
+            return String.format("%s[%s]", getClass().getSimpleName(), joiner.toString());
         }
+    }
 
+    /**
+     * A read-only view of the values of a HashMap, which contains a value as often as it occurs in the map. A
+     * {@link List} is only built when {@link #toList()} is called.
+     *
+     * @param <V> the value type
+     */
+    public static final class Values<V> implements Iterable<V> {
+        private final HashMap<?, V> _map;
 
-        private Node(K key, V value, Node<K, V> left, Node<K, V> right) {
-            this(key.hashCode(), Stack.of(Pair.of(key, value)), left, right);
+        private Values(HashMap<?, V> map) {
+            _map = map;
         }
 
-        public Stream<Pair<K, V>> asKeyValuePairs() {
-            return isEmpty()
-                       ? Stream.empty()
-                       : Stream.concat(Stream.concat(_kv.stream(), left().asKeyValuePairs()), right().asKeyValuePairs());
+        public long size() {
+            return _map.size();
         }
 
         public boolean isEmpty() {
-            return this == EMPTY;
+            return _map.isEmpty();
+        }
+
+        @Override
+        public Iterator<V> iterator() {
+            return valueIterator(_map._root);
+        }
+
+        @Override
+        public Spliterator<V> spliterator() {
+            return valueSpliterator(_map._root);
+        }
+
+        public Stream<V> stream() {
+            return StreamSupport.stream(spliterator(), false);
+        }
+
+        public Stream<V> parallelStream() {
+            return StreamSupport.stream(spliterator(), true);
+        }
+
+        public List<V> toList() {
+            return List.ofAll(this);
+        }
+
+        @Override
+        public String toString() {
+            StringJoiner joiner = new StringJoiner(", ");
+            forEach(v -> joiner.add(v.toString()));
+            return String.format("%s[%s]", getClass().getSimpleName(), joiner.toString());
+        }
+    }
+
+    /**
+     * Records whether an operation added or removed a key. Nodes modified in place by a {@link Transient} can't
+     * be compared by identity to find out.
+     */
+    private static final class Change {
+        boolean _added;
+        boolean _removed;
+
+        Change reset() {
+            _added = false;
+            _removed = false;
+            return this;
+        }
+    }
+
+    /**
+     * A trie node. Nodes are immutable, except for nodes created by a {@link Transient}, which carry the owner
+     * token of that transient and may be modified in place by it as long as it is not persistent yet.
+     */
+    private static abstract class Node<K, V> {
+
+        static final int BITS = 5;
+        static final int HASH_BITS = 32;
+
+        final Object _owner;
+
+        Node(Object owner) {
+            _owner = owner;
+        }
+
+        boolean isOwnedBy(Object owner) {
+            return owner != null && owner == _owner;
+        }
+
+        /**
+         * Returns the value stored under the key, or null if there is none. This is the lookup path of all
+         * accessors, so it must not allocate.
+         */
+        abstract V find(K key, int hash, int shift);
+
+        /**
+         * Returns a node with the given entry added, or this node if nothing changed or if it was modified in place.
+         * If replace is false, the value of an existing key is kept.
+         */
+        abstract Node<K, V> put(K key, V value, int hash, int shift, boolean replace, Change change, Object owner);
+
+        /**
+         * Returns a node without the given key, or this node if the key doesn't exist or if it was modified in place.
+         */
+        abstract Node<K, V> remove(K key, int hash, int shift, Change change, Object owner);
+
+        /**
+         * Returns a node where the value of the key is replaced by the result of the function, which gets the key and
+         * the current value or null. If the function returns null, the key is removed. Returns this node if nothing
+         * changed or if it was modified in place.
+         */
+        abstract Node<K, V> update(K key, int hash, int shift, BiFunction<? super K, ? super V, ? extends V> fn,
+                                   Change change, Object owner);
+
+        abstract int dataArity();
+
+        abstract K keyAt(int index);
+
+        abstract V valueAt(int index);
+
+        abstract int nodeArity();
+
+        abstract Node<K, V> nodeAt(int index);
+
+        /**
+         * Returns the number of entries in this node and all its sub-nodes.
+         */
+        abstract long size();
+
+        /**
+         * Returns the sum of the hash codes of the entries in this node and all its sub-nodes.
+         */
+        abstract int hashSum();
+
+        /**
+         * Checks whether the node contains only one entry, which should then be inlined in the parent node.
+         */
+        boolean hasSingleEntry() {
+            return nodeArity() == 0 && dataArity() == 1;
+        }
+
+        /**
+         * Returns a node with the same entries in the same order whose entries can be accessed by index in O(1), for
+         * loops over all entries of a node.
+         */
+        Node<K, V> flattened() {
+            return this;
+        }
+
+        /**
+         * Passes the keys of this node and all its sub-nodes to the action, without allocating.
+         */
+        void forEachKey(Consumer<? super K> action) {
+            for (int i = 0; i < dataArity(); i++) {
+                action.accept(keyAt(i));
+            }
+            for (int i = 0; i < nodeArity(); i++) {
+                nodeAt(i).forEachKey(action);
+            }
         }
 
-        private Node<K, V> left() {
-            return _left == null ? emptyNode() : _left;
+        int depth() {
+            int depth = 0;
+            for (int i = 0; i < nodeArity(); i++) {
+                depth = Math.max(depth, nodeAt(i).depth());
+            }
+            return depth + 1;
         }
 
-        private Node<K, V> right() {
-            return _right == null ? emptyNode() : _right;
+        /**
+         * Returns the hash code of an entry, which is the hash code of the corresponding {@link Pair}.
+         */
+        static int entryHash(Object key, Object value) {
+            return 37 * key.hashCode() + 73 * value.hashCode();
         }
 
-        private boolean contains(K key) {
-            if (isEmpty()) {
+        @SuppressWarnings("unchecked")
+        static boolean equal(Node<?, ?> node, Node<?, ?> other, int shift) {
+            if (node == other) {
+                return true;
+            }
+            if (node.size() != other.size() || node.hashSum() != other.hashSum()) {
+                return false;
+            }
+            if (shift >= HASH_BITS) {
+                // the order of entries in collision nodes depends on the history, so look them up
+                node = node.flattened();
+                for (int i = 0; i < node.dataArity(); i++) {
+                    Object value = ((Node<Object, ?>) other).find(node.keyAt(i), 0, shift);
+                    if (!node.valueAt(i).equals(value)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            BitmapNode<?, ?> bitmapNode = (BitmapNode<?, ?>) node;
+            BitmapNode<?, ?> otherBitmapNode = (BitmapNode<?, ?>) other;
+            if (bitmapNode._dataMap != otherBitmapNode._dataMap || bitmapNode._nodeMap != otherBitmapNode._nodeMap) {
                 return false;
             }
-            if (key.hashCode() == _hashCode) {
-                return _kv.stream().anyMatch(pair -> pair.get1().equals(key));
+            for (int i = 0; i < node.dataArity(); i++) {
+                if (!node.keyAt(i).equals(other.keyAt(i)) || !node.valueAt(i).equals(other.valueAt(i))) {
+                    return false;
+                }
+            }
+            for (int i = 0; i < node.nodeArity(); i++) {
+                if (!equal(node.nodeAt(i), other.nodeAt(i), shift + BITS)) {
+                    return false;
+                }
             }
-            return key.hashCode() < _hashCode
-                       ? left().contains(key)
-                       : right().contains(key);
+            return true;
         }
 
-        private Opt<V> getOpt(K key) {
-            if (isEmpty()) {
-                return Opt.none();
-            } else if (_hashCode == key.hashCode()) {
-                return Opt.fromOptional(_kv.stream()
-                                           .filter(pair -> pair.get1().equals(key))
-                                           .map(Pair::get2)
-                                           .findFirst());
-            } else {
-                return key.hashCode() < _hashCode
-                           ? left().getOpt(key)
-                           : right().getOpt(key);
+        /**
+         * Returns the canonical instance of the node. Sub-nodes are interned first, so nodes can be compared for
+         * interning with identical instead of equal sub-nodes, and an interned subtree is found in one lookup.
+         */
+        @SuppressWarnings("unchecked")
+        static <K, V> Node<K, V> intern(Node<K, V> node) {
+            if (node == EMPTY) {
+                return node;
+            }
+            Node<K, V> canonical = (Node<K, V>) INTERNED.find(node);
+            if (canonical != null) {
+                return canonical;
+            }
+            if (node instanceof BitmapNode) {
+                BitmapNode<K, V> bitmapNode = (BitmapNode<K, V>) node;
+                int offset = 2 * node.dataArity();
+                Object[] content = null;
+                for (int i = 0; i < node.nodeArity(); i++) {
+                    Node<K, V> subNode = node.nodeAt(i);
+                    Node<K, V> internedSubNode = intern(subNode);
+                    if (internedSubNode != subNode) {
+                        if (content == null) {
+                            content = bitmapNode._content.clone();
+                        }
+                        content[offset + i] = internedSubNode;
+                    }
+                }
+                if (content != null) {
+                    node = new BitmapNode<>(bitmapNode._dataMap, bitmapNode._nodeMap, content, bitmapNode._size,
+                        bitmapNode._hashSum, null);
+                }
+            }
+            return (Node<K, V>) INTERNED.intern(node);
+        }
+
+        private static int internHash(Node<?, ?> node) {
+            int hash = 31 * node.hashSum() + Long.hashCode(node.size());
+            if (node instanceof BitmapNode) {
+                hash = 31 * (31 * hash + ((BitmapNode<?, ?>) node)._dataMap) + ((BitmapNode<?, ?>) node)._nodeMap;
             }
+            return hash;
         }
 
-        private Opt<Node<K, V>> removeOpt(K key) {
-            if (isEmpty()) {
-                return Opt.none();
+        /**
+         * Checks whether two nodes are interchangeable: nodes of the same class with equal entries and identical
+         * sub-nodes.
+         */
+        private static boolean sameAs(Node<?, ?> node, Node<?, ?> other) {
+            if (node.getClass() != other.getClass()) {
+                return false;
+            }
+            if (!(node instanceof BitmapNode)) {
+                return equal(node, other, HASH_BITS);
+            }
+            if (node.size() != other.size() || node.hashSum() != other.hashSum()
+                    || ((BitmapNode<?, ?>) node)._dataMap != ((BitmapNode<?, ?>) other)._dataMap
+                    || ((BitmapNode<?, ?>) node)._nodeMap != ((BitmapNode<?, ?>) other)._nodeMap) {
+                return false;
+            }
+            for (int i = 0; i < node.dataArity(); i++) {
+                if (!node.keyAt(i).equals(other.keyAt(i)) || !node.valueAt(i).equals(other.valueAt(i))) {
+                    return false;
+                }
             }
-            if (key.hashCode() == _hashCode) {
-                if (_kv.stream().noneMatch(pair -> pair.get1().equals(key))) {
-                    return Opt.none();
-                } else if (_kv.size() == 1) {
-                    return Opt.some(merge(left(), right()));
+            for (int i = 0; i < node.nodeArity(); i++) {
+                if (node.nodeAt(i) != other.nodeAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        static <K> boolean containsKeys(Node<K, ?> node, Node<K, ?> other, int shift) {
+            if (node == other || other.size() == 0) {
+                return true;
+            }
+            if (other.size() > node.size()) {
+                return false;
+            }
+            if (shift >= HASH_BITS) {
+                other = other.flattened();
+                for (int i = 0; i < other.dataArity(); i++) {
+                    K key = other.keyAt(i);
+                    if (node.find(key, key.hashCode(), shift) == null) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            BitmapNode<K, ?> bitmapNode = (BitmapNode<K, ?>) node;
+            BitmapNode<K, ?> otherBitmapNode = (BitmapNode<K, ?>) other;
+            if ((otherBitmapNode._nodeMap & ~bitmapNode._nodeMap) != 0) {
+                // a single entry can't contain the keys of a sub-node
+                return false;
+            }
+            for (int bits = otherBitmapNode._dataMap; bits != 0; bits &= bits - 1) {
+                int bitpos = Integer.lowestOneBit(bits);
+                K key = other.keyAt(index(otherBitmapNode._dataMap, bitpos));
+                if ((bitmapNode._dataMap & bitpos) != 0) {
+                    if (!key.equals(node.keyAt(index(bitmapNode._dataMap, bitpos)))) {
+                        return false;
+                    }
+                } else if ((bitmapNode._nodeMap & bitpos) == 0) {
+                    return false;
                 } else {
-                    Stack<Pair<K, V>> kv = _kv.stream()
-                                              .filter(pair -> !pair.get1().equals(key))
-                                              .collect(Stack::empty, Stack::add, UnitKeyAddable::addAll);
-                    return Opt.some(new Node<>(_hashCode, kv, _left, _right));
+                    Node<K, ?> subNode = node.nodeAt(index(bitmapNode._nodeMap, bitpos));
+                    if (subNode.find(key, key.hashCode(), shift + BITS) == null) {
+                        return false;
+                    }
+                }
+            }
+            for (int bits = otherBitmapNode._nodeMap; bits != 0; bits &= bits - 1) {
+                int bitpos = Integer.lowestOneBit(bits);
+                if (!containsKeys(node.nodeAt(index(bitmapNode._nodeMap, bitpos)),
+                    other.nodeAt(index(otherBitmapNode._nodeMap, bitpos)), shift + BITS)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        static int mask(int hash, int shift) {
+            return (hash >>> shift) & 0x1F;
+        }
+
+        static int bitpos(int mask) {
+            return 1 << mask;
+        }
+
+        static int index(int bitmap, int bitpos) {
+            return Integer.bitCount(bitmap & (bitpos - 1));
+        }
+
+        static <K, V> Node<K, V> mergeTwo(K k0, V v0, int h0, K k1, V v1, int h1, int shift, Object owner) {
+            if (shift >= HASH_BITS) {
+                return new CollisionNode<>(h0, new Object[]{k0, v0, k1, v1}, owner);
+            }
+            int mask0 = mask(h0, shift);
+            int mask1 = mask(h1, shift);
+            if (mask0 == mask1) {
+                Node<K, V> node = mergeTwo(k0, v0, h0, k1, v1, h1, shift + BITS, owner);
+                return new BitmapNode<>(0, bitpos(mask0), new Object[]{node}, 2L, node.hashSum(), owner);
+            }
+            Object[] content = mask0 < mask1
+                                   ? new Object[]{k0, v0, k1, v1}
+                                   : new Object[]{k1, v1, k0, v0};
+            return new BitmapNode<>(bitpos(mask0) | bitpos(mask1), 0, content, 2L,
+                entryHash(k0, v0) + entryHash(k1, v1), owner);
+        }
+    }
+
+    /**
+     * A node storing its entries and sub-nodes in one array: first key-value pairs in the order of the data bitmap,
+     * followed by the sub-nodes in the order of the node bitmap.
+     */
+    private static final class BitmapNode<K, V> extends Node<K, V> {
+        int _dataMap;
+        int _nodeMap;
+        Object[] _content;
+        long _size;
+        int _hashSum;
+
+        private BitmapNode(int dataMap, int nodeMap, Object[] content, long size, int hashSum, Object owner) {
+            super(owner);
+            _dataMap = dataMap;
+            _nodeMap = nodeMap;
+            _content = content;
+            _size = size;
+            _hashSum = hashSum;
+        }
+
+        @Override
+        long size() {
+            return _size;
+        }
+
+        @Override
+        int hashSum() {
+            return _hashSum;
+        }
+
+        @Override
+        int dataArity() {
+            return Integer.bitCount(_dataMap);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        K keyAt(int index) {
+            return (K) _content[2 * index];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        V valueAt(int index) {
+            return (V) _content[2 * index + 1];
+        }
+
+        @Override
+        int nodeArity() {
+            return Integer.bitCount(_nodeMap);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        Node<K, V> nodeAt(int index) {
+            return (Node<K, V>) _content[2 * dataArity() + index];
+        }
+
+        @Override
+        V find(K key, int hash, int shift) {
+            int bitpos = bitpos(mask(hash, shift));
+            if ((_dataMap & bitpos) != 0) {
+                int index = index(_dataMap, bitpos);
+                return key.equals(keyAt(index)) ? valueAt(index) : null;
+            }
+            if ((_nodeMap & bitpos) != 0) {
+                return nodeAt(index(_nodeMap, bitpos)).find(key, hash, shift + BITS);
+            }
+            return null;
+        }
+
+        @Override
+        Node<K, V> put(K key, V value, int hash, int shift, boolean replace, Change change, Object owner) {
+            int bitpos = bitpos(mask(hash, shift));
+            if ((_dataMap & bitpos) != 0) {
+                int index = index(_dataMap, bitpos);
+                K currentKey = keyAt(index);
+                if (key.equals(currentKey)) {
+                    return !replace || valueAt(index) == value
+                               ? this
+                               : withReplacedValue(index, value, owner);
+                }
+                change._added = true;
+                Node<K, V> node = mergeTwo(currentKey, valueAt(index), currentKey.hashCode(),
+                    key, value, hash, shift + BITS, owner);
+                return withMigratedToNode(bitpos, node, owner);
+            }
+            if ((_nodeMap & bitpos) != 0) {
+                int index = index(_nodeMap, bitpos);
+                Node<K, V> node = nodeAt(index);
+                long nodeSize = node.size();
+                int nodeHash = node.hashSum();
+                Node<K, V> newNode = node.put(key, value, hash, shift + BITS, replace, change, owner);
+                return withChangedNode(bitpos, index, node, newNode, nodeSize, nodeHash, owner);
+            }
+            change._added = true;
+            return withInsertedValue(bitpos, key, value, owner);
+        }
+
+        @Override
+        Node<K, V> remove(K key, int hash, int shift, Change change, Object owner) {
+            int bitpos = bitpos(mask(hash, shift));
+            if ((_dataMap & bitpos) != 0) {
+                int index = index(_dataMap, bitpos);
+                if (!key.equals(keyAt(index))) {
+                    return this;
                 }
+                change._removed = true;
+                return withRemovedValue(bitpos, index, owner);
+            }
+            if ((_nodeMap & bitpos) != 0) {
+                int index = index(_nodeMap, bitpos);
+                Node<K, V> node = nodeAt(index);
+                long nodeSize = node.size();
+                int nodeHash = node.hashSum();
+                Node<K, V> newNode = node.remove(key, hash, shift + BITS, change, owner);
+                return withChangedNode(bitpos, index, node, newNode, nodeSize, nodeHash, owner);
+            }
+            return this;
+        }
+
+        @Override
+        Node<K, V> update(K key, int hash, int shift, BiFunction<? super K, ? super V, ? extends V> fn,
+                          Change change, Object owner) {
+            int bitpos = bitpos(mask(hash, shift));
+            if ((_dataMap & bitpos) != 0) {
+                int index = index(_dataMap, bitpos);
+                K currentKey = keyAt(index);
+                if (key.equals(currentKey)) {
+                    V oldValue = valueAt(index);
+                    V value = fn.apply(key, oldValue);
+                    if (value == null) {
+                        change._removed = true;
+                        return withRemovedValue(bitpos, index, owner);
+                    }
+                    return value == oldValue ? this : withReplacedValue(index, value, owner);
+                }
+                V value = fn.apply(key, null);
+                if (value == null) {
+                    return this;
+                }
+                change._added = true;
+                Node<K, V> node = mergeTwo(currentKey, valueAt(index), currentKey.hashCode(),
+                    key, value, hash, shift + BITS, owner);
+                return withMigratedToNode(bitpos, node, owner);
+            }
+            if ((_nodeMap & bitpos) != 0) {
+                int index = index(_nodeMap, bitpos);
+                Node<K, V> node = nodeAt(index);
+                long nodeSize = node.size();
+                int nodeHash = node.hashSum();
+                Node<K, V> newNode = node.update(key, hash, shift + BITS, fn, change, owner);
+                return withChangedNode(bitpos, index, node, newNode, nodeSize, nodeHash, owner);
+            }
+            V value = fn.apply(key, null);
+            if (value == null) {
+                return this;
             }
-            if (key.hashCode() < _hashCode) {
-                return left().removeOpt(key).map(
-                    left -> new Node<>(_hashCode, _kv, left, _right));
+            change._added = true;
+            return withInsertedValue(bitpos, key, value, owner);
+        }
+
+        /**
+         * Returns a node with the given content, which is this node if it may be modified in place.
+         */
+        private BitmapNode<K, V> with(int dataMap, int nodeMap, Object[] content, long size, int hashSum,
+                                      Object owner) {
+            if (isOwnedBy(owner)) {
+                _dataMap = dataMap;
+                _nodeMap = nodeMap;
+                _content = content;
+                _size = size;
+                _hashSum = hashSum;
+                return this;
+            }
+            return new BitmapNode<>(dataMap, nodeMap, content, size, hashSum, owner);
+        }
+
+        private BitmapNode<K, V> withSlot(int slot, Object value, long size, int hashSum, Object owner) {
+            if (isOwnedBy(owner)) {
+                _content[slot] = value;
+                _size = size;
+                _hashSum = hashSum;
+                return this;
+            }
+            Object[] content = _content.clone();
+            content[slot] = value;
+            return new BitmapNode<>(_dataMap, _nodeMap, content, size, hashSum, owner);
+        }
+
+        private BitmapNode<K, V> withReplacedValue(int index, V value, Object owner) {
+            K key = keyAt(index);
+            int hashSum = _hashSum - entryHash(key, valueAt(index)) + entryHash(key, value);
+            return withSlot(2 * index + 1, value, _size, hashSum, owner);
+        }
+
+        /**
+         * Returns a node reflecting the change of a sub-node. The old size and hash sum of the sub-node must be
+         * passed, as it might have been modified in place.
+         */
+        private Node<K, V> withChangedNode(int bitpos, int index, Node<K, V> node, Node<K, V> newNode,
+                                           long nodeSize, int nodeHash, Object owner) {
+            long size = _size - nodeSize + newNode.size();
+            int hashSum = _hashSum - nodeHash + newNode.hashSum();
+            if (newNode.hasSingleEntry()) {
+                return withMigratedToValue(bitpos, index, newNode.keyAt(0), newNode.valueAt(0), size, hashSum, owner);
+            }
+            if (newNode == node) {
+                // either nothing changed, or the sub-node was modified in place
+                return size == _size && hashSum == _hashSum
+                           ? this
+                           : with(_dataMap, _nodeMap, isOwnedBy(owner) ? _content : _content.clone(), size, hashSum,
+                               owner);
+            }
+            return withSlot(2 * dataArity() + index, newNode, size, hashSum, owner);
+        }
+
+        private BitmapNode<K, V> withInsertedValue(int bitpos, K key, V value, Object owner) {
+            int at = 2 * index(_dataMap, bitpos);
+            Object[] content = new Object[_content.length + 2];
+            System.arraycopy(_content, 0, content, 0, at);
+            content[at] = key;
+            content[at + 1] = value;
+            System.arraycopy(_content, at, content, at + 2, _content.length - at);
+            return with(_dataMap | bitpos, _nodeMap, content, _size + 1, _hashSum + entryHash(key, value), owner);
+        }
+
+        private BitmapNode<K, V> withRemovedValue(int bitpos, int index, Object owner) {
+            int hashSum = _hashSum - entryHash(keyAt(index), valueAt(index));
+            int at = 2 * index;
+            Object[] content = new Object[_content.length - 2];
+            System.arraycopy(_content, 0, content, 0, at);
+            System.arraycopy(_content, at + 2, content, at, _content.length - at - 2);
+            return with(_dataMap ^ bitpos, _nodeMap, content, _size - 1, hashSum, owner);
+        }
+
+        private BitmapNode<K, V> withMigratedToNode(int bitpos, Node<K, V> node, Object owner) {
+            // the key-value pair at the old position is removed, and the node is inserted among the sub-nodes
+            int oldIndex = index(_dataMap, bitpos);
+            long size = _size - 1 + node.size();
+            int hashSum = _hashSum - entryHash(keyAt(oldIndex), valueAt(oldIndex)) + node.hashSum();
+            int oldAt = 2 * oldIndex;
+            int newAt = 2 * (dataArity() - 1) + index(_nodeMap, bitpos);
+            Object[] content = new Object[_content.length - 1];
+            System.arraycopy(_content, 0, content, 0, oldAt);
+            System.arraycopy(_content, oldAt + 2, content, oldAt, newAt - oldAt);
+            content[newAt] = node;
+            System.arraycopy(_content, newAt + 2, content, newAt + 1, _content.length - newAt - 2);
+            return with(_dataMap ^ bitpos, _nodeMap | bitpos, content, size, hashSum, owner);
+        }
+
+        private BitmapNode<K, V> withMigratedToValue(int bitpos, int nodeIndex, K key, V value, long size,
+                                                     int hashSum, Object owner) {
+            // the sub-node is removed, and the key-value pair is inserted among the other pairs
+            int oldAt = 2 * dataArity() + nodeIndex;
+            int newAt = 2 * index(_dataMap, bitpos);
+            Object[] content = new Object[_content.length + 1];
+            System.arraycopy(_content, 0, content, 0, newAt);
+            content[newAt] = key;
+            content[newAt + 1] = value;
+            System.arraycopy(_content, newAt, content, newAt + 2, oldAt - newAt);
+            System.arraycopy(_content, oldAt + 1, content, oldAt + 2, _content.length - oldAt - 1);
+            return with(_dataMap | bitpos, _nodeMap ^ bitpos, content, size, hashSum, owner);
+        }
+    }
+
+    /**
+     * A node for keys with identical hash codes, which can't be distinguished by the bitmap nodes. The entries are
+     * scanned linearly, so when the node grows beyond {@link TreeNode#TREEIFY_THRESHOLD} entries, it is replaced by
+     * a {@link TreeNode} if possible.
+     */
+    private static final class CollisionNode<K, V> extends Node<K, V> {
+        final int _hash;
+        Object[] _content;
+        int _hashSum;
+
+        private CollisionNode(int hash, Object[] content, Object owner) {
+            super(owner);
+            _hash = hash;
+            _content = content;
+            _hashSum = hashSum(content);
+        }
+
+        /**
+         * Returns a collision node with the entries, which is a {@link TreeNode} if there are many of them.
+         */
+        static <K, V> Node<K, V> of(int hash, Object[] content, Object owner) {
+            Node<K, V> tree = content.length > 2 * TreeNode.TREEIFY_THRESHOLD
+                                  ? TreeNode.treeify(hash, content, owner)
+                                  : null;
+            return tree != null ? tree : new CollisionNode<>(hash, content, owner);
+        }
+
+        private static int hashSum(Object[] content) {
+            int hashSum = 0;
+            for (int i = 0; i < content.length; i += 2) {
+                hashSum += entryHash(content[i], content[i + 1]);
+            }
+            return hashSum;
+        }
+
+        @Override
+        int hashSum() {
+            return _hashSum;
+        }
+
+        @Override
+        int dataArity() {
+            return _content.length / 2;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        K keyAt(int index) {
+            return (K) _content[2 * index];
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        V valueAt(int index) {
+            return (V) _content[2 * index + 1];
+        }
+
+        @Override
+        int nodeArity() {
+            return 0;
+        }
+
+        @Override
+        Node<K, V> nodeAt(int index) {
+            throw new IndexOutOfBoundsException("collision nodes have no sub-nodes");
+        }
+
+        @Override
+        long size() {
+            return dataArity();
+        }
+
+        private int indexOf(K key) {
+            for (int i = 0; i < dataArity(); i++) {
+                if (key.equals(keyAt(i))) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        V find(K key, int hash, int shift) {
+            int index = indexOf(key);
+            return index < 0 ? null : valueAt(index);
+        }
+
+        @Override
+        Node<K, V> put(K key, V value, int hash, int shift, boolean replace, Change change, Object owner) {
+            int index = indexOf(key);
+            if (index >= 0) {
+                if (!replace || valueAt(index) == value) {
+                    return this;
+                }
+                Object[] content = isOwnedBy(owner) ? _content : _content.clone();
+                content[2 * index + 1] = value;
+                return with(content, owner);
+            }
+            change._added = true;
+            Object[] content = new Object[_content.length + 2];
+            System.arraycopy(_content, 0, content, 0, _content.length);
+            content[_content.length] = key;
+            content[_content.length + 1] = value;
+            Node<K, V> tree = content.length > 2 * TreeNode.TREEIFY_THRESHOLD
+                                  ? TreeNode.treeify(_hash, content, owner)
+                                  : null;
+            return tree != null ? tree : with(content, owner);
+        }
+
+        @Override
+        Node<K, V> remove(K key, int hash, int shift, Change change, Object owner) {
+            int index = indexOf(key);
+            if (index < 0) {
+                return this;
+            }
+            change._removed = true;
+            int at = 2 * index;
+            Object[] content = new Object[_content.length - 2];
+            System.arraycopy(_content, 0, content, 0, at);
+            System.arraycopy(_content, at + 2, content, at, _content.length - at - 2);
+            return with(content, owner);
+        }
+
+        @Override
+        Node<K, V> update(K key, int hash, int shift, BiFunction<? super K, ? super V, ? extends V> fn,
+                          Change change, Object owner) {
+            int index = indexOf(key);
+            if (index < 0) {
+                V value = fn.apply(key, null);
+                return value == null ? this : put(key, value, hash, shift, true, change, owner);
+            }
+            V oldValue = valueAt(index);
+            V value = fn.apply(key, oldValue);
+            if (value == null) {
+                return remove(key, hash, shift, change, owner);
+            }
+            return value == oldValue ? this : put(key, value, hash, shift, true, change, owner);
+        }
+
+        private CollisionNode<K, V> with(Object[] content, Object owner) {
+            if (isOwnedBy(owner)) {
+                _content = content;
+                _hashSum = hashSum(content);
+                return this;
+            }
+            return new CollisionNode<>(_hash, content, owner);
+        }
+    }
+
+    /**
+     * A collision node for many keys of the same {@link Comparable} class, for example strings crafted for a hash
+     * flooding attack. The entries are kept in an AVL tree ordered by the keys, so the operations need O(log n)
+     * instead of O(n) steps. The node turns back into a {@link CollisionNode} when it shrinks, or when a key of
+     * another class or a key whose order is inconsistent with equals is added. Keys of another class are compared
+     * with equals only.
+     */
+    private static final class TreeNode<K, V> extends Node<K, V> {
+        static final int TREEIFY_THRESHOLD = 8;
+        static final int UNTREEIFY_THRESHOLD = 6;
+
+        @SuppressWarnings("unchecked")
+        private static final Comparator<Object> NATURAL_ORDER = (a, b) -> ((Comparable<Object>) a).compareTo(b);
+
+        final int _hash;
+        AvlNode<K, V> _tree;
+        int _hashSum;
+
+        private TreeNode(int hash, AvlNode<K, V> tree, int hashSum, Object owner) {
+            super(owner);
+            _hash = hash;
+            _tree = tree;
+            _hashSum = hashSum;
+        }
+
+        /**
+         * Returns a tree node with the entries, or null if the keys are not of one Comparable class, or if their
+         * order is inconsistent with equals.
+         */
+        @SuppressWarnings("unchecked")
+        static <K, V> TreeNode<K, V> treeify(int hash, Object[] content, Object owner) {
+            Class<?> keyClass = content[0].getClass();
+            if (!Comparable.class.isAssignableFrom(keyClass)) {
+                return null;
+            }
+            AvlNode<K, V> tree = null;
+            try {
+                for (int i = 0; i < content.length; i += 2) {
+                    K key = (K) content[i];
+                    if (key.getClass() != keyClass || AvlNode.find(tree, key, NATURAL_ORDER) != null) {
+                        return null;
+                    }
+                    tree = AvlNode.put(tree, key, (V) content[i + 1], NATURAL_ORDER);
+                }
+            } catch (ClassCastException ex) {
+                // the class implements Comparable for another type
+                return null;
+            }
+            return new TreeNode<>(hash, tree, CollisionNode.hashSum(content), owner);
+        }
+
+        private CollisionNode<K, V> untreeify(AvlNode<K, V> tree, Object owner) {
+            Object[] content = new Object[2 * (int) tree._size];
+            AvlNode.copyEntries(tree, content, 0);
+            return new CollisionNode<>(_hash, content, owner);
+        }
+
+        private boolean fits(K key) {
+            return key.getClass() == _tree._key.getClass();
+        }
+
+        /**
+         * Returns the tree node holding the key, or null. The key must be of the class of the other keys.
+         */
+        private AvlNode<K, V> lookup(K key) {
+            AvlNode<K, V> node = AvlNode.find(_tree, key, NATURAL_ORDER);
+            return node != null && key.equals(node._key) ? node : null;
+        }
+
+        @Override
+        Node<K, V> flattened() {
+            return untreeify(_tree, null);
+        }
+
+        @Override
+        void forEachKey(Consumer<? super K> action) {
+            AvlNode.forEachKey(_tree, action);
+        }
+
+        @Override
+        int hashSum() {
+            return _hashSum;
+        }
+
+        @Override
+        int dataArity() {
+            return (int) _tree._size;
+        }
+
+        @Override
+        K keyAt(int index) {
+            return AvlNode.at(_tree, index)._key;
+        }
+
+        @Override
+        V valueAt(int index) {
+            return AvlNode.at(_tree, index)._value;
+        }
+
+        @Override
+        int nodeArity() {
+            return 0;
+        }
+
+        @Override
+        Node<K, V> nodeAt(int index) {
+            throw new IndexOutOfBoundsException("collision nodes have no sub-nodes");
+        }
+
+        @Override
+        long size() {
+            return _tree._size;
+        }
+
+        @Override
+        V find(K key, int hash, int shift) {
+            AvlNode<K, V> node = fits(key) ? lookup(key) : AvlNode.scan(_tree, key);
+            return node == null ? null : node._value;
+        }
+
+        @Override
+        Node<K, V> put(K key, V value, int hash, int shift, boolean replace, Change change, Object owner) {
+            AvlNode<K, V> node = fits(key) ? AvlNode.find(_tree, key, NATURAL_ORDER) : null;
+            if (node == null || !key.equals(node._key)) {
+                if (!fits(key) || node != null) {
+                    V oldValue = find(key, hash, shift);
+                    if (oldValue != null && (!replace || oldValue == value)) {
+                        return this;
+                    }
+                    return untreeify(_tree, owner).put(key, value, hash, shift, replace, change, owner);
+                }
+                change._added = true;
+                return with(AvlNode.put(_tree, key, value, NATURAL_ORDER), _hashSum + entryHash(key, value), owner);
+            }
+            if (!replace || node._value == value) {
+                return this;
+            }
+            int hashSum = _hashSum - entryHash(node._key, node._value) + entryHash(node._key, value);
+            return with(AvlNode.put(_tree, key, value, NATURAL_ORDER), hashSum, owner);
+        }
+
+        @Override
+        Node<K, V> remove(K key, int hash, int shift, Change change, Object owner) {
+            if (!fits(key)) {
+                return AvlNode.scan(_tree, key) == null
+                           ? this
+                           : untreeify(_tree, owner).remove(key, hash, shift, change, owner);
+            }
+            AvlNode<K, V> node = lookup(key);
+            if (node == null) {
+                return this;
+            }
+            change._removed = true;
+            AvlNode<K, V> tree = AvlNode.remove(_tree, key, NATURAL_ORDER);
+            if (tree._size <= UNTREEIFY_THRESHOLD) {
+                return untreeify(tree, owner);
+            }
+            return with(tree, _hashSum - entryHash(node._key, node._value), owner);
+        }
+
+        @Override
+        Node<K, V> update(K key, int hash, int shift, BiFunction<? super K, ? super V, ? extends V> fn,
+                          Change change, Object owner) {
+            V oldValue = find(key, hash, shift);
+            V value = fn.apply(key, oldValue);
+            if (value == null) {
+                return oldValue == null ? this : remove(key, hash, shift, change, owner);
+            }
+            return value == oldValue ? this : put(key, value, hash, shift, true, change, owner);
+        }
+
+        private TreeNode<K, V> with(AvlNode<K, V> tree, int hashSum, Object owner) {
+            if (isOwnedBy(owner)) {
+                _tree = tree;
+                _hashSum = hashSum;
+                return this;
+            }
+            return new TreeNode<>(_hash, tree, hashSum, owner);
+        }
+    }
+
+    /**
+     * Combines two tries position by position. Subtrees that exist only on one side are reused, and so are
+     * subtrees that come out unchanged. Pairs of large sub-nodes are combined in parallel in the common fork-join
+     * pool.
+     */
+    private static final class Combiner<K, V> {
+        private static final int MERGE = 0;
+        private static final int RETAIN = 1;
+        private static final int REMOVE = 2;
+        private static final int PARALLEL_THRESHOLD = 1 << 13;
+        private static final Object SUB_NODE = new Object();
+        private static final Object TASK = new Object();
+        static final BiFunction<Object, Object, Object> FIRST = (first, second) -> first;
+
+        private final int _mode;
+        private final BiFunction<? super V, ? super V, ? extends V> _fn;
+
+        private Combiner(int mode, BiFunction<? super V, ? super V, ? extends V> fn) {
+            _mode = mode;
+            _fn = fn;
+        }
+
+        @SuppressWarnings("unchecked")
+        Node<K, V> combine(Node<K, V> left, Node<K, ?> right, int shift) {
+            if (left == right && (_mode != MERGE || _fn == FIRST)) {
+                return _mode == REMOVE ? emptyNode() : left;
+            }
+            if (left.size() == 0 || right.size() == 0) {
+                if (_mode == MERGE) {
+                    return left.size() == 0 ? (Node<K, V>) right : left;
+                }
+                return _mode == RETAIN ? emptyNode() : left;
+            }
+            return shift >= Node.HASH_BITS
+                       ? combineCollisions(left, right)
+                       : combineBitmaps((BitmapNode<K, V>) left, (BitmapNode<K, ?>) right, shift);
+        }
+
+        @SuppressWarnings("unchecked")
+        private Node<K, V> combineBitmaps(BitmapNode<K, V> left, BitmapNode<K, ?> right, int shift) {
+            // slots[2 * mask] and slots[2 * mask + 1] hold the result at that position: a key and a value,
+            // SUB_NODE and a node, or TASK and a task computing a node
+            Object[] slots = new Object[64];
+            int bitmap = left._dataMap | left._nodeMap | right._dataMap | right._nodeMap;
+            for (int bits = bitmap; bits != 0; bits &= bits - 1) {
+                int bitpos = Integer.lowestOneBit(bits);
+                int slot = 2 * Integer.numberOfTrailingZeros(bitpos);
+                if ((left._dataMap & bitpos) != 0) {
+                    int index = Node.index(left._dataMap, bitpos);
+                    K key = left.keyAt(index);
+                    V value = left.valueAt(index);
+                    if ((right._dataMap & bitpos) != 0) {
+                        int rightIndex = Node.index(right._dataMap, bitpos);
+                        combineEntries(slots, slot, key, value, right.keyAt(rightIndex),
+                            right.valueAt(rightIndex), shift);
+                    } else if ((right._nodeMap & bitpos) != 0) {
+                        combineEntryWithNode(slots, slot, key, value, right.nodeAt(Node.index(right._nodeMap, bitpos)),
+                            shift);
+                    } else if (_mode != RETAIN) {
+                        setEntry(slots, slot, key, value);
+                    }
+                } else if ((left._nodeMap & bitpos) != 0) {
+                    Node<K, V> node = left.nodeAt(Node.index(left._nodeMap, bitpos));
+                    if ((right._dataMap & bitpos) != 0) {
+                        int rightIndex = Node.index(right._dataMap, bitpos);
+                        combineNodeWithEntry(slots, slot, node, right.keyAt(rightIndex), right.valueAt(rightIndex),
+                            shift);
+                    } else if ((right._nodeMap & bitpos) != 0) {
+                        Node<K, ?> rightNode = right.nodeAt(Node.index(right._nodeMap, bitpos));
+                        if (node.size() + rightNode.size() >= PARALLEL_THRESHOLD) {
+                            slots[slot] = TASK;
+                            slots[slot + 1] = new CombineTask<>(this, node, rightNode, shift + Node.BITS).fork();
+                        } else {
+                            setNode(slots, slot, combine(node, rightNode, shift + Node.BITS));
+                        }
+                    } else if (_mode != RETAIN) {
+                        setNode(slots, slot, node);
+                    }
+                } else if (_mode == MERGE) {
+                    if ((right._dataMap & bitpos) != 0) {
+                        int rightIndex = Node.index(right._dataMap, bitpos);
+                        setEntry(slots, slot, right.keyAt(rightIndex), right.valueAt(rightIndex));
+                    } else {
+                        setNode(slots, slot, right.nodeAt(Node.index(right._nodeMap, bitpos)));
+                    }
+                }
+            }
+            for (int slot = 0; slot < slots.length; slot += 2) {
+                if (slots[slot] == TASK) {
+                    setNode(slots, slot, ((CombineTask<K, V>) slots[slot + 1]).join());
+                }
+            }
+            if (sameAs(slots, left)) {
+                return left;
+            }
+            if (_mode == MERGE && sameAs(slots, right)) {
+                return (Node<K, V>) right;
+            }
+            return assemble(slots);
+        }
+
+        @SuppressWarnings("unchecked")
+        private void combineEntries(Object[] slots, int slot, K key, V value, K rightKey, Object rightValue,
+                                    int shift) {
+            if (key.equals(rightKey)) {
+                if (_mode == MERGE) {
+                    V merged = _fn.apply(value, (V) rightValue);
+                    if (merged != null) {
+                        setEntry(slots, slot, key, merged);
+                    }
+                } else if (_mode == RETAIN) {
+                    setEntry(slots, slot, key, value);
+                }
+            } else if (_mode == MERGE) {
+                setNode(slots, slot, Node.mergeTwo(key, value, key.hashCode(),
+                    rightKey, (V) rightValue, rightKey.hashCode(), shift + Node.BITS, null));
+            } else if (_mode == REMOVE) {
+                setEntry(slots, slot, key, value);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void combineEntryWithNode(Object[] slots, int slot, K key, V value, Node<K, ?> rightNode,
+                                          int shift) {
+            int hash = key.hashCode();
+            if (_mode == MERGE) {
+                setNode(slots, slot, ((Node<K, V>) rightNode).update(key, hash, shift + Node.BITS,
+                    (k, rightValue) -> rightValue == null ? value : _fn.apply(value, rightValue), new Change(), null));
+            } else if ((rightNode.find(key, hash, shift + Node.BITS) != null) == (_mode == RETAIN)) {
+                setEntry(slots, slot, key, value);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void combineNodeWithEntry(Object[] slots, int slot, Node<K, V> node, K rightKey, Object rightValue,
+                                          int shift) {
+            int hash = rightKey.hashCode();
+            if (_mode == MERGE) {
+                setNode(slots, slot, node.update(rightKey, hash, shift + Node.BITS,
+                    (k, value) -> value == null ? (V) rightValue : _fn.apply(value, (V) rightValue),
+                    new Change(), null));
+            } else if (_mode == RETAIN) {
+                V value = node.find(rightKey, hash, shift + Node.BITS);
+                if (value != null) {
+                    setEntry(slots, slot, rightKey, value);
+                }
             } else {
-                return right().removeOpt(key).map(
-                    right -> new Node<>(_hashCode, _kv, _left, right));
+                setNode(slots, slot, node.remove(rightKey, hash, shift + Node.BITS, new Change(), null));
             }
         }
 
-        private Opt<Node<K, V>> addOpt(K key, V value) {
-            if (isEmpty()) {
-                return Opt.some(new Node<>(key, value, null, null));
+        @SuppressWarnings("unchecked")
+        private Node<K, V> combineCollisions(Node<K, V> left, Node<K, ?> right) {
+            Node<K, V> leftEntries = left.flattened();
+            int hash = leftEntries.keyAt(0).hashCode();
+            Object[] content = new Object[2 * (left.dataArity() + right.dataArity())];
+            int length = 0;
+            boolean same = true;
+            for (int i = 0; i < leftEntries.dataArity(); i++) {
+                K key = leftEntries.keyAt(i);
+                V value = leftEntries.valueAt(i);
+                Object rightValue = right.find(key, hash, Node.HASH_BITS);
+                V result = rightValue == null
+                               ? (_mode == RETAIN ? null : value)
+                               : (_mode == MERGE ? _fn.apply(value, (V) rightValue) : _mode == RETAIN ? value : null);
+                same &= result == value;
+                if (result != null) {
+                    content[length++] = key;
+                    content[length++] = result;
+                }
             }
-            if (key.hashCode() == _hashCode) {
-                if (_kv.stream().anyMatch(pair -> pair.get1().equals(key))) {
-                    return Opt.none();
-                } else {
-                    return Opt.some(new Node<>(_hashCode, _kv.add(Pair.of(key, value)), _left, _right));
+            if (_mode == MERGE) {
+                Node<K, ?> rightEntries = right.flattened();
+                for (int i = 0; i < rightEntries.dataArity(); i++) {
+                    K key = rightEntries.keyAt(i);
+                    if (left.find(key, hash, Node.HASH_BITS) == null) {
+                        same = false;
+                        content[length++] = key;
+                        content[length++] = rightEntries.valueAt(i);
+                    }
                 }
             }
-            if (key.hashCode() < _hashCode) {
-                return left().addOpt(key, value).map(left -> new Node<>(_hashCode, _kv, left, _right));
+            if (same) {
+                return left;
+            }
+            return length == 0
+                       ? emptyNode()
+                       : CollisionNode.of(hash, Arrays.copyOf(content, length), null);
+        }
+
+        private static void setEntry(Object[] slots, int slot, Object key, Object value) {
+            slots[slot] = key;
+            slots[slot + 1] = value;
+        }
+
+        private static void setNode(Object[] slots, int slot, Node<?, ?> node) {
+            if (node.hasSingleEntry()) {
+                setEntry(slots, slot, node.keyAt(0), node.valueAt(0));
+            } else if (node.size() > 0) {
+                slots[slot] = SUB_NODE;
+                slots[slot + 1] = node;
+            }
+        }
+
+        private static boolean sameAs(Object[] slots, BitmapNode<?, ?> node) {
+            for (int mask = 0; mask < 32; mask++) {
+                int bitpos = Node.bitpos(mask);
+                Object first = slots[2 * mask];
+                Object second = slots[2 * mask + 1];
+                if ((node._dataMap & bitpos) != 0) {
+                    int index = Node.index(node._dataMap, bitpos);
+                    if (first != node.keyAt(index) || second != node.valueAt(index)) {
+                        return false;
+                    }
+                } else if ((node._nodeMap & bitpos) != 0) {
+                    if (first != SUB_NODE || second != node.nodeAt(Node.index(node._nodeMap, bitpos))) {
+                        return false;
+                    }
+                } else if (first != null) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private Node<K, V> assemble(Object[] slots) {
+            int dataMap = 0;
+            int nodeMap = 0;
+            long size = 0;
+            int hashSum = 0;
+            for (int mask = 0; mask < 32; mask++) {
+                Object first = slots[2 * mask];
+                if (first == SUB_NODE) {
+                    Node<?, ?> node = (Node<?, ?>) slots[2 * mask + 1];
+                    nodeMap |= Node.bitpos(mask);
+                    size += node.size();
+                    hashSum += node.hashSum();
+                } else if (first != null) {
+                    dataMap |= Node.bitpos(mask);
+                    size++;
+                    hashSum += Node.entryHash(first, slots[2 * mask + 1]);
+                }
+            }
+            if (size == 0) {
+                return emptyNode();
+            }
+            int dataArity = Integer.bitCount(dataMap);
+            Object[] content = new Object[2 * dataArity + Integer.bitCount(nodeMap)];
+            int dataIndex = 0;
+            int nodeIndex = 2 * dataArity;
+            for (int mask = 0; mask < 32; mask++) {
+                Object first = slots[2 * mask];
+                if (first == SUB_NODE) {
+                    content[nodeIndex++] = slots[2 * mask + 1];
+                } else if (first != null) {
+                    content[dataIndex++] = first;
+                    content[dataIndex++] = slots[2 * mask + 1];
+                }
+            }
+            return new BitmapNode<>(dataMap, nodeMap, content, size, hashSum, null);
+        }
+    }
+
+    private static final class CombineTask<K, V> extends RecursiveTask<Node<K, V>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Combiner<K, V> _combiner;
+        private final Node<K, V> _left;
+        private final Node<K, ?> _right;
+        private final int _shift;
+
+        private CombineTask(Combiner<K, V> combiner, Node<K, V> left, Node<K, ?> right, int shift) {
+            _combiner = combiner;
+            _left = left;
+            _right = right;
+            _shift = shift;
+        }
+
+        @Override
+        protected Node<K, V> compute() {
+            return _combiner.combine(_left, _right, _shift);
+        }
+    }
+
+    /**
+     * Walks two tries in lockstep, skipping pointer-equal subtrees. Pending pairs of nodes are kept on a stack,
+     * and a pair is only expanded when the differences found so far have been consumed. An entry facing a sub-node
+     * on the other side is wrapped in a temporary single-entry node, so that both are compared level by level.
+     */
+    private static final class DiffIterator<K, V> implements Iterator<Triple<K, Opt<V>, Opt<V>>> {
+        private final Deque<Node<K, V>> _newNodes = new ArrayDeque<>();
+        private final Deque<Node<K, V>> _oldNodes = new ArrayDeque<>();
+        private final Deque<Integer> _shifts = new ArrayDeque<>();
+        private final Deque<Triple<K, Opt<V>, Opt<V>>> _found = new ArrayDeque<>();
+        private Iterator<Triple<K, Opt<V>, Opt<V>>> _subtree = Collections.emptyIterator();
+
+        private DiffIterator(Node<K, V> newRoot, Node<K, V> oldRoot) {
+            push(newRoot, oldRoot, 0);
+        }
+
+        private void push(Node<K, V> newNode, Node<K, V> oldNode, int shift) {
+            if (newNode != oldNode) {
+                _newNodes.push(newNode);
+                _oldNodes.push(oldNode);
+                _shifts.push(shift);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (_found.isEmpty() && !_subtree.hasNext() && !_newNodes.isEmpty()) {
+                expand(_newNodes.pop(), _oldNodes.pop(), _shifts.pop());
+            }
+            return !_found.isEmpty() || _subtree.hasNext();
+        }
+
+        @Override
+        public Triple<K, Opt<V>, Opt<V>> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return _found.isEmpty() ? _subtree.next() : _found.poll();
+        }
+
+        private void expand(Node<K, V> newNode, Node<K, V> oldNode, int shift) {
+            if (oldNode.size() == 0) {
+                _subtree = new NodeIterator<>(newNode, DiffIterator::added);
+            } else if (newNode.size() == 0) {
+                _subtree = new NodeIterator<>(oldNode, DiffIterator::removed);
+            } else if (shift >= Node.HASH_BITS) {
+                expandCollisions(newNode.flattened(), oldNode.flattened());
             } else {
-                return right().addOpt(key, value).map(right -> new Node<>(_hashCode, _kv, _left, right));
+                expandBitmaps((BitmapNode<K, V>) newNode, (BitmapNode<K, V>) oldNode, shift);
+            }
+        }
+
+        private void expandBitmaps(BitmapNode<K, V> newNode, BitmapNode<K, V> oldNode, int shift) {
+            int bitmap = newNode._dataMap | newNode._nodeMap | oldNode._dataMap | oldNode._nodeMap;
+            for (int bits = bitmap; bits != 0; bits &= bits - 1) {
+                int bitpos = Integer.lowestOneBit(bits);
+                if ((newNode._dataMap & bitpos) != 0 && (oldNode._dataMap & bitpos) != 0) {
+                    int newIndex = Node.index(newNode._dataMap, bitpos);
+                    int oldIndex = Node.index(oldNode._dataMap, bitpos);
+                    compare(newNode.keyAt(newIndex), newNode.valueAt(newIndex),
+                        oldNode.keyAt(oldIndex), oldNode.valueAt(oldIndex));
+                } else {
+                    push(child(newNode, bitpos, shift), child(oldNode, bitpos, shift), shift + Node.BITS);
+                }
+            }
+        }
+
+        /**
+         * Returns the sub-node at the given position, a temporary node holding the entry at that position, or an
+         * empty node.
+         */
+        private static <K, V> Node<K, V> child(BitmapNode<K, V> node, int bitpos, int shift) {
+            if ((node._nodeMap & bitpos) != 0) {
+                return node.nodeAt(Node.index(node._nodeMap, bitpos));
             }
+            if ((node._dataMap & bitpos) == 0) {
+                return emptyNode();
+            }
+            int index = Node.index(node._dataMap, bitpos);
+            K key = node.keyAt(index);
+            int hash = key.hashCode();
+            int childShift = shift + Node.BITS;
+            Object[] content = {key, node.valueAt(index)};
+            return childShift >= Node.HASH_BITS
+                       ? new CollisionNode<>(hash, content, null)
+                       : new BitmapNode<>(Node.bitpos(Node.mask(hash, childShift)), 0, content, 1L,
+                           Node.entryHash(key, content[1]), null);
         }
 
-        private Node<K, V> put(K key, V value) {
-            if (isEmpty()) {
-                return new Node<>(key, value, null, null);
+        private void compare(K newKey, V newValue, K oldKey, V oldValue) {
+            if (!newKey.equals(oldKey)) {
+                _found.add(added(newKey, newValue));
+                _found.add(removed(oldKey, oldValue));
+            } else if (!newValue.equals(oldValue)) {
+                _found.add(Triple.of(newKey, Opt.some(oldValue), Opt.some(newValue)));
             }
-            if (key.hashCode() == _hashCode) {
-                if (_kv.stream().anyMatch(pair -> pair.get1().equals(key))) {
-                    java.util.List<Pair<K, V>> kv = _kv.stream()
-                                                       .map(pair -> pair.get1().equals(key) ? Pair.of(key, value) : pair)
-                                                       .collect(Collectors.toList());
-                    return new Node<>(_hashCode, Stack.ofAll(kv), _left, _right);
+        }
+
+        private void expandCollisions(Node<K, V> newNode, Node<K, V> oldNode) {
+            for (int i = 0; i < newNode.dataArity(); i++) {
+                K key = newNode.keyAt(i);
+                V oldValue = oldNode.find(key, 0, Node.HASH_BITS);
+                if (oldValue == null) {
+                    _found.add(added(key, newNode.valueAt(i)));
                 } else {
-                    return new Node<>(_hashCode, _kv.add(Pair.of(key, value)), _left, _right);
+                    compare(key, newNode.valueAt(i), key, oldValue);
                 }
             }
-            if (key.hashCode() < _hashCode) {
-                return new Node<>(_hashCode, _kv, left().put(key, value), _right);
-            } else {
-                return new Node<>(_hashCode, _kv, _left, right().put(key, value));
+            for (int i = 0; i < oldNode.dataArity(); i++) {
+                K key = oldNode.keyAt(i);
+                if (newNode.find(key, 0, Node.HASH_BITS) == null) {
+                    _found.add(removed(key, oldNode.valueAt(i)));
+                }
             }
         }
 
-        static <K, V> Node<K, V> merge(Node<K, V> left, Node<K, V> right) {
-            if (left.isEmpty()) {
-                return right;
+        private static <K, V> Triple<K, Opt<V>, Opt<V>> added(K key, V value) {
+            return Triple.of(key, Opt.none(), Opt.some(value));
+        }
+
+        private static <K, V> Triple<K, Opt<V>, Opt<V>> removed(K key, V value) {
+            return Triple.of(key, Opt.some(value), Opt.none());
+        }
+    }
+
+    /**
+     * Walks the trie depth-first, using a cursor per level instead of a work list: first the entries of a node,
+     * then its sub-nodes. The trie depth is bounded by the hash width, so the stack arrays never grow.
+     */
+    private static final class NodeIterator<K, V, T> implements Iterator<T> {
+        private static final int MAX_DEPTH = (Node.HASH_BITS + Node.BITS - 1) / Node.BITS + 1;
+
+        private final BiFunction<K, V, T> _fn;
+        private final Object[] _nodes = new Object[MAX_DEPTH];
+        private final int[] _dataIndexes = new int[MAX_DEPTH];
+        private final int[] _nodeIndexes = new int[MAX_DEPTH];
+        private int _level;
+
+        private NodeIterator(Node<K, V> root, BiFunction<K, V, T> fn) {
+            _fn = fn;
+            _nodes[0] = root.flattened();
+        }
+
+        @SuppressWarnings("unchecked")
+        private Node<K, V> node(int level) {
+            return (Node<K, V>) _nodes[level];
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (_level >= 0) {
+                Node<K, V> node = node(_level);
+                if (_dataIndexes[_level] < node.dataArity()) {
+                    return true;
+                }
+                if (_nodeIndexes[_level] < node.nodeArity()) {
+                    Node<K, V> child = node.nodeAt(_nodeIndexes[_level]++).flattened();
+                    _level++;
+                    _nodes[_level] = child;
+                    _dataIndexes[_level] = 0;
+                    _nodeIndexes[_level] = 0;
+                } else {
+                    _nodes[_level] = null;
+                    _level--;
+                }
             }
-            if (right.isEmpty()) {
-                return left;
+            return false;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Node<K, V> node = node(_level);
+            int index = _dataIndexes[_level]++;
+            return _fn.apply(node.keyAt(index), node.valueAt(index));
+        }
+    }
+
+    /**
+     * Splits along the trie: a spliterator covers the remaining entries of one node plus a range of its sub-nodes,
+     * and hands off half of the sub-nodes that weren't started yet. If only one sub-node is left, it descends into
+     * it. As every node knows its size, the split sizes are exact.
+     */
+    private static final class NodeSpliterator<K, V, T> implements Spliterator<T> {
+        private final BiFunction<K, V, T> _fn;
+        private final int _characteristics;
+        private Node<K, V> _node;
+        private int _dataIndex;
+        private int _nodeFrom;
+        private int _nodeTo;
+        private Iterator<T> _current;
+        private long _remaining;
+
+        private NodeSpliterator(Node<K, V> node, int dataIndex, int nodeFrom, int nodeTo,
+                                BiFunction<K, V, T> fn, int characteristics) {
+            _fn = fn;
+            _characteristics = characteristics;
+            _node = node.flattened();
+            _dataIndex = dataIndex;
+            _nodeFrom = nodeFrom;
+            _nodeTo = nodeTo;
+            _remaining = node.dataArity() - dataIndex + sizeOf(node, nodeFrom, nodeTo);
+        }
+
+        private NodeSpliterator(Node<K, V> root, BiFunction<K, V, T> fn, int characteristics) {
+            this(root, 0, 0, root.nodeArity(), fn, characteristics);
+        }
+
+        private static long sizeOf(Node<?, ?> node, int from, int to) {
+            long size = 0;
+            for (int i = from; i < to; i++) {
+                size += node.nodeAt(i).size();
+            }
+            return size;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (_dataIndex < _node.dataArity()) {
+                int index = _dataIndex++;
+                _remaining--;
+                action.accept(_fn.apply(_node.keyAt(index), _node.valueAt(index)));
+                return true;
+            }
+            while (_current == null || !_current.hasNext()) {
+                if (_nodeFrom == _nodeTo) {
+                    _current = null;
+                    return false;
+                }
+                _current = new NodeIterator<>(_node.nodeAt(_nodeFrom++), _fn);
+            }
+            _remaining--;
+            action.accept(_current.next());
+            return true;
+        }
+
+        @Override
+        public Spliterator<T> trySplit() {
+            while (_current == null && _dataIndex == _node.dataArity() && _nodeTo - _nodeFrom == 1) {
+                _node = _node.nodeAt(_nodeFrom).flattened();
+                _dataIndex = 0;
+                _nodeFrom = 0;
+                _nodeTo = _node.nodeArity();
+            }
+            int unstarted = _nodeTo - _nodeFrom;
+            if (unstarted == 0) {
+                return null;
+            }
+            int mid = _nodeTo - Math.max(1, unstarted / 2);
+            NodeSpliterator<K, V, T> split =
+                new NodeSpliterator<>(_node, _node.dataArity(), mid, _nodeTo, _fn, _characteristics);
+            _nodeTo = mid;
+            _remaining -= split._remaining;
+            return split;
+        }
+
+        @Override
+        public long estimateSize() {
+            return _remaining;
+        }
+
+        @Override
+        public int characteristics() {
+            return _characteristics;
+        }
+    }
+
+    /**
+     * A mutable builder for a HashMap, which modifies the trie nodes it created itself in place instead of copying
+     * them. This makes bulk loads much cheaper than a chain of put calls. Calling {@link #persistent()} turns the
+     * result into an immutable HashMap in O(1), after that the Transient can't be used anymore.
+     * <p>
+     * A Transient must not be shared between threads.
+     *
+     * @param <K> the key type
+     * @param <V> the value type
+     */
+    public static final class Transient<K, V> {
+        private Object _owner = new Object();
+        private Node<K, V> _root;
+        private long _size;
+        private final Change _change = new Change();
+
+        private Transient(Node<K, V> root, long size) {
+            _root = root;
+            _size = size;
+        }
+
+        /**
+         * Puts an entry, replacing the value of an existing key.
+         * @param k the key
+         * @param v the value
+         * @return this Transient
+         */
+        public Transient<K, V> put(K k, V v) {
+            Node<K, V> root = _root.put(k, Objects.requireNonNull(v), k.hashCode(), 0, true, _change.reset(),
+                editToken());
+            _root = root;
+            if (_change._added) {
+                _size++;
+            }
+            return this;
+        }
+
+        /**
+         * Puts all given entries.
+         * @param pairs the key-value pairs
+         * @return this Transient
+         */
+        public Transient<K, V> putAll(Iterable<Pair<K, V>> pairs) {
+            for (Pair<K, V> pair : pairs) {
+                put(pair.get1(), pair.get2());
+            }
+            return this;
+        }
+
+        /**
+         * Removes an entry, if it exists.
+         * @param k the key
+         * @return this Transient
+         */
+        public Transient<K, V> remove(K k) {
+            Node<K, V> root = _root.remove(k, k.hashCode(), 0, _change.reset(), editToken());
+            _root = root;
+            if (_change._removed) {
+                _size--;
             }
-            return new Node<>(left._hashCode, left._kv, left.left(), merge(left.right(), right));
+            return this;
+        }
+
+        public Opt<V> getOpt(K k) {
+            editToken();
+            return Opt.from(_root.find(k, k.hashCode(), 0));
+        }
+
+        public V getOrElse(K k, V defaultValue) {
+            editToken();
+            V v = _root.find(k, k.hashCode(), 0);
+            return v == null ? defaultValue : v;
+        }
+
+        public boolean containsKey(K k) {
+            editToken();
+            return _root.find(k, k.hashCode(), 0) != null;
+        }
+
+        public long size() {
+            return _size;
         }
 
+        /**
+         * Returns the immutable HashMap with the current content. The Transient becomes unusable.
+         * @return the HashMap
+         */
+        public HashMap<K, V> persistent() {
+            editToken();
+            _owner = null;
+            return _size == 0 ? empty() : new HashMap<>(_root, _size);
+        }
+
+        private Object editToken() {
+            if (_owner == null) {
+                throw new IllegalStateException("Transient was already made persistent");
+            }
+            return _owner;
+        }
     }
 
+    /**
+     * Returns the sum of the hash codes of all entries. It is maintained by every update, so this takes O(1).
+     * @return the hash code
+     */
     @Override
     public int hashCode() {
-        int hc = 0;
-        for (Pair<K, V> pair : this.asKeyValuePairs()) {
-            hc += pair.hashCode();
-        }
-        return hc;
+        return _root.hashSum();
     }
 
+    /**
+     * Compares two maps node by node. As the layout of the tree depends only on the keys, equal maps have trees of
+     * the same shape, and subtrees shared by both maps don't need to be compared.
+     * @param o the other object
+     * @return whether o is a HashMap with the same entries
+     */
     @Override
-    @SuppressWarnings("unchecked")
     public boolean equals(Object o) {
         if (o == null || !o.getClass().equals(this.getClass())) {
             return false;
@@ -270,21 +2091,7 @@ public class HashMap<K, V> implements Puttable<K, V, HashMap<K, V>> {
             return true;
         }
         HashMap<?, ?> that = (HashMap<?, ?>) o;
-        if (this._size != that.size() || this.hashCode() != that.hashCode()) {
-            return false;
-        }
-        for (Pair<?, ?> pair : that.asKeyValuePairs()) {
-            try {
-                if (!getOpt((K) pair.get1())
-                         .map(v -> v.equals(pair.get2()))
-                         .getOrElse(false)) {
-                    return false;
-                }
-            } catch (ClassCastException ex) {
-                return false;
-            }
-        }
-        return true;
+        return Node.equal(this._root, that._root, 0);
     }
 
     @Override
@@ -0,0 +1,202 @@
+package org.neco4j.collect.map;
+
+import org.neco4j.collect.Puttable;
+import org.neco4j.collect.unitkey.Opt;
+import org.neco4j.tuple.Pair;
+
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.StringJoiner;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An immutable map which iterates its entries in insertion order.
+ * <p>
+ * Every key gets a sequence number when it is added. A {@link HashMap} maps the keys to their sequence numbers, and
+ * a {@link LongHashMap} maps the sequence numbers to the entries, so put and remove need O(log n) steps. As the
+ * trie of the LongHashMap has one node per entry regardless of the gaps between the sequence numbers, removed
+ * entries leave nothing behind, and no compaction is needed. Replacing the value of an existing key keeps its
+ * position. The iteration returns the stored entries, and doesn't allocate per step.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class LinkedHashMap<K, V> implements Puttable<K, V, LinkedHashMap<K, V>> {
+
+    private final static LinkedHashMap<?, ?> EMPTY = new LinkedHashMap<>(HashMap.empty(), LongHashMap.empty(), 0L);
+
+    private final HashMap<K, Long> _sequence;
+    private final LongHashMap<Pair<K, V>> _entries;
+    private final long _nextSequence;
+
+    private LinkedHashMap(HashMap<K, Long> sequence, LongHashMap<Pair<K, V>> entries, long nextSequence) {
+        _sequence = sequence;
+        _entries = entries;
+        _nextSequence = nextSequence;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> LinkedHashMap<K, V> empty() {
+        return (LinkedHashMap<K, V>) EMPTY;
+    }
+
+    public static <K, V> LinkedHashMap<K, V> of(K k0, V v0) {
+        return LinkedHashMap.<K, V>empty().put(k0, v0);
+    }
+
+    public static <K, V> LinkedHashMap<K, V> of(K k0, V v0, K k1, V v1) {
+        return of(k0, v0).put(k1, v1);
+    }
+
+    public static <K, V> LinkedHashMap<K, V> of(K k0, V v0, K k1, V v1, K k2, V v2) {
+        return of(k0, v0, k1, v1).put(k2, v2);
+    }
+
+    public static <K, V> LinkedHashMap<K, V> ofAll(Iterable<Pair<K, V>> pairs) {
+        LinkedHashMap<K, V> result = empty();
+        for (Pair<K, V> pair : pairs) {
+            result = result.put(pair.get1(), pair.get2());
+        }
+        return result;
+    }
+
+    @Override
+    public LinkedHashMap<K, V> put(K k, V v) {
+        Objects.requireNonNull(v);
+        Long sequence = _sequence.getOrElse(k, (Long) null);
+        if (sequence == null) {
+            return new LinkedHashMap<>(_sequence.put(k, _nextSequence),
+                _entries.put(_nextSequence, Pair.of(k, v)), _nextSequence + 1);
+        }
+        Pair<K, V> entry = _entries.getOrElse(sequence.longValue(), null);
+        if (entry.get2() == v) {
+            return this;
+        }
+        return new LinkedHashMap<>(_sequence, _entries.put(sequence.longValue(), Pair.of(entry.get1(), v)),
+            _nextSequence);
+    }
+
+    @Override
+    public Opt<LinkedHashMap<K, V>> addOpt(K k, V v) {
+        return containsKey(k) ? Opt.none() : Opt.some(put(k, v));
+    }
+
+    @Override
+    public Opt<V> getOpt(K k) {
+        return Opt.from(getOrElse(k, (V) null));
+    }
+
+    /**
+     * Retrieves the value for a key, or returns a given default value. This doesn't allocate.
+     * @param k the key
+     * @param defaultValue the default value
+     * @return the value, or the default value if there is no value for the key
+     */
+    @Override
+    public V getOrElse(K k, V defaultValue) {
+        Long sequence = _sequence.getOrElse(k, (Long) null);
+        return sequence == null ? defaultValue : _entries.getOrElse(sequence.longValue(), null).get2();
+    }
+
+    @Override
+    public V getOrElse(K k, Supplier<V> supplier) {
+        V v = getOrElse(k, (V) null);
+        return v == null ? supplier.get() : v;
+    }
+
+    @Override
+    public V getOrFail(K k) throws NoSuchElementException {
+        V v = getOrElse(k, (V) null);
+        if (v == null) {
+            throw new NoSuchElementException();
+        }
+        return v;
+    }
+
+    public boolean containsKey(K k) {
+        return _sequence.containsKey(k);
+    }
+
+    @Override
+    public Opt<LinkedHashMap<K, V>> removeOpt(K k) {
+        Long sequence = _sequence.getOrElse(k, (Long) null);
+        if (sequence == null) {
+            return Opt.none();
+        }
+        if (_sequence.size() == 1) {
+            return Opt.some(empty());
+        }
+        return Opt.some(new LinkedHashMap<>(_sequence.removeIfPossible(k),
+            _entries.removeIfPossible(sequence.longValue()), _nextSequence));
+    }
+
+    @Override
+    public long size() {
+        return _sequence.size();
+    }
+
+    /**
+     * Returns the entries in insertion order.
+     * @return the key-value pairs
+     */
+    @Override
+    public Iterable<Pair<K, V>> asKeyValuePairs() {
+        return _entries::valueIterator;
+    }
+
+    public Stream<Pair<K, V>> stream() {
+        return StreamSupport.stream(Spliterators.spliterator(_entries.valueIterator(), size(),
+            Spliterator.IMMUTABLE | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.ORDERED), false);
+    }
+
+    /**
+     * Returns the sum of the hash codes of all entries, like {@link HashMap#hashCode()}.
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        int hashCode = 0;
+        for (Pair<K, V> pair : asKeyValuePairs()) {
+            hashCode += pair.hashCode();
+        }
+        return hashCode;
+    }
+
+    /**
+     * Compares the entries regardless of their order, like {@link java.util.LinkedHashMap} does.
+     * @param o the other object
+     * @return whether o is a LinkedHashMap with the same entries
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (o == null || !o.getClass().equals(this.getClass())) {
+            return false;
+        }
+        LinkedHashMap<K, V> that = (LinkedHashMap<K, V>) o;
+        if (that.size() != this.size()) {
+            return false;
+        }
+        for (Pair<K, V> pair : asKeyValuePairs()) {
+            if (!pair.get2().equals(that.getOrElse(pair.get1(), (V) null))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ");
+        this.asKeyValuePairs().forEach(p -> joiner.add(p.get1().toString() + ":" + p.get2().toString()));
+        return String.format("%s[%s]", getClass().getSimpleName(), joiner.toString());
+    }
+
+}
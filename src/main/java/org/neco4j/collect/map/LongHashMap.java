@@ -0,0 +1,400 @@
+package org.neco4j.collect.map;
+
+import org.neco4j.collect.Puttable;
+import org.neco4j.collect.unitkey.Opt;
+import org.neco4j.tuple.Pair;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.StringJoiner;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An immutable map with long keys, based on a big-endian Patricia trie.
+ * <p>
+ * The keys are stored unboxed, and the trie branches directly on their bits, so no hash codes are needed. Every
+ * branch node tests one bit, so lookups need at most 64 steps, and the tree has the same shape for the same keys,
+ * regardless of the insertion order. The long-based methods don't allocate for lookups. Entries are iterated in
+ * unsigned key order.
+ *
+ * @param <V> the value type
+ */
+public class LongHashMap<V> implements Puttable<Long, V, LongHashMap<V>> {
+
+    private final static LongHashMap<?> EMPTY = new LongHashMap<>(null);
+
+    private final Node<V> _root;
+
+    private LongHashMap(Node<V> root) {
+        _root = root;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> LongHashMap<V> empty() {
+        return (LongHashMap<V>) EMPTY;
+    }
+
+    public static <V> LongHashMap<V> of(long k0, V v0) {
+        return LongHashMap.<V>empty().put(k0, v0);
+    }
+
+    public static <V> LongHashMap<V> of(long k0, V v0, long k1, V v1) {
+        return of(k0, v0).put(k1, v1);
+    }
+
+    public static <V> LongHashMap<V> of(long k0, V v0, long k1, V v1, long k2, V v2) {
+        return of(k0, v0, k1, v1).put(k2, v2);
+    }
+
+    public static <V> LongHashMap<V> ofAll(Iterable<Pair<Long, V>> pairs) {
+        LongHashMap<V> result = empty();
+        for (Pair<Long, V> pair : pairs) {
+            result = result.put(pair.get1(), pair.get2());
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves the value for a key, or returns a given default value. This doesn't allocate.
+     * @param k the key
+     * @param defaultValue the default value
+     * @return the value, or the default value if there is no value for the key
+     */
+    public V getOrElse(long k, V defaultValue) {
+        V v = find(_root, k);
+        return v == null ? defaultValue : v;
+    }
+
+    public boolean containsKey(long k) {
+        return find(_root, k) != null;
+    }
+
+    public Opt<V> getOpt(long k) {
+        return Opt.from(find(_root, k));
+    }
+
+    public LongHashMap<V> put(long k, V v) {
+        Node<V> root = insert(_root, k, Objects.requireNonNull(v), true);
+        return root == _root ? this : new LongHashMap<>(root);
+    }
+
+    public Opt<LongHashMap<V>> addOpt(long k, V v) {
+        Node<V> root = insert(_root, k, Objects.requireNonNull(v), false);
+        return root == _root ? Opt.none() : Opt.some(new LongHashMap<>(root));
+    }
+
+    public Opt<LongHashMap<V>> removeOpt(long k) {
+        Node<V> root = remove(_root, k);
+        if (root == _root) {
+            return Opt.none();
+        }
+        return Opt.some(root == null ? empty() : new LongHashMap<>(root));
+    }
+
+    @Override
+    public LongHashMap<V> put(Long k, V v) {
+        return put(k.longValue(), v);
+    }
+
+    @Override
+    public Opt<LongHashMap<V>> addOpt(Long k, V v) {
+        return addOpt(k.longValue(), v);
+    }
+
+    @Override
+    public Opt<V> getOpt(Long k) {
+        return getOpt(k.longValue());
+    }
+
+    @Override
+    public V getOrElse(Long k, V defaultValue) {
+        return getOrElse(k.longValue(), defaultValue);
+    }
+
+    @Override
+    public V getOrElse(Long k, Supplier<V> supplier) {
+        V v = find(_root, k);
+        return v == null ? supplier.get() : v;
+    }
+
+    @Override
+    public V getOrFail(Long k) throws NoSuchElementException {
+        V v = find(_root, k);
+        if (v == null) {
+            throw new NoSuchElementException();
+        }
+        return v;
+    }
+
+    @Override
+    public Opt<LongHashMap<V>> removeOpt(Long k) {
+        return removeOpt(k.longValue());
+    }
+
+    @Override
+    public long size() {
+        return _root == null ? 0L : _root.size();
+    }
+
+    @Override
+    public Iterable<Pair<Long, V>> asKeyValuePairs() {
+        return () -> new NodeIterator<>(LongHashMap::entry);
+    }
+
+    public Stream<Pair<Long, V>> stream() {
+        return StreamSupport.stream(Spliterators.spliterator(new NodeIterator<>(LongHashMap::entry), size(),
+            Spliterator.IMMUTABLE | Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.ORDERED), false);
+    }
+
+    /**
+     * Returns an iterator over the stored values in unsigned key order, which doesn't allocate per step.
+     */
+    Iterator<V> valueIterator() {
+        return new NodeIterator<>(leaf -> leaf._value);
+    }
+
+    private static <V> Pair<Long, V> entry(Leaf<V> leaf) {
+        return Pair.of(leaf._key, leaf._value);
+    }
+
+    private static <V> V find(Node<V> node, long key) {
+        while (node instanceof Branch) {
+            Branch<V> branch = (Branch<V>) node;
+            if (!branch.matches(key)) {
+                return null;
+            }
+            node = (key & branch._bit) == 0 ? branch._left : branch._right;
+        }
+        if (node == null) {
+            return null;
+        }
+        Leaf<V> leaf = (Leaf<V>) node;
+        return leaf._key == key ? leaf._value : null;
+    }
+
+    private static <V> Node<V> insert(Node<V> node, long key, V value, boolean replace) {
+        if (node == null) {
+            return new Leaf<>(key, value);
+        }
+        if (node instanceof Leaf) {
+            Leaf<V> leaf = (Leaf<V>) node;
+            if (leaf._key == key) {
+                return !replace || leaf._value == value ? leaf : new Leaf<>(key, value);
+            }
+            return join(key, new Leaf<>(key, value), leaf._key, leaf);
+        }
+        Branch<V> branch = (Branch<V>) node;
+        if (!branch.matches(key)) {
+            return join(key, new Leaf<>(key, value), branch._prefix, branch);
+        }
+        if ((key & branch._bit) == 0) {
+            Node<V> left = insert(branch._left, key, value, replace);
+            return left == branch._left ? branch : new Branch<>(branch._prefix, branch._bit, left, branch._right);
+        } else {
+            Node<V> right = insert(branch._right, key, value, replace);
+            return right == branch._right ? branch : new Branch<>(branch._prefix, branch._bit, branch._left, right);
+        }
+    }
+
+    private static <V> Node<V> remove(Node<V> node, long key) {
+        if (node == null) {
+            return null;
+        }
+        if (node instanceof Leaf) {
+            return ((Leaf<V>) node)._key == key ? null : node;
+        }
+        Branch<V> branch = (Branch<V>) node;
+        if (!branch.matches(key)) {
+            return branch;
+        }
+        if ((key & branch._bit) == 0) {
+            Node<V> left = remove(branch._left, key);
+            if (left == branch._left) {
+                return branch;
+            }
+            return left == null ? branch._right : new Branch<>(branch._prefix, branch._bit, left, branch._right);
+        } else {
+            Node<V> right = remove(branch._right, key);
+            if (right == branch._right) {
+                return branch;
+            }
+            return right == null ? branch._left : new Branch<>(branch._prefix, branch._bit, branch._left, right);
+        }
+    }
+
+    /**
+     * Creates a branch for two subtrees with different prefixes, which branches on the highest differing bit.
+     */
+    private static <V> Node<V> join(long prefix0, Node<V> node0, long prefix1, Node<V> node1) {
+        long bit = Long.highestOneBit(prefix0 ^ prefix1);
+        long prefix = prefix0 & Branch.highMask(bit);
+        return (prefix0 & bit) == 0
+                   ? new Branch<>(prefix, bit, node0, node1)
+                   : new Branch<>(prefix, bit, node1, node0);
+    }
+
+    private static boolean equal(Node<?> node, Node<?> other) {
+        if (node == other) {
+            return true;
+        }
+        if (node == null || other == null || node.size() != other.size() || node.hashSum() != other.hashSum()) {
+            return false;
+        }
+        if (node instanceof Leaf) {
+            return other instanceof Leaf
+                       && ((Leaf<?>) node)._key == ((Leaf<?>) other)._key
+                       && ((Leaf<?>) node)._value.equals(((Leaf<?>) other)._value);
+        }
+        if (!(other instanceof Branch)) {
+            return false;
+        }
+        Branch<?> branch = (Branch<?>) node;
+        Branch<?> otherBranch = (Branch<?>) other;
+        return branch._bit == otherBranch._bit
+                   && branch._prefix == otherBranch._prefix
+                   && equal(branch._left, otherBranch._left)
+                   && equal(branch._right, otherBranch._right);
+    }
+
+    private static abstract class Node<V> {
+        abstract long size();
+
+        /**
+         * Returns the sum of the hash codes of the entries, as computed by {@link Pair#hashCode()}.
+         */
+        abstract int hashSum();
+    }
+
+    private static final class Leaf<V> extends Node<V> {
+        final long _key;
+        final V _value;
+
+        private Leaf(long key, V value) {
+            _key = key;
+            _value = value;
+        }
+
+        @Override
+        long size() {
+            return 1L;
+        }
+
+        @Override
+        int hashSum() {
+            return 37 * Long.hashCode(_key) + 73 * _value.hashCode();
+        }
+    }
+
+    private static final class Branch<V> extends Node<V> {
+        final long _prefix;
+        final long _bit;
+        final Node<V> _left;
+        final Node<V> _right;
+        final long _size;
+        final int _hashSum;
+
+        private Branch(long prefix, long bit, Node<V> left, Node<V> right) {
+            _prefix = prefix;
+            _bit = bit;
+            _left = left;
+            _right = right;
+            _size = left.size() + right.size();
+            _hashSum = left.hashSum() + right.hashSum();
+        }
+
+        /**
+         * Returns a mask for the bits above the given bit.
+         */
+        static long highMask(long bit) {
+            return -(bit << 1);
+        }
+
+        boolean matches(long key) {
+            return (key & highMask(_bit)) == _prefix;
+        }
+
+        @Override
+        long size() {
+            return _size;
+        }
+
+        @Override
+        int hashSum() {
+            return _hashSum;
+        }
+    }
+
+    /**
+     * Walks the trie depth-first, keeping the right subtrees still to visit on a stack. As every branch tests a
+     * lower bit than its parent, the stack never holds more than 64 nodes.
+     */
+    private final class NodeIterator<T> implements Iterator<T> {
+        private final Function<Leaf<V>, T> _fn;
+        private final Object[] _stack = new Object[Long.SIZE];
+        private int _top;
+
+        private NodeIterator(Function<Leaf<V>, T> fn) {
+            _fn = fn;
+            if (_root != null) {
+                _stack[_top++] = _root;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return _top > 0;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public T next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Node<V> node = (Node<V>) _stack[--_top];
+            _stack[_top] = null;
+            while (node instanceof Branch) {
+                Branch<V> branch = (Branch<V>) node;
+                _stack[_top++] = branch._right;
+                node = branch._left;
+            }
+            return _fn.apply((Leaf<V>) node);
+        }
+    }
+
+    /**
+     * Returns the sum of the hash codes of all entries, which is cached in the trie nodes.
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        return _root == null ? 0 : _root.hashSum();
+    }
+
+    /**
+     * Compares two maps node by node, which works because the shape of the trie depends only on the keys.
+     * @param o the other object
+     * @return whether o is a LongHashMap with the same entries
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == null || !o.getClass().equals(this.getClass())) {
+            return false;
+        }
+        return o == this || equal(_root, ((LongHashMap<?>) o)._root);
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ");
+        this.asKeyValuePairs().forEach(p -> joiner.add(p.get1().toString() + ":" + p.get2().toString()));
+        return String.format("%s[%s]", getClass().getSimpleName(), joiner.toString());
+    }
+
+}
@@ -0,0 +1,372 @@
+package org.neco4j.collect.map;
+
+import org.neco4j.collect.Coll;
+import org.neco4j.collect.indexed.List;
+import org.neco4j.collect.unitkey.Opt;
+import org.neco4j.tuple.Pair;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.StringJoiner;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An immutable map from keys to groups of values, which keep the order in which the values were added.
+ * <p>
+ * The groups are stored directly in a {@link HashMap}: up to {@link #INLINE_LIMIT} values as a plain array, larger
+ * groups as a {@link LongHashMap} from the position at which a value was added to the value, so adding a value to
+ * a large group needs O(log n) steps instead of copying it. As {@link Coll}, a MultiMap is a collection of
+ * key-value pairs: addOpt adds a value, putOpt replaces all values of the key, getOpt returns the first value, and
+ * removeOpt removes all values of the key.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class MultiMap<K, V> implements Coll<K, V, MultiMap<K, V>> {
+
+    static final int INLINE_LIMIT = 8;
+
+    private final static MultiMap<?, ?> EMPTY = new MultiMap<>(HashMap.empty(), 0L);
+
+    private final HashMap<K, Object> _groups;
+    private final long _size;
+
+    private MultiMap(HashMap<K, Object> groups, long size) {
+        _groups = groups;
+        _size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <K, V> MultiMap<K, V> empty() {
+        return (MultiMap<K, V>) EMPTY;
+    }
+
+    public static <K, V> MultiMap<K, V> of(K k0, V v0) {
+        return MultiMap.<K, V>empty().addValue(k0, v0);
+    }
+
+    public static <K, V> MultiMap<K, V> of(K k0, V v0, K k1, V v1) {
+        return of(k0, v0).addValue(k1, v1);
+    }
+
+    public static <K, V> MultiMap<K, V> of(K k0, V v0, K k1, V v1, K k2, V v2) {
+        return of(k0, v0, k1, v1).addValue(k2, v2);
+    }
+
+    public static <K, V> MultiMap<K, V> ofAll(Iterable<Pair<K, V>> pairs) {
+        HashMap.Transient<K, Object> groups = HashMap.transientBuilder();
+        long size = 0;
+        for (Pair<K, V> pair : pairs) {
+            groups.put(pair.get1(), added(groups.getOrElse(pair.get1(), (Object) null), pair.get2()));
+            size++;
+        }
+        return new MultiMap<>(groups.persistent(), size);
+    }
+
+    /**
+     * Adds a value to the group of the key, after the values which are already there.
+     * @param k the key
+     * @param v the value
+     * @return the enlarged MultiMap
+     */
+    public MultiMap<K, V> addValue(K k, V v) {
+        Objects.requireNonNull(v);
+        return new MultiMap<>(_groups.put(k, added(_groups.getOrElse(k, (Object) null), v)), _size + 1);
+    }
+
+    /**
+     * Removes the first occurrence of a value from the group of the key.
+     * @param k the key
+     * @param v the value
+     * @return the narrowed MultiMap, or this MultiMap if the key has no such value
+     */
+    public MultiMap<K, V> removeValue(K k, V v) {
+        Object group = _groups.getOrElse(k, (Object) null);
+        if (group == null) {
+            return this;
+        }
+        Object newGroup = removed(group, v);
+        if (newGroup == group) {
+            return this;
+        }
+        return new MultiMap<>(newGroup == null ? _groups.removeIfPossible(k) : _groups.put(k, newGroup), _size - 1);
+    }
+
+    /**
+     * Returns a view of the values of the key, which is created in O(1).
+     * @param k the key
+     * @return the values, which are empty if the key doesn't exist
+     */
+    public Group<V> get(K k) {
+        return new Group<>(_groups.getOrElse(k, Group.NO_VALUES));
+    }
+
+    public boolean containsKey(K k) {
+        return _groups.containsKey(k);
+    }
+
+    /**
+     * Returns the keys having at least one value.
+     * @return the keys
+     */
+    public HashMap.KeySet<K> keys() {
+        return _groups.keys();
+    }
+
+    /**
+     * Adds a value to the group of the key.
+     * @param k the key
+     * @param v the value
+     * @return the enlarged MultiMap wrapped in an Opt
+     */
+    @Override
+    public Opt<MultiMap<K, V>> addOpt(K k, V v) {
+        return Opt.some(addValue(k, v));
+    }
+
+    /**
+     * Replaces all values of the key by the given value.
+     * @param k the key
+     * @param v the value
+     * @return the modified MultiMap wrapped in an Opt
+     */
+    @Override
+    public Opt<MultiMap<K, V>> putOpt(K k, V v) {
+        Objects.requireNonNull(v);
+        long size = _size - get(k).size() + 1;
+        return Opt.some(new MultiMap<>(_groups.put(k, new Object[]{v}), size));
+    }
+
+    /**
+     * Retrieves the first value of the key.
+     * @param k the key
+     * @return the value wrapped in an Opt, or Opt.none if the key has no values
+     */
+    @Override
+    public Opt<V> getOpt(K k) {
+        Iterator<V> values = get(k).iterator();
+        return values.hasNext() ? Opt.some(values.next()) : Opt.none();
+    }
+
+    /**
+     * Removes all values of the key.
+     * @param k the key
+     * @return the narrowed MultiMap wrapped in an Opt, or Opt.none if the key has no values
+     */
+    @Override
+    public Opt<MultiMap<K, V>> removeOpt(K k) {
+        long count = get(k).size();
+        return _groups.removeOpt(k).map(groups -> new MultiMap<>(groups, _size - count));
+    }
+
+    /**
+     * Returns the number of key-value pairs.
+     * @return the size
+     */
+    @Override
+    public long size() {
+        return _size;
+    }
+
+    @Override
+    public Iterable<Pair<K, V>> asKeyValuePairs() {
+        return () -> _groups.stream()
+                         .flatMap(p -> new Group<V>(p.get2()).stream().map(v -> Pair.of(p.get1(), v)))
+                         .iterator();
+    }
+
+    public Stream<Pair<K, V>> stream() {
+        return StreamSupport.stream(asKeyValuePairs().spliterator(), false);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> Object added(Object group, V v) {
+        if (group == null) {
+            return new Object[]{v};
+        }
+        if (group instanceof Object[]) {
+            Object[] values = (Object[]) group;
+            if (values.length < INLINE_LIMIT) {
+                Object[] result = Arrays.copyOf(values, values.length + 1);
+                result[values.length] = v;
+                return result;
+            }
+            LongHashMap<V> large = LongHashMap.empty();
+            for (int i = 0; i < values.length; i++) {
+                large = large.put(i, (V) values[i]);
+            }
+            return new LargeGroup<>(large.put(values.length, v), values.length + 1);
+        }
+        LargeGroup<V> large = (LargeGroup<V>) group;
+        return new LargeGroup<>(large._values.put(large._next, v), large._next + 1);
+    }
+
+    /**
+     * Returns the group without the first occurrence of the value, the group itself if it doesn't contain the
+     * value, or null if the group would be empty.
+     */
+    @SuppressWarnings("unchecked")
+    private static <V> Object removed(Object group, V v) {
+        if (group instanceof Object[]) {
+            Object[] values = (Object[]) group;
+            for (int i = 0; i < values.length; i++) {
+                if (values[i].equals(v)) {
+                    if (values.length == 1) {
+                        return null;
+                    }
+                    Object[] result = new Object[values.length - 1];
+                    System.arraycopy(values, 0, result, 0, i);
+                    System.arraycopy(values, i + 1, result, i, values.length - i - 1);
+                    return result;
+                }
+            }
+            return group;
+        }
+        LargeGroup<V> large = (LargeGroup<V>) group;
+        for (Pair<Long, V> pair : large._values.asKeyValuePairs()) {
+            if (pair.get2().equals(v)) {
+                LongHashMap<V> values = large._values.removeIfPossible(pair.get1());
+                if (values.size() > INLINE_LIMIT / 2) {
+                    return new LargeGroup<>(values, large._next);
+                }
+                Object[] result = new Object[(int) values.size()];
+                Iterator<V> iterator = values.valueIterator();
+                for (int i = 0; i < result.length; i++) {
+                    result[i] = iterator.next();
+                }
+                return result;
+            }
+        }
+        return group;
+    }
+
+    /**
+     * A group of more than {@link #INLINE_LIMIT} values, stored under the position at which they were added.
+     */
+    private static final class LargeGroup<V> {
+        final LongHashMap<V> _values;
+        final long _next;
+
+        private LargeGroup(LongHashMap<V> values, long next) {
+            _values = values;
+            _next = next;
+        }
+    }
+
+    /**
+     * A read-only view of the values of a key in a MultiMap, in the order in which they were added.
+     *
+     * @param <V> the value type
+     */
+    public static final class Group<V> implements Iterable<V> {
+        private static final Object[] NO_VALUES = new Object[0];
+
+        private final Object _group;
+
+        private Group(Object group) {
+            _group = group;
+        }
+
+        @SuppressWarnings("unchecked")
+        public long size() {
+            return _group instanceof Object[] ? ((Object[]) _group).length : ((LargeGroup<V>) _group)._values.size();
+        }
+
+        public boolean isEmpty() {
+            return size() == 0;
+        }
+
+        public boolean contains(V v) {
+            for (V value : this) {
+                if (value.equals(v)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Iterator<V> iterator() {
+            if (_group instanceof Object[]) {
+                return (Iterator<V>) Arrays.asList((Object[]) _group).iterator();
+            }
+            return ((LargeGroup<V>) _group)._values.valueIterator();
+        }
+
+        @Override
+        public Spliterator<V> spliterator() {
+            return Spliterators.spliterator(iterator(), size(),
+                Spliterator.IMMUTABLE | Spliterator.NONNULL | Spliterator.ORDERED);
+        }
+
+        public Stream<V> stream() {
+            return StreamSupport.stream(spliterator(), false);
+        }
+
+        public List<V> toList() {
+            return List.ofAll(this);
+        }
+
+        @Override
+        public String toString() {
+            StringJoiner joiner = new StringJoiner(", ");
+            forEach(v -> joiner.add(v.toString()));
+            return String.format("%s[%s]", getClass().getSimpleName(), joiner.toString());
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = 0;
+        for (Pair<K, V> pair : asKeyValuePairs()) {
+            hashCode += pair.hashCode();
+        }
+        return hashCode;
+    }
+
+    /**
+     * Compares the groups of all keys, including the order of their values.
+     * @param o the other object
+     * @return whether o is a MultiMap with the same groups
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (o == null || !o.getClass().equals(this.getClass())) {
+            return false;
+        }
+        MultiMap<K, V> that = (MultiMap<K, V>) o;
+        if (this._size != that._size || this._groups.size() != that._groups.size()) {
+            return false;
+        }
+        for (K k : _groups.keys()) {
+            Iterator<V> values = get(k).iterator();
+            Iterator<V> thatValues = that.get(k).iterator();
+            while (values.hasNext() && thatValues.hasNext()) {
+                if (!values.next().equals(thatValues.next())) {
+                    return false;
+                }
+            }
+            if (values.hasNext() || thatValues.hasNext()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ");
+        this.asKeyValuePairs().forEach(p -> joiner.add(p.get1().toString() + ":" + p.get2().toString()));
+        return String.format("%s[%s]", getClass().getSimpleName(), joiner.toString());
+    }
+
+}
@@ -0,0 +1,358 @@
+package org.neco4j.collect.map;
+
+import org.neco4j.collect.Puttable;
+import org.neco4j.collect.unitkey.Opt;
+import org.neco4j.tuple.Pair;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.StringJoiner;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An immutable map which keeps its keys sorted, based on an AVL tree.
+ * <p>
+ * Lookups and updates need O(log n) steps. As every tree node knows the size of its subtree, entries can also be
+ * accessed by their index in key order, and the index of a key can be found in O(log n). Entries are iterated in
+ * key order.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class TreeMap<K, V> implements Puttable<K, V, TreeMap<K, V>> {
+
+    private static final int CHARACTERISTICS = Spliterator.IMMUTABLE | Spliterator.DISTINCT | Spliterator.NONNULL
+                                                   | Spliterator.ORDERED;
+
+    private final AvlNode<K, V> _root;
+    private final Comparator<? super K> _comparator;
+
+    private TreeMap(AvlNode<K, V> root, Comparator<? super K> comparator) {
+        _root = root;
+        _comparator = comparator;
+    }
+
+    public static <K extends Comparable<? super K>, V> TreeMap<K, V> empty() {
+        return new TreeMap<>(null, Comparator.naturalOrder());
+    }
+
+    public static <K, V> TreeMap<K, V> empty(Comparator<? super K> comparator) {
+        return new TreeMap<>(null, Objects.requireNonNull(comparator));
+    }
+
+    public static <K extends Comparable<? super K>, V> TreeMap<K, V> of(K k0, V v0) {
+        return TreeMap.<K, V>empty().put(k0, v0);
+    }
+
+    public static <K extends Comparable<? super K>, V> TreeMap<K, V> of(K k0, V v0, K k1, V v1) {
+        return of(k0, v0).put(k1, v1);
+    }
+
+    public static <K extends Comparable<? super K>, V> TreeMap<K, V> of(K k0, V v0, K k1, V v1, K k2, V v2) {
+        return of(k0, v0, k1, v1).put(k2, v2);
+    }
+
+    public static <K extends Comparable<? super K>, V> TreeMap<K, V> ofAll(Iterable<Pair<K, V>> pairs) {
+        TreeMap<K, V> result = empty();
+        for (Pair<K, V> pair : pairs) {
+            result = result.put(pair.get1(), pair.get2());
+        }
+        return result;
+    }
+
+    public Comparator<? super K> comparator() {
+        return _comparator;
+    }
+
+    @Override
+    public TreeMap<K, V> put(K k, V v) {
+        AvlNode<K, V> root = AvlNode.put(_root, Objects.requireNonNull(k), Objects.requireNonNull(v), _comparator);
+        return root == _root ? this : new TreeMap<>(root, _comparator);
+    }
+
+    @Override
+    public Opt<TreeMap<K, V>> addOpt(K k, V v) {
+        return containsKey(k) ? Opt.none() : Opt.some(put(k, v));
+    }
+
+    @Override
+    public Opt<V> getOpt(K k) {
+        return Opt.from(getOrElse(k, (V) null));
+    }
+
+    /**
+     * Retrieves the value for a key, or returns a given default value. This doesn't allocate.
+     * @param k the key
+     * @param defaultValue the default value
+     * @return the value, or the default value if there is no value for the key
+     */
+    @Override
+    public V getOrElse(K k, V defaultValue) {
+        AvlNode<K, V> node = AvlNode.find(_root, k, _comparator);
+        return node == null ? defaultValue : node._value;
+    }
+
+    public boolean containsKey(K k) {
+        return AvlNode.find(_root, k, _comparator) != null;
+    }
+
+    @Override
+    public Opt<TreeMap<K, V>> removeOpt(K k) {
+        AvlNode<K, V> root = AvlNode.remove(_root, k, _comparator);
+        return root == _root ? Opt.none() : Opt.some(new TreeMap<>(root, _comparator));
+    }
+
+    @Override
+    public long size() {
+        return AvlNode.size(_root);
+    }
+
+    public Opt<Pair<K, V>> firstOpt() {
+        return selectOpt(0);
+    }
+
+    public Opt<Pair<K, V>> lastOpt() {
+        return selectOpt(size() - 1);
+    }
+
+    /**
+     * Returns the entry with the greatest key less than or equal to the given key.
+     * @param k the key
+     * @return the entry, or Opt.none if all keys are greater
+     */
+    public Opt<Pair<K, V>> floorOpt(K k) {
+        return entry(AvlNode.floor(_root, k, _comparator));
+    }
+
+    /**
+     * Returns the entry with the least key greater than or equal to the given key.
+     * @param k the key
+     * @return the entry, or Opt.none if all keys are less
+     */
+    public Opt<Pair<K, V>> ceilingOpt(K k) {
+        return entry(AvlNode.ceiling(_root, k, _comparator));
+    }
+
+    /**
+     * Returns the number of keys less than the given key, which is the index of the key if it exists.
+     * @param k the key
+     * @return the rank of the key
+     */
+    public long rank(K k) {
+        return AvlNode.rank(_root, k, _comparator);
+    }
+
+    /**
+     * Returns the entry at the given index in key order.
+     * @param index the index
+     * @return the entry, or Opt.none if the index is out of range
+     */
+    public Opt<Pair<K, V>> selectOpt(long index) {
+        return index < 0 || index >= size() ? Opt.none() : entry(AvlNode.at(_root, index));
+    }
+
+    /**
+     * Returns a view of the entries with keys from the lower bound (inclusive) to the upper bound (exclusive),
+     * which is created in O(1).
+     * @param from the lower bound
+     * @param to the upper bound
+     * @return the view
+     */
+    public SubMap<K, V> subMap(K from, K to) {
+        if (_comparator.compare(from, to) > 0) {
+            throw new IllegalArgumentException("lower bound is greater than upper bound");
+        }
+        return new SubMap<>(this, from, to);
+    }
+
+    @Override
+    public Iterable<Pair<K, V>> asKeyValuePairs() {
+        return () -> new RangeIterator<>(this, null, null);
+    }
+
+    public Stream<Pair<K, V>> stream() {
+        return StreamSupport.stream(Spliterators.spliterator(new RangeIterator<>(this, null, null), size(),
+            CHARACTERISTICS), false);
+    }
+
+    private static <K, V> Opt<Pair<K, V>> entry(AvlNode<K, V> node) {
+        return node == null ? Opt.none() : Opt.some(Pair.of(node._key, node._value));
+    }
+
+    /**
+     * A read-only view of the entries of a TreeMap in a half-open key range. The size and the lookups need
+     * O(log n) steps, and a new TreeMap is only built when {@link #toTreeMap()} is called.
+     *
+     * @param <K> the key type
+     * @param <V> the value type
+     */
+    public static final class SubMap<K, V> implements Iterable<Pair<K, V>> {
+        private final TreeMap<K, V> _map;
+        private final K _from;
+        private final K _to;
+
+        private SubMap(TreeMap<K, V> map, K from, K to) {
+            _map = map;
+            _from = from;
+            _to = to;
+        }
+
+        private boolean inRange(K k) {
+            return _map._comparator.compare(_from, k) <= 0 && _map._comparator.compare(k, _to) < 0;
+        }
+
+        public long size() {
+            return _map.rank(_to) - _map.rank(_from);
+        }
+
+        public boolean isEmpty() {
+            return size() == 0;
+        }
+
+        public boolean containsKey(K k) {
+            return inRange(k) && _map.containsKey(k);
+        }
+
+        public Opt<V> getOpt(K k) {
+            return inRange(k) ? _map.getOpt(k) : Opt.none();
+        }
+
+        public Opt<Pair<K, V>> firstOpt() {
+            return isEmpty() ? Opt.none() : _map.selectOpt(_map.rank(_from));
+        }
+
+        public Opt<Pair<K, V>> lastOpt() {
+            return isEmpty() ? Opt.none() : _map.selectOpt(_map.rank(_to) - 1);
+        }
+
+        @Override
+        public Iterator<Pair<K, V>> iterator() {
+            return new RangeIterator<>(_map, _from, _to);
+        }
+
+        @Override
+        public Spliterator<Pair<K, V>> spliterator() {
+            return Spliterators.spliterator(iterator(), size(), CHARACTERISTICS);
+        }
+
+        public Stream<Pair<K, V>> stream() {
+            return StreamSupport.stream(spliterator(), false);
+        }
+
+        public TreeMap<K, V> toTreeMap() {
+            TreeMap<K, V> result = empty(_map._comparator);
+            for (Pair<K, V> pair : this) {
+                result = result.put(pair.get1(), pair.get2());
+            }
+            return result;
+        }
+
+        @Override
+        public String toString() {
+            StringJoiner joiner = new StringJoiner(", ");
+            forEach(p -> joiner.add(p.get1().toString() + ":" + p.get2().toString()));
+            return String.format("%s[%s]", getClass().getSimpleName(), joiner.toString());
+        }
+    }
+
+    /**
+     * Walks the tree in key order, keeping the nodes whose right subtrees are still to visit on a stack. The
+     * bounds are optional, the lower one is inclusive and the upper one exclusive.
+     */
+    private static final class RangeIterator<K, V> implements Iterator<Pair<K, V>> {
+        private final Comparator<? super K> _comparator;
+        private final K _to;
+        private final Object[] _stack;
+        private int _top;
+
+        private RangeIterator(TreeMap<K, V> map, K from, K to) {
+            _comparator = map._comparator;
+            _to = to;
+            _stack = new Object[AvlNode.height(map._root)];
+            AvlNode<K, V> node = map._root;
+            while (node != null) {
+                if (from != null && _comparator.compare(node._key, from) < 0) {
+                    node = node._right;
+                } else {
+                    _stack[_top++] = node;
+                    node = node._left;
+                }
+            }
+            skipBeyondUpperBound();
+        }
+
+        @SuppressWarnings("unchecked")
+        private void skipBeyondUpperBound() {
+            if (_to != null && _top > 0 && _comparator.compare(((AvlNode<K, V>) _stack[_top - 1])._key, _to) >= 0) {
+                _top = 0;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return _top > 0;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public Pair<K, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            AvlNode<K, V> result = (AvlNode<K, V>) _stack[--_top];
+            _stack[_top] = null;
+            for (AvlNode<K, V> node = result._right; node != null; node = node._left) {
+                _stack[_top++] = node;
+            }
+            skipBeyondUpperBound();
+            return Pair.of(result._key, result._value);
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = 0;
+        for (Pair<K, V> pair : asKeyValuePairs()) {
+            hashCode += pair.hashCode();
+        }
+        return hashCode;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (o == null || !o.getClass().equals(this.getClass())) {
+            return false;
+        }
+        TreeMap<K, V> that = (TreeMap<K, V>) o;
+        if (that.size() != this.size()) {
+            return false;
+        }
+        for (Pair<K, V> pair : asKeyValuePairs()) {
+            try {
+                if (!pair.get2().equals(that.getOrElse(pair.get1(), (V) null))) {
+                    return false;
+                }
+            } catch (ClassCastException ex) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(", ");
+        this.asKeyValuePairs().forEach(p -> joiner.add(p.get1().toString() + ":" + p.get2().toString()));
+        return String.format("%s[%s]", getClass().getSimpleName(), joiner.toString());
+    }
+
+}
@@ -1,193 +1,184 @@
 package org.neco4j.collect.set;
 
-import org.neco4j.collect.indexed.List;
+import org.neco4j.collect.map.HashMap;
 import org.neco4j.collect.unitkey.Opt;
+import org.neco4j.tuple.Unit;
 
 import java.util.Iterator;
-import java.util.NoSuchElementException;
-import java.util.Objects;
-
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An immutable set based on a {@link HashMap}, so its elements are stored inline in the arrays of a compressed
+ * hash-array mapped prefix tree (CHAMP), and lookups and updates need O(log32 n) steps independent of the order in
+ * which elements were added. Elements with identical hash codes share a collision node.
+ *
+ * @param <K> the element type
+ */
 public class HashSet<K> implements SetLikePuttable<K, HashSet<K>> {
 
-    private final static Node<?> EMPTY = new Node<>();
+    /**
+     * The multiplicative inverse of 37 modulo 2^32, see {@link #hashCode()}.
+     */
+    private static final int INVERSE_OF_37 = 0x914c1bad;
+
+    private final static HashSet<?> EMPTY = new HashSet<>(HashMap.empty());
 
-    private final Node<K> _root;
-    private final long _size;
+    private final HashMap<K, Unit> _map;
 
-    private HashSet(Node<K> root, long size) {
-        _root = root;
-        _size = size;
+    private HashSet(HashMap<K, Unit> map) {
+        _map = map;
     }
 
+    @SuppressWarnings("unchecked")
     public static <K> HashSet<K> empty() {
-        return new HashSet<>(emptyNode(), 0L);
+        return (HashSet<K>) EMPTY;
     }
 
     @SafeVarargs
     public static <K> HashSet<K> of(K... ks) {
-        HashSet<K> result = empty();
+        HashMap.Transient<K, Unit> map = HashMap.transientBuilder();
         for (K k : ks) {
-            result = result.put(k);
+            map.put(k, Unit.unit);
         }
-        return result;
+        return new HashSet<>(map.persistent());
     }
 
     public static <K> HashSet<K> from(Iterable<K> iterable) {
-        HashSet<K> result = empty();
+        HashMap.Transient<K, Unit> map = HashMap.transientBuilder();
         for (K k : iterable) {
-            result = result.put(k);
+            map.put(k, Unit.unit);
         }
-        return result;
+        return new HashSet<>(map.persistent());
     }
 
     @Override
     public Opt<HashSet<K>> addOpt(K key) {
-        return _root.addOpt(key).map(n -> new HashSet<>(n, _size + 1));
+        return _map.addOpt(key, Unit.unit).map(HashSet::new);
     }
 
     @Override
     public Iterator<K> iterator() {
-        return new Iterator<K>() {
-            List<Node<K>> nodes = List.of(_root);
-
-            @Override
-            public boolean hasNext() {
-                return nodes.first().map(n -> !n.isEmpty()).getOrElse(false);
-            }
-
-            @Override
-            public K next() {
-                if (! hasNext()) {
-                    throw new NoSuchElementException();
-                }
-                Node<K> node = nodes.first().getOrFail();
-                nodes = nodes.removeFirstOpt().getOrFail();
-                if (!node.right().isEmpty()) {
-                    nodes = nodes.prepend(node.right());
-                }
-                if (!node.left().isEmpty()) {
-                    nodes = nodes.prepend(node.left());
-                }
-                return node._key;
-            }
-        };
+        return _map.keys().iterator();
+    }
+
+    /**
+     * Passes all elements to the action. Unlike the iterator, this walks the tree recursively and doesn't allocate.
+     * @param action the action
+     */
+    @Override
+    public void forEach(Consumer<? super K> action) {
+        _map.keys().forEach(action);
+    }
+
+    @Override
+    public Spliterator<K> spliterator() {
+        return _map.keys().spliterator();
     }
 
+    /**
+     * Returns a parallel stream of the elements, which is split along the structure of the underlying tree.
+     * @return the stream
+     */
+    public Stream<K> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    /**
+     * Adds the element, if it doesn't exist yet. This needs a single traversal of the trie, as the map returns
+     * itself when the element exists already.
+     * @param key the element
+     * @return the enlarged set, or this set if it contains the element already
+     */
     @Override
     public HashSet<K> put(K key) {
-        return addOpt(key).getOrElse(this);
+        return with(_map.put(key, Unit.unit));
     }
 
     @Override
     public boolean contains(K key) {
-        return _root.contains(key);
+        return _map.containsKey(key);
     }
 
     @Override
     public Opt<HashSet<K>> removeOpt(K key) {
-        return _root.removeOpt(key).map(n -> new HashSet<>(n, _size - 1));
+        return _map.removeOpt(key).map(HashSet::new);
     }
 
     @Override
     public long size() {
-        return _size;
+        return _map.size();
     }
 
-    @SuppressWarnings("unchecked")
-    private static <K> Node<K> emptyNode() {
-        return (Node) EMPTY;
+    /**
+     * Returns the set of elements contained in this or the other set. Both trees are combined node by node, so
+     * subtrees existing in only one set or shared by both are taken over instead of being copied, and large sets
+     * are combined in parallel.
+     * @param that the other set
+     * @return the union
+     */
+    public HashSet<K> union(HashSet<K> that) {
+        return with(_map.union(that._map));
     }
 
-    private static class Node<K> {
-        final K _key;
-        final Node<K> _left;
-        final Node<K> _right;
-
-        private Node() {
-            _key = null;
-            _left = null;
-            _right = null;
-        }
-
-        private Node(K key, Node<K> left, Node<K> right) {
-            _key = Objects.requireNonNull(key);
-            _left = left == null || left.isEmpty() ? null : left;
-            _right = right == null || right.isEmpty() ? null : right;
-        }
-
-        public boolean isEmpty() {
-            return this == EMPTY;
-        }
-
-        private Node<K> left() {
-            return _left == null ? emptyNode() : _left;
-        }
-
-        private Node<K> right() {
-            return _right == null ? emptyNode() : _right;
-        }
-
-        private boolean contains(K key) {
-            return !isEmpty() &&
-                           (key.equals(_key) ||
-                                    (key.hashCode() < _key.hashCode()
-                                             ? left().contains(key)
-                                             : right().contains(key)));
-        }
+    /**
+     * Returns the set of elements contained in both sets, see {@link #union(HashSet)}.
+     * @param that the other set
+     * @return the intersection
+     */
+    public HashSet<K> intersect(HashSet<K> that) {
+        return with(_map.retainKeys(that._map));
+    }
 
-        private Opt<Node<K>> removeOpt(K key) {
-            if (isEmpty()) {
-                return Opt.none();
-            }
-            if (key.equals(_key)) {
-                return Opt.some(merge(left(), right()));
-            }
-            if (key.hashCode() < _key.hashCode()) {
-                return left().removeOpt(key).map(
-                        left -> new Node<>(_key, left, _right));
-            } else {
-                return right().removeOpt(key).map(
-                        right -> new Node<>(_key, _left, right));
-            }
-        }
+    /**
+     * Returns the set of elements contained in this set but not in the other one, see {@link #union(HashSet)}.
+     * @param that the other set
+     * @return the difference
+     */
+    public HashSet<K> difference(HashSet<K> that) {
+        return with(_map.removeKeys(that._map));
+    }
 
-        private Opt<Node<K>> addOpt(K key) {
-            if (isEmpty()) {
-                return Opt.some(new Node<>(key, null, null));
-            }
-            if (key.equals(_key)) {
-                return Opt.none();
-            }
-            if (key.hashCode() < _key.hashCode()) {
-                return left().addOpt(key).map(left -> new Node<>(_key, left, _right));
-            } else {
-                return right().addOpt(key).map(right -> new Node<>(_key, _left, right));
-            }
-        }
+    /**
+     * Checks whether all elements of this set are contained in the other one. Subtrees shared by both sets are
+     * skipped, and the check doesn't allocate.
+     * @param that the other set
+     * @return whether this set is a subset of the other one
+     */
+    public boolean isSubsetOf(HashSet<K> that) {
+        return that._map.containsKeys(_map);
+    }
 
-        static <K> Node<K> merge(Node<K> left, Node<K> right) {
-            if (left.isEmpty()) {
-                return right;
-            }
-            if (right.isEmpty()) {
-                return left;
-            }
-            return new Node<>(left._key, left.left(), merge(left.right(), right));
-        }
+    private HashSet<K> with(HashMap<K, Unit> map) {
+        return map == _map ? this : map.isEmpty() ? empty() : new HashSet<>(map);
+    }
 
+    /**
+     * Returns an equal set whose nodes are canonical instances, shared by all interned sets with equal subtrees.
+     * The canonical nodes are held weakly, and equal elements are not distinguished, so the elements of the result
+     * may be equal instances from another set.
+     * @return the interned set
+     * @see HashMap#intern()
+     */
+    public HashSet<K> intern() {
+        HashMap<K, Unit> map = _map.intern();
+        return map == _map ? this : new HashSet<>(map);
     }
 
+    /**
+     * Returns the sum of the hash codes of all elements in O(1). The underlying map maintains the sum of
+     * 37 * key hash + 73 * value hash over all entries, and as all values are {@link Unit#unit} and 37 is odd, the
+     * sum of the key hashes can be recovered from it by modular arithmetic.
+     * @return the hash code
+     */
     @Override
     public int hashCode() {
-        int hc = 0;
-        for(K k : this) {
-            hc += k.hashCode();
-        }
-        return hc;
+        return INVERSE_OF_37 * (_map.hashCode() - 73 * Unit.unit.hashCode() * (int) _map.size());
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public boolean equals(Object o) {
         if (o == null || !o.getClass().equals(this.getClass())) {
             return false;
@@ -195,20 +186,7 @@ public class HashSet<K> implements SetLikePuttable<K, HashSet<K>> {
         if (o == this) {
             return true;
         }
-        HashSet<?> that = (HashSet<?>) o;
-        if (this._size != that.size() || this.hashCode() != that.hashCode()) {
-           return false;
-        }
-        for(Object k : that) {
-            try {
-                if (! contains((K) k)) {
-                    return false;
-                }
-            } catch (ClassCastException ex) {
-                return false;
-            }
-        }
-        return true;
+        return _map.equals(((HashSet<?>) o)._map);
     }
 
     @Override
@@ -0,0 +1,637 @@
+package org.neco4j.collect.set;
+
+import org.neco4j.collect.unitkey.Opt;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An immutable set of int values, based on a trie of 64-bit words with one bit per value.
+ * <p>
+ * A leaf holds up to 32 words, so it covers 2048 consecutive values, and every branch node above consumes five more
+ * bits of the values. Both store only their non-empty words or children, indexed by a bitmap, and are copied on
+ * write. The trie is only as high as needed for the greatest value, so it has the same shape for the same values,
+ * and small values need few steps. The int-based methods don't allocate for lookups. The set operations combine
+ * whole words, and the iteration walks the set bits of each word. Values are treated as unsigned, so negative values
+ * are iterated after the positive ones.
+ */
+public class IntSet implements SetLikePuttable<Integer, IntSet> {
+
+    private static final int BITS = 5;
+    private static final int LEAF_SHIFT = 6;
+    private static final int MAX_LEVELS = 6;
+
+    private static final int UNION = 0;
+    private static final int INTERSECT = 1;
+    private static final int DIFFERENCE = 2;
+
+    private static final int CHARACTERISTICS = Spliterator.IMMUTABLE | Spliterator.DISTINCT | Spliterator.NONNULL
+                                                   | Spliterator.ORDERED;
+
+    private static final IntSet EMPTY = new IntSet(null, LEAF_SHIFT);
+
+    private final Node _root;
+    private final int _shift;
+
+    private IntSet(Node root, int shift) {
+        _root = root;
+        _shift = shift;
+    }
+
+    public static IntSet empty() {
+        return EMPTY;
+    }
+
+    public static IntSet of(int... values) {
+        IntSet result = empty();
+        for (int value : values) {
+            result = result.put(value);
+        }
+        return result;
+    }
+
+    public static IntSet from(Iterable<Integer> iterable) {
+        IntSet result = empty();
+        for (Integer value : iterable) {
+            result = result.put(value.intValue());
+        }
+        return result;
+    }
+
+    /**
+     * Checks whether the value is contained in the set. This doesn't allocate.
+     * @param value the value
+     * @return whether the value is contained
+     */
+    public boolean contains(int value) {
+        if (_root == null || !fits(value, _shift)) {
+            return false;
+        }
+        Node node = _root;
+        for (int shift = _shift; shift > LEAF_SHIFT; shift -= BITS) {
+            int bitpos = bitpos(value, shift);
+            if ((node._bitmap & bitpos) == 0) {
+                return false;
+            }
+            node = ((Branch) node)._children[index(node._bitmap, bitpos)];
+        }
+        int bitpos = bitpos(value, LEAF_SHIFT);
+        return (node._bitmap & bitpos) != 0 && (((Leaf) node)._words[index(node._bitmap, bitpos)] & (1L << value)) != 0;
+    }
+
+    public IntSet put(int value) {
+        Node root = _root;
+        int shift = root == null ? LEAF_SHIFT : _shift;
+        while (!fits(value, shift)) {
+            if (root != null) {
+                root = new Branch(1, new Node[]{root}, root.size());
+            }
+            shift += BITS;
+        }
+        Node newRoot = put(root, shift, value);
+        return newRoot == root ? this : new IntSet(newRoot, shift);
+    }
+
+    public Opt<IntSet> addOpt(int value) {
+        return contains(value) ? Opt.none() : Opt.some(put(value));
+    }
+
+    public Opt<IntSet> removeOpt(int value) {
+        if (!contains(value)) {
+            return Opt.none();
+        }
+        return Opt.some(normalized(remove(_root, _shift, value), _shift));
+    }
+
+    @Override
+    public IntSet put(Integer value) {
+        return put(value.intValue());
+    }
+
+    @Override
+    public Opt<IntSet> addOpt(Integer value) {
+        return addOpt(value.intValue());
+    }
+
+    @Override
+    public boolean contains(Integer value) {
+        return contains(value.intValue());
+    }
+
+    @Override
+    public Opt<IntSet> removeOpt(Integer value) {
+        return removeOpt(value.intValue());
+    }
+
+    /**
+     * Returns the number of values. It is maintained by every update, so this takes O(1).
+     * @return the size
+     */
+    @Override
+    public long size() {
+        return _root == null ? 0L : _root.size();
+    }
+
+    /**
+     * Returns the set of values contained in this or the other set. The tries are combined word by word, and
+     * subtrees shared by both sets are taken over without visiting them.
+     * @param that the other set
+     * @return the union
+     */
+    public IntSet union(IntSet that) {
+        return combine(that, UNION);
+    }
+
+    /**
+     * Returns the set of values contained in both sets, see {@link #union(IntSet)}.
+     * @param that the other set
+     * @return the intersection
+     */
+    public IntSet intersect(IntSet that) {
+        return combine(that, INTERSECT);
+    }
+
+    /**
+     * Returns the set of values contained in this set but not in the other one, see {@link #union(IntSet)}.
+     * @param that the other set
+     * @return the difference
+     */
+    public IntSet difference(IntSet that) {
+        return combine(that, DIFFERENCE);
+    }
+
+    /**
+     * Checks whether all values of this set are contained in the other one. This compares whole words and doesn't
+     * allocate.
+     * @param that the other set
+     * @return whether this set is a subset of the other one
+     */
+    public boolean isSubsetOf(IntSet that) {
+        if (_root == null) {
+            return true;
+        }
+        if (that._root == null || _shift > that._shift) {
+            // the root of a higher trie has a child for values which don't fit into the lower one
+            return false;
+        }
+        Node node = that._root;
+        for (int shift = that._shift; shift > _shift; shift -= BITS) {
+            if ((node._bitmap & 1) == 0) {
+                return false;
+            }
+            node = ((Branch) node)._children[0];
+        }
+        return isSubset(_root, node, _shift);
+    }
+
+    private IntSet combine(IntSet that, int mode) {
+        if (this._root == null || that._root == null) {
+            return mode == UNION ? (_root == null ? that : this) : mode == INTERSECT ? empty() : this;
+        }
+        int shift = Math.max(this._shift, that._shift);
+        Node left = raised(this._root, this._shift, shift);
+        Node right = raised(that._root, that._shift, shift);
+        Node root = combine(left, right, shift, mode);
+        if (root == left && shift == _shift) {
+            return this;
+        }
+        if (root == right && shift == that._shift) {
+            return that;
+        }
+        return normalized(root, shift);
+    }
+
+    @Override
+    public PrimitiveIterator.OfInt iterator() {
+        return new BitIterator(this);
+    }
+
+    @Override
+    public Spliterator.OfInt spliterator() {
+        return Spliterators.spliterator(iterator(), size(), CHARACTERISTICS);
+    }
+
+    public IntStream intStream() {
+        return StreamSupport.intStream(spliterator(), false);
+    }
+
+    /**
+     * Passes all values to the action, without boxing them. This doesn't allocate.
+     * @param action the action
+     */
+    public void forEachInt(IntConsumer action) {
+        if (_root != null) {
+            forEachInt(_root, _shift, 0, action);
+        }
+    }
+
+    private static boolean fits(int value, int shift) {
+        return shift + BITS >= Integer.SIZE || value >>> (shift + BITS) == 0;
+    }
+
+    private static int bitpos(int value, int shift) {
+        return 1 << ((value >>> shift) & 0x1F);
+    }
+
+    private static int index(int bitmap, int bitpos) {
+        return Integer.bitCount(bitmap & (bitpos - 1));
+    }
+
+    private static Node raised(Node node, int shift, int targetShift) {
+        for (; shift < targetShift; shift += BITS) {
+            node = new Branch(1, new Node[]{node}, node.size());
+        }
+        return node;
+    }
+
+    /**
+     * Removes branch nodes from the top which have only the child for the smallest values, so the trie has the
+     * same shape for the same values.
+     */
+    private static IntSet normalized(Node root, int shift) {
+        while (root instanceof Branch && root._bitmap == 1) {
+            root = ((Branch) root)._children[0];
+            shift -= BITS;
+        }
+        return root == null ? empty() : new IntSet(root, shift);
+    }
+
+    private static Node put(Node node, int shift, int value) {
+        int bitpos = bitpos(value, shift);
+        if (shift == LEAF_SHIFT) {
+            long bit = 1L << value;
+            if (node == null) {
+                return new Leaf(bitpos, new long[]{bit}, 1);
+            }
+            Leaf leaf = (Leaf) node;
+            int index = index(leaf._bitmap, bitpos);
+            if ((leaf._bitmap & bitpos) == 0) {
+                long[] words = new long[leaf._words.length + 1];
+                System.arraycopy(leaf._words, 0, words, 0, index);
+                words[index] = bit;
+                System.arraycopy(leaf._words, index, words, index + 1, leaf._words.length - index);
+                return new Leaf(leaf._bitmap | bitpos, words, leaf._size + 1);
+            }
+            if ((leaf._words[index] & bit) != 0) {
+                return leaf;
+            }
+            long[] words = leaf._words.clone();
+            words[index] |= bit;
+            return new Leaf(leaf._bitmap, words, leaf._size + 1);
+        }
+        if (node == null) {
+            return new Branch(bitpos, new Node[]{put(null, shift - BITS, value)}, 1L);
+        }
+        Branch branch = (Branch) node;
+        int index = index(branch._bitmap, bitpos);
+        if ((branch._bitmap & bitpos) == 0) {
+            Node[] children = new Node[branch._children.length + 1];
+            System.arraycopy(branch._children, 0, children, 0, index);
+            children[index] = put(null, shift - BITS, value);
+            System.arraycopy(branch._children, index, children, index + 1, branch._children.length - index);
+            return new Branch(branch._bitmap | bitpos, children, branch._size + 1);
+        }
+        Node child = branch._children[index];
+        Node newChild = put(child, shift - BITS, value);
+        if (newChild == child) {
+            return branch;
+        }
+        Node[] children = branch._children.clone();
+        children[index] = newChild;
+        return new Branch(branch._bitmap, children, branch._size + 1);
+    }
+
+    /**
+     * Returns the node without the value, which must be contained, or null if the node would be empty.
+     */
+    private static Node remove(Node node, int shift, int value) {
+        int bitpos = bitpos(value, shift);
+        int index = index(node._bitmap, bitpos);
+        if (shift == LEAF_SHIFT) {
+            Leaf leaf = (Leaf) node;
+            long word = leaf._words[index] & ~(1L << value);
+            if (word != 0) {
+                long[] words = leaf._words.clone();
+                words[index] = word;
+                return new Leaf(leaf._bitmap, words, leaf._size - 1);
+            }
+            if (leaf._bitmap == bitpos) {
+                return null;
+            }
+            long[] words = new long[leaf._words.length - 1];
+            System.arraycopy(leaf._words, 0, words, 0, index);
+            System.arraycopy(leaf._words, index + 1, words, index, words.length - index);
+            return new Leaf(leaf._bitmap & ~bitpos, words, leaf._size - 1);
+        }
+        Branch branch = (Branch) node;
+        Node child = remove(branch._children[index], shift - BITS, value);
+        if (child != null) {
+            Node[] children = branch._children.clone();
+            children[index] = child;
+            return new Branch(branch._bitmap, children, branch._size - 1);
+        }
+        if (branch._bitmap == bitpos) {
+            return null;
+        }
+        Node[] children = new Node[branch._children.length - 1];
+        System.arraycopy(branch._children, 0, children, 0, index);
+        System.arraycopy(branch._children, index + 1, children, index, children.length - index);
+        return new Branch(branch._bitmap & ~bitpos, children, branch._size - 1);
+    }
+
+    /**
+     * Combines two nodes at the same level, returning one of them if the result is equal to it, or null if the
+     * result is empty.
+     */
+    private static Node combine(Node left, Node right, int shift, int mode) {
+        if (left == right) {
+            return mode == DIFFERENCE ? null : left;
+        }
+        if (left == null || right == null) {
+            return mode == UNION ? (left == null ? right : left) : mode == INTERSECT ? null : left;
+        }
+        int bitmap = mode == UNION
+                         ? left._bitmap | right._bitmap
+                         : mode == INTERSECT ? left._bitmap & right._bitmap : left._bitmap;
+        return shift == LEAF_SHIFT
+                   ? combineLeaves((Leaf) left, (Leaf) right, bitmap, mode)
+                   : combineBranches((Branch) left, (Branch) right, bitmap, shift, mode);
+    }
+
+    private static Node combineLeaves(Leaf left, Leaf right, int bitmap, int mode) {
+        long[] words = new long[Integer.bitCount(bitmap)];
+        int resultBitmap = 0;
+        int count = 0;
+        int size = 0;
+        for (int bits = bitmap; bits != 0; bits &= bits - 1) {
+            int bitpos = Integer.lowestOneBit(bits);
+            long leftWord = left.word(bitpos);
+            long rightWord = right.word(bitpos);
+            long word = mode == UNION
+                            ? leftWord | rightWord
+                            : mode == INTERSECT ? leftWord & rightWord : leftWord & ~rightWord;
+            if (word != 0) {
+                resultBitmap |= bitpos;
+                words[count++] = word;
+                size += Long.bitCount(word);
+            }
+        }
+        if (resultBitmap == 0) {
+            return null;
+        }
+        if (resultBitmap == left._bitmap && size == left._size) {
+            return left;
+        }
+        if (mode != DIFFERENCE && resultBitmap == right._bitmap && size == right._size) {
+            return right;
+        }
+        return new Leaf(resultBitmap, count == words.length ? words : Arrays.copyOf(words, count), size);
+    }
+
+    private static Node combineBranches(Branch left, Branch right, int bitmap, int shift, int mode) {
+        Node[] children = new Node[Integer.bitCount(bitmap)];
+        int resultBitmap = 0;
+        int count = 0;
+        long size = 0;
+        boolean sameAsLeft = true;
+        boolean sameAsRight = true;
+        for (int bits = bitmap; bits != 0; bits &= bits - 1) {
+            int bitpos = Integer.lowestOneBit(bits);
+            Node leftChild = left.child(bitpos);
+            Node rightChild = right.child(bitpos);
+            Node child = combine(leftChild, rightChild, shift - BITS, mode);
+            sameAsLeft &= child == leftChild;
+            sameAsRight &= child == rightChild;
+            if (child != null) {
+                resultBitmap |= bitpos;
+                children[count++] = child;
+                size += child.size();
+            }
+        }
+        if (resultBitmap == 0) {
+            return null;
+        }
+        if (sameAsLeft && resultBitmap == left._bitmap) {
+            return left;
+        }
+        if (mode != DIFFERENCE && sameAsRight && resultBitmap == right._bitmap) {
+            return right;
+        }
+        return new Branch(resultBitmap, count == children.length ? children : Arrays.copyOf(children, count), size);
+    }
+
+    private static boolean isSubset(Node node, Node other, int shift) {
+        if (node == other) {
+            return true;
+        }
+        if ((node._bitmap & ~other._bitmap) != 0 || node.size() > other.size()) {
+            return false;
+        }
+        for (int bits = node._bitmap; bits != 0; bits &= bits - 1) {
+            int bitpos = Integer.lowestOneBit(bits);
+            if (shift == LEAF_SHIFT) {
+                if ((((Leaf) node).word(bitpos) & ~((Leaf) other).word(bitpos)) != 0) {
+                    return false;
+                }
+            } else if (!isSubset(((Branch) node).child(bitpos), ((Branch) other).child(bitpos), shift - BITS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void forEachInt(Node node, int shift, int prefix, IntConsumer action) {
+        for (int bits = node._bitmap; bits != 0; bits &= bits - 1) {
+            int bitpos = Integer.lowestOneBit(bits);
+            int base = prefix | (Integer.numberOfTrailingZeros(bitpos) << shift);
+            if (shift == LEAF_SHIFT) {
+                for (long word = ((Leaf) node).word(bitpos); word != 0; word &= word - 1) {
+                    action.accept(base | Long.numberOfTrailingZeros(word));
+                }
+            } else {
+                forEachInt(((Branch) node).child(bitpos), shift - BITS, base, action);
+            }
+        }
+    }
+
+    private static boolean equal(Node node, Node other, int shift) {
+        if (node == other) {
+            return true;
+        }
+        if (node._bitmap != other._bitmap || node.size() != other.size()) {
+            return false;
+        }
+        if (shift == LEAF_SHIFT) {
+            return Arrays.equals(((Leaf) node)._words, ((Leaf) other)._words);
+        }
+        Node[] children = ((Branch) node)._children;
+        Node[] otherChildren = ((Branch) other)._children;
+        for (int i = 0; i < children.length; i++) {
+            if (!equal(children[i], otherChildren[i], shift - BITS)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static abstract class Node {
+        final int _bitmap;
+
+        Node(int bitmap) {
+            _bitmap = bitmap;
+        }
+
+        abstract long size();
+    }
+
+    /**
+     * The non-empty words of 2048 consecutive values, in the order of the bitmap.
+     */
+    private static final class Leaf extends Node {
+        final long[] _words;
+        final int _size;
+
+        private Leaf(int bitmap, long[] words, int size) {
+            super(bitmap);
+            _words = words;
+            _size = size;
+        }
+
+        @Override
+        long size() {
+            return _size;
+        }
+
+        long word(int bitpos) {
+            return (_bitmap & bitpos) == 0 ? 0L : _words[index(_bitmap, bitpos)];
+        }
+    }
+
+    private static final class Branch extends Node {
+        final Node[] _children;
+        final long _size;
+
+        private Branch(int bitmap, Node[] children, long size) {
+            super(bitmap);
+            _children = children;
+            _size = size;
+        }
+
+        @Override
+        long size() {
+            return _size;
+        }
+
+        Node child(int bitpos) {
+            return (_bitmap & bitpos) == 0 ? null : _children[index(_bitmap, bitpos)];
+        }
+    }
+
+    /**
+     * Walks the trie with a cursor per level, and hands out the set bits of the current word one by one.
+     */
+    private static final class BitIterator implements PrimitiveIterator.OfInt {
+        private final int _rootShift;
+        private final Node[] _nodes = new Node[MAX_LEVELS];
+        private final int[] _remaining = new int[MAX_LEVELS];
+        private final int[] _prefixes = new int[MAX_LEVELS];
+        private int _level;
+        private long _word;
+        private int _base;
+
+        private BitIterator(IntSet set) {
+            _rootShift = set._shift;
+            _nodes[0] = set._root;
+            _remaining[0] = set._root == null ? 0 : set._root._bitmap;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (_word == 0) {
+                if (!nextWord()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean nextWord() {
+            while (_level >= 0) {
+                int bits = _remaining[_level];
+                if (bits == 0) {
+                    _nodes[_level] = null;
+                    _level--;
+                    continue;
+                }
+                int bitpos = Integer.lowestOneBit(bits);
+                _remaining[_level] = bits & (bits - 1);
+                int shift = _rootShift - BITS * _level;
+                int prefix = _prefixes[_level] | (Integer.numberOfTrailingZeros(bitpos) << shift);
+                if (shift == LEAF_SHIFT) {
+                    _word = ((Leaf) _nodes[_level]).word(bitpos);
+                    _base = prefix;
+                    return true;
+                }
+                Node child = ((Branch) _nodes[_level]).child(bitpos);
+                _level++;
+                _nodes[_level] = child;
+                _remaining[_level] = child._bitmap;
+                _prefixes[_level] = prefix;
+            }
+            return false;
+        }
+
+        @Override
+        public int nextInt() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            int value = _base | Long.numberOfTrailingZeros(_word);
+            _word &= _word - 1;
+            return value;
+        }
+    }
+
+    /**
+     * Returns the sum of the values, like {@link HashSet#hashCode()} for boxed values.
+     * @return the hash code
+     */
+    @Override
+    public int hashCode() {
+        int[] sum = new int[1];
+        forEachInt(value -> sum[0] += value);
+        return sum[0];
+    }
+
+    /**
+     * Compares the tries word by word. As their shape depends only on the values, and subtrees shared by both sets
+     * are skipped, this is much faster than looking up every value.
+     * @param o the other object
+     * @return whether o is an IntSet with the same values
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) {
+            return true;
+        }
+        if (o == null || !o.getClass().equals(this.getClass())) {
+            return false;
+        }
+        IntSet that = (IntSet) o;
+        if (this._root == null || that._root == null) {
+            return this._root == that._root;
+        }
+        return this._shift == that._shift && equal(this._root, that._root, _shift);
+    }
+
+    @Override
+    public String toString() {
+        return show();
+    }
+}
@@ -0,0 +1,276 @@
+package org.neco4j.collect.set;
+
+import org.neco4j.collect.map.TreeMap;
+import org.neco4j.collect.unitkey.Opt;
+import org.neco4j.tuple.Pair;
+import org.neco4j.tuple.Unit;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.StringJoiner;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * An immutable set which keeps its elements sorted, based on a {@link TreeMap}.
+ * <p>
+ * Besides the set operations, it supports floor and ceiling queries, access by index in O(log n), and views of
+ * ranges. Elements are iterated in sorted order.
+ *
+ * @param <K> the element type
+ */
+public class TreeSet<K> implements SetLikePuttable<K, TreeSet<K>> {
+
+    private static final int CHARACTERISTICS = Spliterator.IMMUTABLE | Spliterator.DISTINCT | Spliterator.NONNULL
+                                                   | Spliterator.ORDERED;
+
+    private final TreeMap<K, Unit> _map;
+
+    private TreeSet(TreeMap<K, Unit> map) {
+        _map = map;
+    }
+
+    public static <K extends Comparable<? super K>> TreeSet<K> empty() {
+        return new TreeSet<>(TreeMap.<K, Unit>empty());
+    }
+
+    public static <K> TreeSet<K> empty(Comparator<? super K> comparator) {
+        return new TreeSet<>(TreeMap.empty(comparator));
+    }
+
+    @SafeVarargs
+    public static <K extends Comparable<? super K>> TreeSet<K> of(K... ks) {
+        TreeSet<K> result = empty();
+        for (K k : ks) {
+            result = result.put(k);
+        }
+        return result;
+    }
+
+    public static <K extends Comparable<? super K>> TreeSet<K> from(Iterable<K> iterable) {
+        TreeSet<K> result = empty();
+        for (K k : iterable) {
+            result = result.put(k);
+        }
+        return result;
+    }
+
+    public Comparator<? super K> comparator() {
+        return _map.comparator();
+    }
+
+    @Override
+    public Opt<TreeSet<K>> addOpt(K key) {
+        return _map.addOpt(key, Unit.unit).map(TreeSet::new);
+    }
+
+    @Override
+    public TreeSet<K> put(K key) {
+        TreeMap<K, Unit> map = _map.put(key, Unit.unit);
+        return map == _map ? this : new TreeSet<>(map);
+    }
+
+    @Override
+    public Opt<TreeSet<K>> removeOpt(K key) {
+        return _map.removeOpt(key).map(TreeSet::new);
+    }
+
+    @Override
+    public boolean contains(K key) {
+        return _map.containsKey(key);
+    }
+
+    @Override
+    public long size() {
+        return _map.size();
+    }
+
+    public Opt<K> firstOpt() {
+        return _map.firstOpt().map(Pair::get1);
+    }
+
+    public Opt<K> lastOpt() {
+        return _map.lastOpt().map(Pair::get1);
+    }
+
+    /**
+     * Returns the greatest element less than or equal to the given key.
+     * @param key the key
+     * @return the element, or Opt.none if all elements are greater
+     */
+    public Opt<K> floorOpt(K key) {
+        return _map.floorOpt(key).map(Pair::get1);
+    }
+
+    /**
+     * Returns the least element greater than or equal to the given key.
+     * @param key the key
+     * @return the element, or Opt.none if all elements are less
+     */
+    public Opt<K> ceilingOpt(K key) {
+        return _map.ceilingOpt(key).map(Pair::get1);
+    }
+
+    /**
+     * Returns the number of elements less than the given key, which is the index of the key if it is contained.
+     * @param key the key
+     * @return the rank of the key
+     */
+    public long rank(K key) {
+        return _map.rank(key);
+    }
+
+    /**
+     * Returns the element at the given index in sorted order.
+     * @param index the index
+     * @return the element, or Opt.none if the index is out of range
+     */
+    public Opt<K> selectOpt(long index) {
+        return _map.selectOpt(index).map(Pair::get1);
+    }
+
+    /**
+     * Returns a view of the elements from the lower bound (inclusive) to the upper bound (exclusive), which is
+     * created in O(1).
+     * @param from the lower bound
+     * @param to the upper bound
+     * @return the view
+     */
+    public SubSet<K> subSet(K from, K to) {
+        return new SubSet<>(_map.subMap(from, to), comparator());
+    }
+
+    @Override
+    public Iterator<K> iterator() {
+        return keys(_map.asKeyValuePairs().iterator());
+    }
+
+    @Override
+    public Spliterator<K> spliterator() {
+        return Spliterators.spliterator(iterator(), size(), characteristics(comparator()));
+    }
+
+    /**
+     * Adds SORTED for the natural order only. A spliterator built from an iterator reports null as its comparator,
+     * which stands for the natural order, so for other comparators a stream would skip a sorted() step.
+     */
+    private static int characteristics(Comparator<?> comparator) {
+        return comparator == Comparator.naturalOrder() ? CHARACTERISTICS | Spliterator.SORTED : CHARACTERISTICS;
+    }
+
+    private static <K> Iterator<K> keys(Iterator<Pair<K, Unit>> pairs) {
+        return new Iterator<K>() {
+            @Override
+            public boolean hasNext() {
+                return pairs.hasNext();
+            }
+
+            @Override
+            public K next() {
+                return pairs.next().get1();
+            }
+        };
+    }
+
+    /**
+     * A read-only view of the elements of a TreeSet in a half-open range. The size and the lookups need O(log n)
+     * steps, and a new TreeSet is only built when {@link #toTreeSet()} is called.
+     *
+     * @param <K> the element type
+     */
+    public static final class SubSet<K> implements Iterable<K> {
+        private final TreeMap.SubMap<K, Unit> _subMap;
+        private final Comparator<? super K> _comparator;
+
+        private SubSet(TreeMap.SubMap<K, Unit> subMap, Comparator<? super K> comparator) {
+            _subMap = subMap;
+            _comparator = comparator;
+        }
+
+        public long size() {
+            return _subMap.size();
+        }
+
+        public boolean isEmpty() {
+            return _subMap.isEmpty();
+        }
+
+        public boolean contains(K key) {
+            return _subMap.containsKey(key);
+        }
+
+        public Opt<K> firstOpt() {
+            return _subMap.firstOpt().map(Pair::get1);
+        }
+
+        public Opt<K> lastOpt() {
+            return _subMap.lastOpt().map(Pair::get1);
+        }
+
+        @Override
+        public Iterator<K> iterator() {
+            return keys(_subMap.iterator());
+        }
+
+        @Override
+        public Spliterator<K> spliterator() {
+            return Spliterators.spliterator(iterator(), size(), characteristics(_comparator));
+        }
+
+        public Stream<K> stream() {
+            return StreamSupport.stream(spliterator(), false);
+        }
+
+        public TreeSet<K> toTreeSet() {
+            return new TreeSet<>(_subMap.toTreeMap());
+        }
+
+        @Override
+        public String toString() {
+            StringJoiner joiner = new StringJoiner(", ");
+            forEach(k -> joiner.add(k.toString()));
+            return String.format("%s[%s]", getClass().getSimpleName(), joiner.toString());
+        }
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = 0;
+        for (K k : this) {
+            hashCode += k.hashCode();
+        }
+        return hashCode;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean equals(Object o) {
+        if (o == null || !o.getClass().equals(this.getClass())) {
+            return false;
+        }
+        if (o == this) {
+            return true;
+        }
+        TreeSet<?> that = (TreeSet<?>) o;
+        if (this.size() != that.size()) {
+            return false;
+        }
+        for (Object k : that) {
+            try {
+                if (!contains((K) k)) {
+                    return false;
+                }
+            } catch (ClassCastException ex) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return show();
+    }
+}
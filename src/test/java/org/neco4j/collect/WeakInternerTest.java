@@ -0,0 +1,46 @@
+package org.neco4j.collect;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class WeakInternerTest {
+
+    @Test
+    public void internReturnsCanonicalInstance() {
+        WeakInterner<String> interner = new WeakInterner<>(String::hashCode, String::equals);
+        String first = new String("foo");
+        String second = new String("foo");
+        assertThat(interner.find(first)).isNull();
+        assertThat(interner.intern(first)).isSameAs(first);
+        assertThat(interner.intern(second)).isSameAs(first);
+        assertThat(interner.find(second)).isSameAs(first);
+        assertThat(interner.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void customEquality() {
+        WeakInterner<String> interner = new WeakInterner<>(s -> s.toLowerCase().hashCode(), String::equalsIgnoreCase);
+        String first = "Foo";
+        assertThat(interner.intern(first)).isSameAs(first);
+        assertThat(interner.intern("FOO")).isSameAs(first);
+        assertThat(interner.intern("bar")).isEqualTo("bar");
+        assertThat(interner.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void manyInstances() {
+        WeakInterner<String> interner = new WeakInterner<>(Object::hashCode, String::equals);
+        List<String> canonical = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            canonical.add(interner.intern(new String("k" + i)));
+        }
+        for (int i = 0; i < 10000; i++) {
+            assertThat(interner.intern(new String("k" + i))).isSameAs(canonical.get(i));
+        }
+        assertThat(interner.size()).isEqualTo(10000);
+    }
+}
@@ -0,0 +1,127 @@
+package org.neco4j.collect.map;
+
+import org.junit.Test;
+import org.neco4j.tuple.Pair;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class BTreeMapTest {
+
+    @Test
+    public void empty() {
+        BTreeMap<String, Integer> map = BTreeMap.empty();
+        assertThat(map.isEmpty()).isTrue();
+        assertThat(map.size()).isEqualTo(0L);
+        assertThat(map.depth()).isEqualTo(0);
+        assertThat(map.getOpt("foo")).isEmpty();
+        assertThat(map.firstOpt()).isEmpty();
+        assertThat(map.lastOpt()).isEmpty();
+        assertThat(map.asKeyValuePairs()).isEmpty();
+        assertThat(map.range("a", "z")).isEmpty();
+        assertThat(map.removeOpt("foo")).isEmpty();
+    }
+
+    @Test
+    public void putAndGet() {
+        BTreeMap<String, Integer> map = BTreeMap.of("foo", 1, "bar", 2, "baz", 3);
+        assertThat(map.size()).isEqualTo(3L);
+        assertThat(map.getOpt("bar")).containsExactly(2);
+        assertThat(map.getOrElse("quux", 42)).isEqualTo(42);
+        assertThat(map.put("bar", 4).getOrFail("bar")).isEqualTo(4);
+        assertThat(map.put("bar", 2)).isSameAs(map);
+        assertThat(map.addOpt("bar", 5)).isEmpty();
+        assertThat(map.addOpt("quux", 5).getOrFail().size()).isEqualTo(4L);
+        assertThat(map.removeOpt("baz").getOrFail().asKeyValuePairs())
+            .containsExactly(Pair.of("bar", 2), Pair.of("foo", 1));
+        assertThat(map.removeOpt("quux")).isEmpty();
+        assertThat(map.toString()).isEqualTo("BTreeMap[bar:2, baz:3, foo:1]");
+        assertThatThrownBy(() -> map.put("x", null)).isInstanceOf(NullPointerException.class);
+    }
+
+    @Test
+    public void wideNodes() {
+        BTreeMap<Integer, Integer> map = BTreeMap.empty();
+        for (int i = 0; i < 100000; i++) {
+            map = map.put(i, -i);
+        }
+        assertThat(map.size()).isEqualTo(100000L);
+        assertThat(map.depth()).isBetween(3, 5);
+        assertThat(map.firstOpt()).containsExactly(Pair.of(0, 0));
+        assertThat(map.lastOpt()).containsExactly(Pair.of(99999, -99999));
+        assertThat(map.stream().mapToLong(Pair::get1).sum()).isEqualTo(99999L * 100000 / 2);
+        for (int i = 0; i < 100000; i++) {
+            map = map.removeOpt(i).getOrFail();
+        }
+        assertThat(map.isEmpty()).isTrue();
+        assertThat(map.depth()).isEqualTo(0);
+    }
+
+    @Test
+    public void range() {
+        BTreeMap<Integer, String> map = BTreeMap.empty();
+        for (int i = 0; i < 1000; i += 10) {
+            map = map.put(i, "v" + i);
+        }
+        assertThat(map.range(15, 45)).containsExactly(Pair.of(20, "v20"), Pair.of(30, "v30"), Pair.of(40, "v40"));
+        assertThat(map.range(20, 30)).containsExactly(Pair.of(20, "v20"));
+        assertThat(map.range(985, 2000)).containsExactly(Pair.of(990, "v990"));
+        assertThat(map.range(-10, 1)).containsExactly(Pair.of(0, "v0"));
+        assertThat(map.range(21, 29)).isEmpty();
+        assertThat(map.range(2000, 3000)).isEmpty();
+
+        BTreeMap<Integer, String> reversed = BTreeMap.<Integer, String>empty(Comparator.reverseOrder())
+                                                 .put(1, "one").put(3, "three").put(2, "two");
+        assertThat(reversed.range(3, 1)).containsExactly(Pair.of(3, "three"), Pair.of(2, "two"));
+    }
+
+    @Test
+    public void randomOperations() {
+        Random random = new Random(42);
+        NavigableMap<Integer, Integer> expected = new java.util.TreeMap<>();
+        BTreeMap<Integer, Integer> map = BTreeMap.empty();
+        for (int i = 0; i < 50000; i++) {
+            int key = random.nextInt(10000);
+            if (random.nextInt(5) < 2) {
+                expected.remove(key);
+                map = map.removeIfPossible(key);
+            } else {
+                expected.put(key, i);
+                map = map.put(key, i);
+            }
+            if (i % 5000 == 0) {
+                assertThat(map.size()).isEqualTo(expected.size());
+            }
+        }
+        assertThat(map.size()).isEqualTo(expected.size());
+        assertThat(map.asKeyValuePairs()).containsExactlyElementsOf(expected.entrySet().stream()
+            .map(e -> Pair.of(e.getKey(), e.getValue())).collect(Collectors.toList()));
+        for (int i = 0; i < 10000; i++) {
+            assertThat(map.getOrElse(i, (Integer) null)).isEqualTo(expected.get(i));
+        }
+        for (int i = 0; i < 300; i++) {
+            int from = random.nextInt(10200) - 100;
+            int to = from + random.nextInt(1000);
+            assertThat(map.range(from, to)).containsExactlyElementsOf(expected.subMap(from, to).entrySet().stream()
+                .map(e -> Pair.of(e.getKey(), e.getValue())).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testEqualsAndHashCode() {
+        BTreeMap<String, Integer> m1 = BTreeMap.of("foo", 1, "bar", 2);
+        BTreeMap<String, Integer> m2 = BTreeMap.ofAll(Arrays.asList(Pair.of("bar", 2), Pair.of("foo", 1)));
+        assertThat(m1).isEqualTo(m2);
+        assertThat(m1.hashCode()).isEqualTo(m2.hashCode());
+        assertThat(m1.hashCode()).isEqualTo(HashMap.of("foo", 1, "bar", 2).hashCode());
+        assertThat(m1).isNotEqualTo(m1.put("bar", 3));
+        assertThat(m1).isNotEqualTo(m1.put("baz", 3));
+        assertThat(m1).isNotEqualTo(TreeMap.of("foo", 1, "bar", 2));
+    }
+}
@@ -0,0 +1,82 @@
+package org.neco4j.collect.map;
+
+import org.junit.Test;
+import org.neco4j.tuple.Pair;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class BiMapTest {
+
+    @Test
+    public void empty() {
+        BiMap<Integer, String> map = BiMap.empty();
+        assertThat(map.isEmpty()).isTrue();
+        assertThat(map.getOpt(1)).isEmpty();
+        assertThat(map.getKeyOpt("one")).isEmpty();
+        assertThat(map.inverse().isEmpty()).isTrue();
+        assertThat(map.removeOpt(1)).isEmpty();
+    }
+
+    @Test
+    public void lookupInBothDirections() {
+        BiMap<Integer, String> map = BiMap.of(1, "one", 2, "two", 3, "three");
+        assertThat(map.size()).isEqualTo(3L);
+        assertThat(map.getOpt(2)).containsExactly("two");
+        assertThat(map.getKeyOpt("two")).containsExactly(2);
+        assertThat(map.containsValue("three")).isTrue();
+        assertThat(map.containsValue("four")).isFalse();
+        BiMap<String, Integer> inverse = map.inverse();
+        assertThat(inverse.getOpt("three")).containsExactly(3);
+        assertThat(inverse.inverse()).isEqualTo(map);
+        assertThat(inverse.asKeyValuePairs())
+            .containsExactlyInAnyOrder(Pair.of("one", 1), Pair.of("two", 2), Pair.of("three", 3));
+    }
+
+    @Test
+    public void addOpt() {
+        BiMap<Integer, String> map = BiMap.of(1, "one", 2, "two");
+        assertThat(map.addOpt(1, "uno")).isEmpty();
+        assertThat(map.addOpt(3, "one")).isEmpty();
+        BiMap<Integer, String> added = map.addOpt(3, "three").getOrFail();
+        assertThat(added.getKeyOpt("three")).containsExactly(3);
+        assertThatThrownBy(() -> BiMap.of(1, "one", 2, "one")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> BiMap.ofAll(Arrays.asList(Pair.of(1, "one"), Pair.of(1, "uno"))))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void putOpt() {
+        BiMap<Integer, String> map = BiMap.of(1, "one", 2, "two");
+        assertThat(map.putOpt(1, "one").getOrFail()).isSameAs(map);
+        assertThat(map.putOpt(3, "two")).isEmpty();
+        BiMap<Integer, String> replaced = map.putOpt(1, "uno").getOrFail();
+        assertThat(replaced.getOpt(1)).containsExactly("uno");
+        assertThat(replaced.getKeyOpt("uno")).containsExactly(1);
+        assertThat(replaced.containsValue("one")).isFalse();
+        assertThat(replaced.inverse().size()).isEqualTo(2L);
+    }
+
+    @Test
+    public void removeOpt() {
+        BiMap<Integer, String> map = BiMap.of(1, "one", 2, "two");
+        BiMap<Integer, String> removed = map.removeOpt(1).getOrFail();
+        assertThat(removed.containsKey(1)).isFalse();
+        assertThat(removed.containsValue("one")).isFalse();
+        assertThat(removed.inverse().removeOpt("two").getOrFail().isEmpty()).isTrue();
+        assertThat(map.removeOpt(3)).isEmpty();
+    }
+
+    @Test
+    public void testEqualsAndHashCode() {
+        BiMap<Integer, String> m1 = BiMap.of(1, "one", 2, "two");
+        BiMap<Integer, String> m2 = BiMap.of(2, "two", 1, "one");
+        assertThat(m1).isEqualTo(m2);
+        assertThat(m1.hashCode()).isEqualTo(m2.hashCode());
+        assertThat(m1.hashCode()).isEqualTo(HashMap.of(1, "one", 2, "two").hashCode());
+        assertThat(m1).isNotEqualTo(m1.putIfPossible(2, "zwei"));
+        assertThat(m1.toString()).startsWith("BiMap[");
+    }
+}
@@ -1,9 +1,20 @@
 package org.neco4j.collect.map;
 
 import org.junit.Test;
+import org.neco4j.collect.unitkey.Opt;
 import org.neco4j.tuple.Pair;
+import org.neco4j.tuple.Triple;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 
 public class HashMapTest {
@@ -101,6 +112,16 @@ public class HashMapTest {
         assertThat(HashMap.of("foo", 1, "bar", 2, "baz", 3).getOrFail("bar")).isEqualTo(2);
     }
 
+    @Test
+    public void getOrElse() {
+        assertThat(HashMap.<String, Integer>empty().getOrElse("quux", 42)).isEqualTo(42);
+        assertThat(HashMap.of("foo", 1, "bar", 2, "baz", 3).getOrElse("quux", 42)).isEqualTo(42);
+        assertThat(HashMap.of("foo", 1, "bar", 2, "baz", 3).getOrElse("bar", 42)).isEqualTo(2);
+        assertThat(HashMap.of("foo", 1, "bar", 2, "baz", 3).getOrElse("quux", () -> 42)).isEqualTo(42);
+        assertThat(HashMap.of("foo", 1, "bar", 2, "baz", 3).getOrElse("bar", () -> 42)).isEqualTo(2);
+        assertThatThrownBy(() -> HashMap.of("foo", 1).getOrFail("quux")).isInstanceOf(NoSuchElementException.class);
+    }
+
     @Test
     public void asKeyValuePairs() {
         assertThat(HashMap.empty().asKeyValuePairs()).isEmpty();
@@ -130,6 +151,7 @@ public class HashMapTest {
             .containsExactlyInAnyOrder(Pair.of("foo", 1), Pair.of("bar", 2), Pair.of("baz", 3));
         assertThat(HashMap.of("foo", 1, "bar", 2).put("bar", 3).asKeyValuePairs())
             .containsExactlyInAnyOrder(Pair.of("foo", 1), Pair.of("bar", 3));
+        assertThat(HashMap.of("foo", 1, "bar", 2).put("bar", 3).size()).isEqualTo(2);
     }
 
     @Test
@@ -138,6 +160,44 @@ public class HashMapTest {
         assertThat(HashMap.of("foo", 1, "bar", 2).keys()).containsExactlyInAnyOrder("foo", "bar");
     }
 
+    @Test
+    public void testKeySetView() {
+        HashMap<Integer, String> hm = HashMap.empty();
+        for (int i = 0; i < 1000; i++) {
+            hm = hm.put(i, "v" + (i % 10));
+        }
+        HashMap.KeySet<Integer> keys = hm.keys();
+        assertThat(keys.size()).isEqualTo(1000);
+        assertThat(keys.isEmpty()).isFalse();
+        assertThat(keys.contains(999)).isTrue();
+        assertThat(keys.contains(1000)).isFalse();
+        assertThat(keys.stream().mapToInt(Integer::intValue).sum()).isEqualTo(499500);
+        assertThat(keys.parallelStream().mapToInt(Integer::intValue).sum()).isEqualTo(499500);
+        assertThat(keys.spliterator().hasCharacteristics(Spliterator.DISTINCT)).isTrue();
+        assertThat(keys.toHashSet().size()).isEqualTo(1000);
+        assertThat(keys.toHashSet().contains(42)).isTrue();
+        // the view keeps showing the keys of the map it was created from
+        assertThat(hm.removeIfPossible(42).keys().contains(42)).isFalse();
+        assertThat(keys.contains(42)).isTrue();
+        assertThat(HashMap.of("foo", 1).keys().toString()).isEqualTo("KeySet[foo]");
+    }
+
+    @Test
+    public void testValuesView() {
+        HashMap<Integer, String> hm = HashMap.empty();
+        for (int i = 0; i < 1000; i++) {
+            hm = hm.put(i, "v" + (i % 10));
+        }
+        HashMap.Values<String> values = hm.values();
+        assertThat(values.size()).isEqualTo(1000);
+        assertThat(values.stream().filter("v3"::equals).count()).isEqualTo(100);
+        assertThat(values.parallelStream().filter("v3"::equals).count()).isEqualTo(100);
+        assertThat(values.spliterator().hasCharacteristics(Spliterator.DISTINCT)).isFalse();
+        assertThat(values.toList().size()).isEqualTo(1000);
+        assertThat(HashMap.empty().values().isEmpty()).isTrue();
+        assertThat(HashMap.of("foo", 1).values().toString()).isEqualTo("Values[1]");
+    }
+
     @Test
     public void values() {
         assertThat(HashMap.empty().values()).isEmpty();
@@ -152,6 +212,120 @@ public class HashMapTest {
         assertThat(hm.containsKey("bäng")).isFalse();
     }
 
+    @Test
+    public void depth() {
+        assertThat(HashMap.empty().depth()).isEqualTo(0);
+        assertThat(HashMap.of("foo", 1).depth()).isEqualTo(1);
+        assertThat(HashMap.of(1, "foo", 2, "bar", 3, "baz").depth()).isEqualTo(1);
+        assertThat(HashMap.of(1, "foo", 33, "bar", 65, "baz").depth()).isEqualTo(2);
+    }
+
+    @Test
+    public void sequentialKeys() {
+        HashMap<Integer, Integer> hm = HashMap.empty();
+        for (int i = 0; i < 100000; i++) {
+            hm = hm.put(i, -i);
+        }
+        assertThat(hm.size()).isEqualTo(100000);
+        assertThat(hm.depth()).isLessThanOrEqualTo(4);
+        for (int i = 0; i < 100000; i++) {
+            assertThat(hm.getOrFail(i)).isEqualTo(-i);
+        }
+        assertThat(hm.getOpt(100000)).isEmpty();
+        for (int i = 0; i < 100000; i += 2) {
+            hm = hm.removeOpt(i).getOrFail();
+        }
+        assertThat(hm.size()).isEqualTo(50000);
+        assertThat(hm.containsKey(42)).isFalse();
+        assertThat(hm.containsKey(43)).isTrue();
+    }
+
+    @Test
+    public void collidingKeys() {
+        // "Aa" and "BB" have the same hash code, so all combinations of them collide
+        assertThat("AaAa".hashCode()).isEqualTo("BBBB".hashCode());
+        HashMap<String, Integer> hm = HashMap.of("AaAa", 1, "AaBB", 2, "BBAa", 3, "BBBB", 4, "foo", 5);
+        assertThat(hm.size()).isEqualTo(5);
+        assertThat(hm.getOpt("AaBB")).containsExactly(2);
+        assertThat(hm.getOpt("BBAa")).containsExactly(3);
+        assertThat(hm.getOpt("AaAaAa")).isEmpty();
+        assertThat(hm.addOpt("BBBB", 42)).isEmpty();
+        assertThat(hm.put("BBBB", 42).getOpt("BBBB")).containsExactly(42);
+
+        HashMap<String, Integer> removed = hm.removeIfPossible("AaAa").removeIfPossible("BBBB").removeIfPossible("BBAa");
+        assertThat(removed.asKeyValuePairs()).containsExactlyInAnyOrder(Pair.of("AaBB", 2), Pair.of("foo", 5));
+        assertThat(removed.depth()).isEqualTo(1);
+        assertThat(removed.removeOpt("BBAa")).isEmpty();
+    }
+
+    @Test
+    public void manyCollidingKeys() {
+        // 1024 strings with the same hash code, as in a hash flooding attack
+        List<String> keys = new ArrayList<>(Collections.singletonList(""));
+        for (int i = 0; i < 10; i++) {
+            List<String> longer = new ArrayList<>();
+            for (String key : keys) {
+                longer.add(key + "Aa");
+                longer.add(key + "BB");
+            }
+            keys = longer;
+        }
+        HashMap<String, Integer> hm = HashMap.empty();
+        for (int i = 0; i < keys.size(); i++) {
+            hm = hm.put(keys.get(i), i);
+        }
+        assertThat(hm.size()).isEqualTo(1024);
+        assertThat(hm.depth()).isEqualTo(8);
+        for (int i = 0; i < keys.size(); i++) {
+            assertThat(hm.getOrFail(keys.get(i))).isEqualTo(i);
+        }
+        assertThat(hm.addOpt(keys.get(7), 42)).isEmpty();
+        assertThat(hm.put(keys.get(7), 42).getOrFail(keys.get(7))).isEqualTo(42);
+        assertThat(hm.stream()).hasSize(1024);
+
+        // a key of another class with the same hash code
+        Integer other = keys.get(0).hashCode();
+        HashMap<Object, Integer> mixed = HashMap.<Object, Integer>empty().put(other, -1);
+        for (int i = 0; i < 20; i++) {
+            mixed = mixed.put(keys.get(i), i);
+        }
+        assertThat(mixed.size()).isEqualTo(21);
+        assertThat(mixed.getOrFail(other)).isEqualTo(-1);
+        assertThat(mixed.getOrFail(keys.get(19))).isEqualTo(19);
+        assertThat(mixed.removeIfPossible(other).removeIfPossible(keys.get(3)).size()).isEqualTo(19);
+        HashMap<Object, Integer> flooded = HashMap.<Object, Integer>empty();
+        for (int i = 0; i < keys.size(); i++) {
+            flooded = flooded.put(keys.get(i), i);
+        }
+        assertThat(flooded.containsKey(other)).isFalse();
+        assertThat(flooded.removeOpt(other)).isEmpty();
+        assertThat(flooded.put(other, -1).getOrFail(other)).isEqualTo(-1);
+        assertThat(flooded.put(other, -1).size()).isEqualTo(1025);
+        assertThat(flooded.put(other, -1).removeOpt(other).getOrFail()).isEqualTo(flooded);
+        assertThat(flooded.asKeyValuePairs()).hasSize(1024).doesNotHaveDuplicates();
+
+        HashMap<String, Integer> shrunk = hm;
+        for (int i = 0; i < keys.size(); i += 2) {
+            shrunk = shrunk.removeOpt(keys.get(i)).getOrFail();
+        }
+        assertThat(shrunk.size()).isEqualTo(512);
+        assertThat(shrunk.containsKey(keys.get(0))).isFalse();
+        assertThat(shrunk.containsKey(keys.get(1))).isTrue();
+        for (int i = 1; i < keys.size() - 2; i += 2) {
+            shrunk = shrunk.removeOpt(keys.get(i)).getOrFail();
+        }
+        assertThat(shrunk.asKeyValuePairs()).containsExactly(Pair.of(keys.get(1023), 1023));
+        assertThat(shrunk.depth()).isEqualTo(1);
+
+        HashMap<String, Integer> rebuilt = HashMap.empty();
+        for (int i = keys.size() - 1; i >= 0; i--) {
+            rebuilt = rebuilt.put(keys.get(i), i);
+        }
+        assertThat(rebuilt).isEqualTo(hm);
+        assertThat(rebuilt.hashCode()).isEqualTo(hm.hashCode());
+        assertThat(rebuilt.retainKeys(shrunk)).isEqualTo(shrunk);
+    }
+
     @Test
     public void testHashCode() {
         int h0 = HashMap.empty().hashCode();
@@ -209,4 +383,348 @@ public class HashMapTest {
             .isEqualTo("HashMap[1:foo, 2:bar, 3:baz]");
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testTransientBuilder() {
+        HashMap.Transient<Integer, String> builder = HashMap.transientBuilder();
+        for (int i = 0; i < 10000; i++) {
+            builder.put(i, "v" + i);
+        }
+        builder.put(42, "answer").remove(7).remove(7);
+        assertThat(builder.size()).isEqualTo(9999L);
+        assertThat(builder.getOpt(42).getOrFail()).isEqualTo("answer");
+        assertThat(builder.containsKey(7)).isFalse();
+
+        HashMap<Integer, String> map = builder.persistent();
+        assertThat(map.size()).isEqualTo(9999L);
+        assertThat(map.getOrFail(42)).isEqualTo("answer");
+        assertThat(map.getOrFail(4711)).isEqualTo("v4711");
+        assertThat(map.containsKey(7)).isFalse();
+        assertThatThrownBy(() -> builder.put(1, "x")).isInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(builder::persistent).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void testAsTransient() {
+        HashMap<Integer, String> map = HashMap.of(1, "foo", 2, "bar", 3, "baz");
+        HashMap<Integer, String> changed = map.asTransient().put(1, "one").remove(2).put(4, "quux").persistent();
+        assertThat(map).isEqualTo(HashMap.of(1, "foo", 2, "bar", 3, "baz"));
+        assertThat(changed).isEqualTo(HashMap.of(1, "one", 3, "baz", 4, "quux"));
+
+        // a frozen map must not be modified by a later transient of it
+        HashMap.Transient<Integer, String> builder = changed.asTransient();
+        builder.put(3, "three").put(5, "five");
+        assertThat(changed).isEqualTo(HashMap.of(1, "one", 3, "baz", 4, "quux"));
+        assertThat(builder.persistent()).isEqualTo(HashMap.of(1, "one", 3, "three", 4, "quux", 5, "five"));
+    }
+
+    @Test
+    public void testOfAll() {
+        HashMap<String, Integer> map = HashMap.ofAll(
+            Arrays.asList(Pair.of("foo", 1), Pair.of("bar", 2), Pair.of("foo", 3)));
+        assertThat(map).isEqualTo(HashMap.of("foo", 3, "bar", 2));
+        assertThat(HashMap.ofAll(Collections.<Pair<String, Integer>>emptyList()))
+            .isEqualTo(HashMap.empty());
+    }
+
+    @Test
+    public void testIteration() {
+        HashMap.Transient<Integer, Integer> builder = HashMap.transientBuilder();
+        for (int i = 0; i < 5000; i++) {
+            builder.put(i * 31, i);
+        }
+        HashMap<Integer, Integer> map = builder.persistent();
+        long sum = 0;
+        int count = 0;
+        for (Pair<Integer, Integer> pair : map.asKeyValuePairs()) {
+            assertThat(pair.get1()).isEqualTo(pair.get2() * 31);
+            sum += pair.get2();
+            count++;
+        }
+        assertThat(count).isEqualTo(5000);
+        assertThat(sum).isEqualTo(4999L * 5000 / 2);
+        assertThat(map.keys().size()).isEqualTo(5000L);
+        assertThat(map.values().size()).isEqualTo(5000L);
+
+        Iterator<Pair<Object, Object>> empty = HashMap.empty().asKeyValuePairs().iterator();
+        assertThat(empty.hasNext()).isFalse();
+        assertThatThrownBy(empty::next).isInstanceOf(NoSuchElementException.class);
+    }
+
+    @Test
+    public void testParallelStream() {
+        HashMap.Transient<Integer, Integer> builder = HashMap.transientBuilder();
+        for (int i = 0; i < 100000; i++) {
+            builder.put(i * 7, i);
+        }
+        HashMap<Integer, Integer> map = builder.persistent();
+        assertThat(map.parallelStream().mapToLong(Pair::get2).sum()).isEqualTo(99999L * 100000 / 2);
+        assertThat(map.parallelStream().count()).isEqualTo(100000L);
+        assertThat(map.stream().count()).isEqualTo(100000L);
+        assertSplitsExactly(map.stream().spliterator());
+        assertSplitsExactly(HashMap.of("AaAa", 1, "AaBB", 2, "BBAa", 3, "foo", 4).stream().spliterator());
+        assertThat(HashMap.empty().parallelStream().count()).isEqualTo(0L);
+    }
+
+    private static void assertSplitsExactly(Spliterator<?> spliterator) {
+        assertThat(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED)).isTrue();
+        long size = spliterator.estimateSize();
+        Spliterator<?> split = spliterator.trySplit();
+        if (split == null) {
+            long[] count = new long[1];
+            spliterator.forEachRemaining(x -> count[0]++);
+            assertThat(count[0]).isEqualTo(size);
+        } else {
+            assertThat(split.estimateSize() + spliterator.estimateSize()).isEqualTo(size);
+            assertSplitsExactly(split);
+            assertSplitsExactly(spliterator);
+        }
+    }
+
+    @Test
+    public void testCompute() {
+        HashMap<String, Integer> map = HashMap.of("foo", 1, "bar", 2);
+        assertThat(map.compute("foo", (k, v) -> v + 10)).isEqualTo(HashMap.of("foo", 11, "bar", 2));
+        assertThat(map.compute("baz", (k, v) -> v == null ? k.length() : v))
+            .isEqualTo(HashMap.of("foo", 1, "bar", 2, "baz", 3));
+        assertThat(map.compute("foo", (k, v) -> null)).isEqualTo(HashMap.of("bar", 2));
+        assertThat(map.compute("baz", (k, v) -> null)).isSameAs(map);
+        assertThat(map.compute("foo", (k, v) -> v)).isSameAs(map);
+        assertThat(HashMap.of("foo", 1).compute("foo", (k, v) -> null)).isEqualTo(HashMap.empty());
+    }
+
+    @Test
+    public void testComputeIfAbsent() {
+        HashMap<String, Integer> map = HashMap.of("foo", 1, "bar", 2);
+        assertThat(map.computeIfAbsent("foo", k -> 42)).isSameAs(map);
+        assertThat(map.computeIfAbsent("baz", k -> null)).isSameAs(map);
+        assertThat(map.computeIfAbsent("baz", String::length)).isEqualTo(HashMap.of("foo", 1, "bar", 2, "baz", 3));
+    }
+
+    @Test
+    public void testComputeIfPresent() {
+        HashMap<String, Integer> map = HashMap.of("foo", 1, "bar", 2);
+        assertThat(map.computeIfPresent("baz", (k, v) -> 42)).isSameAs(map);
+        assertThat(map.computeIfPresent("foo", (k, v) -> v * 5)).isEqualTo(HashMap.of("foo", 5, "bar", 2));
+        assertThat(map.computeIfPresent("foo", (k, v) -> null)).isEqualTo(HashMap.of("bar", 2));
+    }
+
+    @Test
+    public void testMerge() {
+        HashMap<String, Integer> counts = HashMap.empty();
+        for (String word : "a b a c b a".split(" ")) {
+            counts = counts.merge(word, 1, Integer::sum);
+        }
+        assertThat(counts).isEqualTo(HashMap.of("a", 3, "b", 2, "c", 1));
+        assertThat(counts.merge("c", 1, (x, y) -> null)).isEqualTo(HashMap.of("a", 3, "b", 2));
+    }
+
+    @Test
+    public void testComputeCollisionsAndDeepTries() {
+        HashMap<String, Integer> hm = HashMap.of("AaAa", 1, "AaBB", 2, "BBAa", 3, "BBBB", 4, "foo", 5);
+        assertThat(hm.merge("AaBB", 10, Integer::sum).getOrFail("AaBB")).isEqualTo(12);
+        assertThat(hm.compute("AaAaAa", (k, v) -> 6).size()).isEqualTo(6L);
+        assertThat(hm.compute("BBAa", (k, v) -> null).compute("BBBB", (k, v) -> null).compute("AaBB", (k, v) -> null))
+            .isEqualTo(HashMap.of("AaAa", 1, "foo", 5));
+
+        HashMap<Integer, Integer> map = HashMap.empty();
+        for (int i = 0; i < 10000; i++) {
+            map = map.merge(i % 1000 * 33, 1, Integer::sum);
+        }
+        assertThat(map.size()).isEqualTo(1000L);
+        assertThat(map.stream().allMatch(p -> p.get2() == 10)).isTrue();
+        for (int i = 0; i < 1000; i++) {
+            map = map.computeIfPresent(i * 33, (k, v) -> v == 10 ? null : v);
+        }
+        assertThat(map).isEqualTo(HashMap.empty());
+    }
+
+    @Test
+    public void testMergeMaps() {
+        HashMap<String, Integer> h1 = HashMap.of("foo", 1, "bar", 2, "baz", 3);
+        HashMap<String, Integer> h2 = HashMap.of("bar", 20, "baz", -3, "quux", 4);
+        assertThat(h1.merge(h2, (x, y) -> x + y == 0 ? null : x + y))
+            .isEqualTo(HashMap.of("foo", 1, "bar", 22, "quux", 4));
+        assertThat(h1.merge(HashMap.empty(), Integer::sum)).isSameAs(h1);
+        assertThat(HashMap.<String, Integer>empty().merge(h1, Integer::sum)).isEqualTo(h1);
+        assertThat(h1.merge(h1, (x, y) -> x)).isSameAs(h1);
+    }
+
+    @Test
+    public void testRetainAndRemoveKeys() {
+        HashMap<String, Integer> h1 = HashMap.of("foo", 1, "bar", 2, "baz", 3);
+        HashMap<String, Boolean> h2 = HashMap.of("bar", true, "quux", false);
+        assertThat(h1.retainKeys(h2)).isEqualTo(HashMap.of("bar", 2));
+        assertThat(h1.removeKeys(h2)).isEqualTo(HashMap.of("foo", 1, "baz", 3));
+        assertThat(h1.retainKeys(h1)).isSameAs(h1);
+        assertThat(h1.removeKeys(h1)).isEqualTo(HashMap.empty());
+        assertThat(h1.removeKeys(HashMap.empty())).isSameAs(h1);
+    }
+
+    @Test
+    public void testCombineLargeMaps() {
+        HashMap.Transient<Integer, Integer> evens = HashMap.transientBuilder();
+        HashMap.Transient<Integer, Integer> thirds = HashMap.transientBuilder();
+        for (int i = 0; i < 60000; i++) {
+            evens.put(2 * i, 1);
+            thirds.put(3 * i, 1);
+        }
+        HashMap<Integer, Integer> h2 = evens.persistent();
+        HashMap<Integer, Integer> h3 = thirds.persistent();
+
+        HashMap<Integer, Integer> merged = h2.merge(h3, Integer::sum);
+        assertThat(merged.size()).isEqualTo(60000L + 60000L - 20000L);
+        assertThat(merged.getOrFail(6)).isEqualTo(2);
+        assertThat(merged.getOrFail(4)).isEqualTo(1);
+        assertThat(merged.getOpt(5)).isEmpty();
+
+        HashMap<Integer, Integer> both = h2.retainKeys(h3);
+        assertThat(both.size()).isEqualTo(20000L);
+        assertThat(both.stream().allMatch(p -> p.get1() % 6 == 0)).isTrue();
+        assertThat(h2.removeKeys(h3).size()).isEqualTo(40000L);
+
+        HashMap<Integer, Integer> changed = h2.put(2, 5).removeIfPossible(4);
+        assertThat(changed.merge(h2, (x, y) -> x)).isEqualTo(h2.put(2, 5));
+        assertThat(changed.removeKeys(h2)).isEqualTo(HashMap.empty());
+    }
+
+    @Test
+    public void testDiff() {
+        HashMap<String, Integer> older = HashMap.of("foo", 1, "bar", 2, "baz", 3);
+        HashMap<String, Integer> newer = older.put("foo", 10).removeIfPossible("bar").put("quux", 4).put("baz", 3);
+        assertThat(newer.diff(older)).containsExactlyInAnyOrder(
+            Triple.of("foo", Opt.some(1), Opt.some(10)),
+            Triple.of("bar", Opt.some(2), Opt.none()),
+            Triple.of("quux", Opt.none(), Opt.some(4)));
+        assertThat(older.diff(older)).isEmpty();
+        assertThat(older.diff(HashMap.empty())).hasSize(3);
+        assertThat(HashMap.<String, Integer>empty().diff(older)).hasSize(3);
+    }
+
+    @Test
+    public void testDiffSkipsSharedSubtrees() {
+        int[] comparisons = new int[1];
+        class Value {
+            @Override
+            public boolean equals(Object o) {
+                comparisons[0]++;
+                return o == this;
+            }
+
+            @Override
+            public int hashCode() {
+                return 0;
+            }
+        }
+        HashMap.Transient<Integer, Value> builder = HashMap.transientBuilder();
+        for (int i = 0; i < 100000; i++) {
+            builder.put(i, new Value());
+        }
+        HashMap<Integer, Value> older = builder.persistent();
+        HashMap<Integer, Value> newer = older.put(4711, new Value()).removeIfPossible(42).put(-1, new Value());
+        assertThat(newer.diff(older).map(Triple::get1)).containsExactlyInAnyOrder(4711, 42, -1);
+        assertThat(comparisons[0]).isLessThan(100);
+    }
+
+    @Test
+    public void testHashCodeOfEntries() {
+        assertThat(HashMap.empty().hashCode()).isEqualTo(0);
+        HashMap<String, Integer> map = HashMap.of("AaAa", 1, "BBBB", 2, "foo", 3);
+        assertThat(map.hashCode())
+            .isEqualTo(Pair.of("AaAa", 1).hashCode() + Pair.of("BBBB", 2).hashCode() + Pair.of("foo", 3).hashCode());
+        assertThat(map.put("foo", 4).removeIfPossible("AaAa").hashCode())
+            .isEqualTo(Pair.of("BBBB", 2).hashCode() + Pair.of("foo", 4).hashCode());
+        assertThat(map.merge(HashMap.of("bar", 5), Integer::sum).hashCode())
+            .isEqualTo(map.hashCode() + Pair.of("bar", 5).hashCode());
+    }
+
+    @Test
+    public void testEqualsStructurally() {
+        HashMap<String, Integer> h1 = HashMap.of("AaAa", 1, "AaBB", 2, "BBAa", 3, "BBBB", 4, "foo", 5);
+        HashMap<String, Integer> h2 = HashMap.of("foo", 5, "BBBB", 4, "BBAa", 3, "AaBB", 2, "AaAa", 1);
+        assertThat(h1).isEqualTo(h2);
+        assertThat(h1.hashCode()).isEqualTo(h2.hashCode());
+        // same hash code, but different values
+        assertThat(HashMap.of("x", "Aa")).isNotEqualTo(HashMap.of("x", "BB"));
+        assertThat(HashMap.of("AaAa", "AaAa", "BBBB", "BBBB")).isNotEqualTo(HashMap.of("AaAa", "BBBB", "BBBB", "AaAa"));
+
+        HashMap<Integer, Integer> large = HashMap.empty();
+        for (int i = 0; i < 10000; i++) {
+            large = large.put(i, i);
+        }
+        assertThat(large.put(17, 18)).isNotEqualTo(large);
+        assertThat(large.put(17, 18).put(17, 17)).isEqualTo(large);
+    }
+
+    @Test
+    public void testIntern() {
+        HashMap<Integer, String> map = HashMap.empty();
+        HashMap<Integer, String> other = HashMap.empty();
+        for (int i = 0; i < 1000; i++) {
+            map = map.put(i, "v" + i);
+            other = other.put(999 - i, "v" + (999 - i));
+        }
+        HashMap<Integer, String> interned = map.intern();
+        assertThat(interned).isEqualTo(map);
+        assertThat(interned.intern()).isSameAs(interned);
+        HashMap<Integer, String> otherInterned = other.intern();
+        assertThat(otherInterned).isEqualTo(interned);
+        assertThat(otherInterned.intern()).isSameAs(otherInterned);
+
+        HashMap<Integer, String> modified = interned.put(1000, "v1000").intern();
+        assertThat(modified.size()).isEqualTo(1001L);
+        assertThat(modified.getOpt(1000)).containsExactly("v1000");
+        assertThat(modified.removeOpt(1000).getOrFail().intern()).isEqualTo(interned);
+        assertThat(HashMap.empty().intern()).isEqualTo(HashMap.empty());
+    }
+
+    @Test
+    public void testInternCollidingKeys() {
+        List<String> keys = new ArrayList<>();
+        keys.add("");
+        for (int i = 0; i < 5; i++) {
+            List<String> next = new ArrayList<>();
+            for (String key : keys) {
+                next.add(key + "Aa");
+                next.add(key + "BB");
+            }
+            keys = next;
+        }
+        HashMap<String, Integer> map = HashMap.empty();
+        HashMap<String, Integer> reversed = HashMap.empty();
+        for (int i = 0; i < keys.size(); i++) {
+            map = map.put(keys.get(i), i);
+            reversed = reversed.put(keys.get(keys.size() - 1 - i), keys.size() - 1 - i);
+        }
+        assertThat(reversed.intern()).isEqualTo(map.intern());
+        assertThat(map.intern().getOpt(keys.get(7))).containsExactly(7);
+    }
+
+    @Test
+    public void testUnion() {
+        HashMap<Integer, String> map = HashMap.of(1, "a", 2, "b", 3, "c");
+        HashMap<Integer, String> other = HashMap.of(3, "x", 4, "d");
+        assertThat(map.union(other)).isEqualTo(HashMap.of(1, "a", 2, "b", 3, "c", 4, "d"));
+        assertThat(other.union(map)).isEqualTo(HashMap.of(1, "a", 2, "b", 3, "x", 4, "d"));
+        assertThat(map.union(map)).isSameAs(map);
+        assertThat(map.union(HashMap.empty())).isSameAs(map);
+    }
+
+    @Test
+    public void testContainsKeys() {
+        HashMap<Integer, Integer> map = HashMap.empty();
+        for (int i = 0; i < 10_000; i++) {
+            map = map.put(i, i);
+        }
+        HashMap<Integer, Integer> subMap = map;
+        for (int i = 0; i < 10_000; i += 3) {
+            subMap = subMap.removeIfPossible(i);
+        }
+        assertThat(map.containsKeys(subMap)).isTrue();
+        assertThat(map.containsKeys(map)).isTrue();
+        assertThat(map.containsKeys(HashMap.empty())).isTrue();
+        assertThat(subMap.containsKeys(map)).isFalse();
+        assertThat(map.containsKeys(subMap.put(10_000, 0))).isFalse();
+        assertThat(map.containsKeys(HashMap.of(5, "five", 17, "seventeen"))).isTrue();
+    }
+}
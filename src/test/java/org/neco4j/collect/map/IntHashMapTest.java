@@ -0,0 +1,112 @@
+package org.neco4j.collect.map;
+
+import org.junit.Test;
+import org.neco4j.tuple.Pair;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class IntHashMapTest {
+
+    @Test
+    public void empty() {
+        IntHashMap<String> map = IntHashMap.empty();
+        assertThat(map.isEmpty()).isTrue();
+        assertThat(map.size()).isEqualTo(0L);
+        assertThat(map.getOpt(42)).isEmpty();
+        assertThat(map.asKeyValuePairs()).isEmpty();
+        assertThat(map.removeOpt(42)).isEmpty();
+    }
+
+    @Test
+    public void putAndGet() {
+        IntHashMap<String> map = IntHashMap.of(1, "one", -1, "minus one", Integer.MIN_VALUE, "min");
+        assertThat(map.size()).isEqualTo(3L);
+        assertThat(map.getOrElse(1, "none")).isEqualTo("one");
+        assertThat(map.getOrElse(-1, "none")).isEqualTo("minus one");
+        assertThat(map.getOrElse(Integer.MIN_VALUE, "none")).isEqualTo("min");
+        assertThat(map.getOrElse(0, "none")).isEqualTo("none");
+        assertThat(map.containsKey(-1)).isTrue();
+        assertThat(map.containsKey(2)).isFalse();
+        assertThat(map.getOrFail(Integer.valueOf(1))).isEqualTo("one");
+        assertThatThrownBy(() -> map.getOrFail(Integer.valueOf(2))).isInstanceOf(NoSuchElementException.class);
+
+        IntHashMap<String> replaced = map.put(1, "uno");
+        assertThat(replaced.size()).isEqualTo(3L);
+        assertThat(replaced.getOpt(1)).containsExactly("uno");
+        assertThat(map.getOpt(1)).containsExactly("one");
+        assertThat(map.put(1, map.getOrFail(1))).isSameAs(map);
+    }
+
+    @Test
+    public void addOpt() {
+        IntHashMap<String> map = IntHashMap.of(1, "one");
+        assertThat(map.addOpt(1, "uno")).isEmpty();
+        assertThat(map.addOpt(2, "two").getOrFail()).isEqualTo(IntHashMap.of(1, "one", 2, "two"));
+    }
+
+    @Test
+    public void removeOpt() {
+        IntHashMap<String> map = IntHashMap.of(1, "one", 2, "two", 3, "three");
+        assertThat(map.removeOpt(4)).isEmpty();
+        assertThat(map.removeOpt(2).getOrFail()).isEqualTo(IntHashMap.of(1, "one", 3, "three"));
+        assertThat(map.removeIfPossible(1).removeIfPossible(2).removeIfPossible(3)).isEqualTo(IntHashMap.empty());
+    }
+
+    @Test
+    public void iterationIsInUnsignedKeyOrder() {
+        IntHashMap<String> map = IntHashMap.of(-1, "c", 5, "b", 0, "a");
+        assertThat(map.asKeyValuePairs()).containsExactly(Pair.of(0, "a"), Pair.of(5, "b"), Pair.of(-1, "c"));
+        assertThat(map.stream().map(Pair::get2)).containsExactly("a", "b", "c");
+        assertThat(map.toString()).isEqualTo("IntHashMap[0:a, 5:b, -1:c]");
+    }
+
+    @Test
+    public void randomOperations() {
+        Random random = new Random(42);
+        TreeMap<Integer, Integer> expected = new TreeMap<>(Integer::compareUnsigned);
+        IntHashMap<Integer> map = IntHashMap.empty();
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextBoolean() ? random.nextInt(1000) : random.nextInt();
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.removeIfPossible(key);
+            } else {
+                expected.put(key, i);
+                map = map.put(key, Integer.valueOf(i));
+            }
+        }
+        assertThat(map.size()).isEqualTo(expected.size());
+        for (Integer key : expected.keySet()) {
+            assertThat(map.getOrElse(key.intValue(), null)).isEqualTo(expected.get(key));
+        }
+        int index = 0;
+        Integer[] keys = expected.keySet().toArray(new Integer[0]);
+        for (Pair<Integer, Integer> pair : map.asKeyValuePairs()) {
+            assertThat(pair.get1()).isEqualTo(keys[index++]);
+        }
+        IntHashMap<Integer> rebuilt = IntHashMap.empty();
+        for (Integer key : expected.descendingKeySet()) {
+            rebuilt = rebuilt.put(key, expected.get(key));
+        }
+        assertThat(rebuilt).isEqualTo(map);
+        assertThat(rebuilt.hashCode()).isEqualTo(map.hashCode());
+    }
+
+    @Test
+    public void testEqualsAndHashCode() {
+        IntHashMap<String> m1 = IntHashMap.of(1, "one", 2, "two");
+        IntHashMap<String> m2 = IntHashMap.ofAll(Arrays.asList(Pair.of(2, "two"), Pair.of(1, "one")));
+        assertThat(m1).isEqualTo(m2);
+        assertThat(m1.hashCode()).isEqualTo(m2.hashCode());
+        assertThat(m1.hashCode()).isEqualTo(HashMap.of(1, "one", 2, "two").hashCode());
+        assertThat(m1).isNotEqualTo(m1.put(2, "zwei"));
+        assertThat(m1).isNotEqualTo(m1.put(3, "three"));
+        assertThat(m1).isNotEqualTo(HashMap.of(1, "one", 2, "two"));
+    }
+}
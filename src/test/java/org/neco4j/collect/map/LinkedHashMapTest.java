@@ -0,0 +1,90 @@
+package org.neco4j.collect.map;
+
+import org.junit.Test;
+import org.neco4j.tuple.Pair;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LinkedHashMapTest {
+
+    @Test
+    public void empty() {
+        LinkedHashMap<String, Integer> map = LinkedHashMap.empty();
+        assertThat(map.isEmpty()).isTrue();
+        assertThat(map.getOpt("foo")).isEmpty();
+        assertThat(map.asKeyValuePairs()).isEmpty();
+        assertThat(map.removeOpt("foo")).isEmpty();
+        assertThatThrownBy(() -> map.getOrFail("foo")).isInstanceOf(NoSuchElementException.class);
+    }
+
+    @Test
+    public void insertionOrder() {
+        LinkedHashMap<String, Integer> map = LinkedHashMap.of("foo", 1, "bar", 2, "baz", 3);
+        assertThat(map.asKeyValuePairs()).containsExactly(Pair.of("foo", 1), Pair.of("bar", 2), Pair.of("baz", 3));
+        assertThat(map.getOpt("bar")).containsExactly(2);
+        assertThat(map.getOrElse("quux", 42)).isEqualTo(42);
+        assertThat(map.put("bar", 2)).isSameAs(map);
+        assertThat(map.addOpt("bar", 5)).isEmpty();
+        // replacing a value keeps the position
+        assertThat(map.put("foo", 4).asKeyValuePairs())
+            .containsExactly(Pair.of("foo", 4), Pair.of("bar", 2), Pair.of("baz", 3));
+        // removing and adding again moves the key to the end
+        assertThat(map.removeIfPossible("foo").put("foo", 1).asKeyValuePairs())
+            .containsExactly(Pair.of("bar", 2), Pair.of("baz", 3), Pair.of("foo", 1));
+        assertThat(map.stream().map(Pair::get1).collect(Collectors.toList())).containsExactly("foo", "bar", "baz");
+        assertThat(map.toString()).isEqualTo("LinkedHashMap[foo:1, bar:2, baz:3]");
+    }
+
+    @Test
+    public void iterationReturnsStoredEntries() {
+        LinkedHashMap<String, Integer> map = LinkedHashMap.of("foo", 1, "bar", 2);
+        Iterator<Pair<String, Integer>> first = map.asKeyValuePairs().iterator();
+        Iterator<Pair<String, Integer>> second = map.asKeyValuePairs().iterator();
+        assertThat(first.next()).isSameAs(second.next());
+        assertThat(first.next()).isSameAs(second.next());
+        assertThat(first.hasNext()).isFalse();
+    }
+
+    @Test
+    public void randomOperations() {
+        Random random = new Random(42);
+        Map<Integer, Integer> expected = new java.util.LinkedHashMap<>();
+        LinkedHashMap<Integer, Integer> map = LinkedHashMap.empty();
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(2000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.removeIfPossible(key);
+            } else {
+                expected.put(key, i);
+                map = map.put(key, i);
+            }
+        }
+        assertThat(map.size()).isEqualTo(expected.size());
+        assertThat(map.asKeyValuePairs()).containsExactlyElementsOf(expected.entrySet().stream()
+            .map(e -> Pair.of(e.getKey(), e.getValue())).collect(Collectors.toList()));
+        for (int i = 0; i < 2000; i++) {
+            assertThat(map.getOpt(i).getOrElse(null)).isEqualTo(expected.get(i));
+        }
+    }
+
+    @Test
+    public void testEqualsAndHashCode() {
+        LinkedHashMap<String, Integer> m1 = LinkedHashMap.of("foo", 1, "bar", 2);
+        LinkedHashMap<String, Integer> m2 = LinkedHashMap.ofAll(Arrays.asList(Pair.of("bar", 2), Pair.of("foo", 1)));
+        assertThat(m1).isEqualTo(m2);
+        assertThat(m1.hashCode()).isEqualTo(m2.hashCode());
+        assertThat(m1.hashCode()).isEqualTo(HashMap.of("foo", 1, "bar", 2).hashCode());
+        assertThat(m1).isNotEqualTo(m1.put("bar", 3));
+        assertThat(m1).isNotEqualTo(m1.put("baz", 3));
+        assertThat(m1).isNotEqualTo(HashMap.of("foo", 1, "bar", 2));
+    }
+}
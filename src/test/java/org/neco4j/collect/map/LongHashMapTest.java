@@ -0,0 +1,112 @@
+package org.neco4j.collect.map;
+
+import org.junit.Test;
+import org.neco4j.tuple.Pair;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class LongHashMapTest {
+
+    @Test
+    public void empty() {
+        LongHashMap<String> map = LongHashMap.empty();
+        assertThat(map.isEmpty()).isTrue();
+        assertThat(map.size()).isEqualTo(0L);
+        assertThat(map.getOpt(42)).isEmpty();
+        assertThat(map.asKeyValuePairs()).isEmpty();
+        assertThat(map.removeOpt(42)).isEmpty();
+    }
+
+    @Test
+    public void putAndGet() {
+        LongHashMap<String> map = LongHashMap.of(1, "one", -1, "minus one", Long.MIN_VALUE, "min");
+        assertThat(map.size()).isEqualTo(3L);
+        assertThat(map.getOrElse(1, "none")).isEqualTo("one");
+        assertThat(map.getOrElse(-1, "none")).isEqualTo("minus one");
+        assertThat(map.getOrElse(Long.MIN_VALUE, "none")).isEqualTo("min");
+        assertThat(map.getOrElse(0, "none")).isEqualTo("none");
+        assertThat(map.containsKey(-1)).isTrue();
+        assertThat(map.containsKey(2)).isFalse();
+        assertThat(map.getOrFail(Long.valueOf(1))).isEqualTo("one");
+        assertThatThrownBy(() -> map.getOrFail(Long.valueOf(2))).isInstanceOf(NoSuchElementException.class);
+
+        LongHashMap<String> replaced = map.put(1, "uno");
+        assertThat(replaced.size()).isEqualTo(3L);
+        assertThat(replaced.getOpt(1)).containsExactly("uno");
+        assertThat(map.getOpt(1)).containsExactly("one");
+        assertThat(map.put(1, map.getOrFail(1L))).isSameAs(map);
+    }
+
+    @Test
+    public void addOpt() {
+        LongHashMap<String> map = LongHashMap.of(1, "one");
+        assertThat(map.addOpt(1, "uno")).isEmpty();
+        assertThat(map.addOpt(2, "two").getOrFail()).isEqualTo(LongHashMap.of(1, "one", 2, "two"));
+    }
+
+    @Test
+    public void removeOpt() {
+        LongHashMap<String> map = LongHashMap.of(1, "one", 2, "two", 3, "three");
+        assertThat(map.removeOpt(4)).isEmpty();
+        assertThat(map.removeOpt(2).getOrFail()).isEqualTo(LongHashMap.of(1, "one", 3, "three"));
+        assertThat(map.removeIfPossible(1L).removeIfPossible(2L).removeIfPossible(3L)).isEqualTo(LongHashMap.empty());
+    }
+
+    @Test
+    public void iterationIsInUnsignedKeyOrder() {
+        LongHashMap<String> map = LongHashMap.of(-1, "c", 5, "b", 0, "a");
+        assertThat(map.asKeyValuePairs()).containsExactly(Pair.of(0L, "a"), Pair.of(5L, "b"), Pair.of(-1L, "c"));
+        assertThat(map.stream().map(Pair::get2)).containsExactly("a", "b", "c");
+        assertThat(map.toString()).isEqualTo("LongHashMap[0:a, 5:b, -1:c]");
+    }
+
+    @Test
+    public void randomOperations() {
+        Random random = new Random(42);
+        TreeMap<Long, Integer> expected = new TreeMap<>(Long::compareUnsigned);
+        LongHashMap<Integer> map = LongHashMap.empty();
+        for (int i = 0; i < 20000; i++) {
+            long key = random.nextBoolean() ? random.nextInt(1000) : random.nextLong();
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.removeIfPossible(key);
+            } else {
+                expected.put(key, i);
+                map = map.put(key, Integer.valueOf(i));
+            }
+        }
+        assertThat(map.size()).isEqualTo(expected.size());
+        for (Long key : expected.keySet()) {
+            assertThat(map.getOrElse(key.longValue(), null)).isEqualTo(expected.get(key));
+        }
+        int index = 0;
+        Long[] keys = expected.keySet().toArray(new Long[0]);
+        for (Pair<Long, Integer> pair : map.asKeyValuePairs()) {
+            assertThat(pair.get1()).isEqualTo(keys[index++]);
+        }
+        LongHashMap<Integer> rebuilt = LongHashMap.empty();
+        for (Long key : expected.descendingKeySet()) {
+            rebuilt = rebuilt.put(key, expected.get(key));
+        }
+        assertThat(rebuilt).isEqualTo(map);
+        assertThat(rebuilt.hashCode()).isEqualTo(map.hashCode());
+    }
+
+    @Test
+    public void testEqualsAndHashCode() {
+        LongHashMap<String> m1 = LongHashMap.of(1, "one", 2, "two");
+        LongHashMap<String> m2 = LongHashMap.ofAll(Arrays.asList(Pair.of(2L, "two"), Pair.of(1L, "one")));
+        assertThat(m1).isEqualTo(m2);
+        assertThat(m1.hashCode()).isEqualTo(m2.hashCode());
+        assertThat(m1.hashCode()).isEqualTo(HashMap.of(1L, "one", 2L, "two").hashCode());
+        assertThat(m1).isNotEqualTo(m1.put(2, "zwei"));
+        assertThat(m1).isNotEqualTo(m1.put(3, "three"));
+        assertThat(m1).isNotEqualTo(HashMap.of(1L, "one", 2L, "two"));
+    }
+}
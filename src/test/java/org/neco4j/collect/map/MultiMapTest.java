@@ -0,0 +1,114 @@
+package org.neco4j.collect.map;
+
+import org.junit.Test;
+import org.neco4j.tuple.Pair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MultiMapTest {
+
+    @Test
+    public void empty() {
+        MultiMap<String, Integer> map = MultiMap.empty();
+        assertThat(map.isEmpty()).isTrue();
+        assertThat(map.get("a")).isEmpty();
+        assertThat(map.get("a").size()).isEqualTo(0L);
+        assertThat(map.getOpt("a")).isEmpty();
+        assertThat(map.removeOpt("a")).isEmpty();
+        assertThat(map.removeValue("a", 1)).isSameAs(map);
+    }
+
+    @Test
+    public void addValue() {
+        MultiMap<String, Integer> map = MultiMap.of("a", 1, "b", 2, "a", 3);
+        assertThat(map.size()).isEqualTo(3L);
+        assertThat(map.keys()).containsExactlyInAnyOrder("a", "b");
+        assertThat(map.get("a")).containsExactly(1, 3);
+        assertThat(map.get("b")).containsExactly(2);
+        assertThat(map.getOpt("a")).containsExactly(1);
+        MultiMap<String, Integer> map2 = map.addValue("a", 1);
+        assertThat(map2.get("a")).containsExactly(1, 3, 1);
+        assertThat(map.get("a")).containsExactly(1, 3);
+        assertThat(map2.asKeyValuePairs())
+            .containsExactlyInAnyOrder(Pair.of("a", 1), Pair.of("a", 3), Pair.of("a", 1), Pair.of("b", 2));
+    }
+
+    @Test
+    public void removeValue() {
+        MultiMap<String, Integer> map = MultiMap.of("a", 1, "a", 2, "a", 1);
+        assertThat(map.removeValue("a", 4)).isSameAs(map);
+        assertThat(map.removeValue("b", 1)).isSameAs(map);
+        MultiMap<String, Integer> map2 = map.removeValue("a", 1);
+        assertThat(map2.get("a")).containsExactly(2, 1);
+        assertThat(map2.size()).isEqualTo(2L);
+        MultiMap<String, Integer> map3 = map2.removeValue("a", 2).removeValue("a", 1);
+        assertThat(map3.containsKey("a")).isFalse();
+        assertThat(map3).isEqualTo(MultiMap.empty());
+    }
+
+    @Test
+    public void putOptAndRemoveOpt() {
+        MultiMap<String, Integer> map = MultiMap.of("a", 1, "a", 2, "b", 3);
+        MultiMap<String, Integer> map2 = map.putOpt("a", 4).getOrFail();
+        assertThat(map2.get("a")).containsExactly(4);
+        assertThat(map2.size()).isEqualTo(2L);
+        MultiMap<String, Integer> map3 = map.removeOpt("a").getOrFail();
+        assertThat(map3).isEqualTo(MultiMap.of("b", 3));
+        assertThat(map3.size()).isEqualTo(1L);
+    }
+
+    @Test
+    public void largeGroups() {
+        MultiMap<String, Integer> map = MultiMap.empty();
+        List<Integer> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            map = map.addValue("a", i);
+            expected.add(i);
+        }
+        MultiMap<String, Integer> large = map;
+        assertThat(map.get("a")).containsExactlyElementsOf(expected);
+        assertThat(map.get("a").size()).isEqualTo(1000L);
+        assertThat(map.get("a").contains(999)).isTrue();
+        for (int i = 0; i < 1000; i += 2) {
+            map = map.removeValue("a", i);
+            expected.remove(Integer.valueOf(i));
+        }
+        assertThat(map.get("a")).containsExactlyElementsOf(expected);
+        assertThat(map.size()).isEqualTo(500L);
+        while (!expected.isEmpty()) {
+            map = map.removeValue("a", expected.remove(0));
+            assertThat(map.get("a")).containsExactlyElementsOf(expected);
+            assertThat(map.size()).isEqualTo(expected.size());
+        }
+        assertThat(map.isEmpty()).isTrue();
+        assertThat(large.get("a").size()).isEqualTo(1000L);
+        assertThat(large.get("a").toList()).hasSize(1000);
+    }
+
+    @Test
+    public void ofAll() {
+        MultiMap<String, Integer> map = MultiMap.ofAll(Arrays.asList(
+            Pair.of("a", 1), Pair.of("b", 2), Pair.of("a", 3)));
+        assertThat(map).isEqualTo(MultiMap.of("a", 1, "b", 2, "a", 3));
+        assertThat(map.get("a").stream()).containsExactly(1, 3);
+    }
+
+    @Test
+    public void testHashCodeAndEquals() {
+        MultiMap<String, Integer> map = MultiMap.of("a", 1, "b", 2, "a", 3);
+        assertThat(map).isEqualTo(MultiMap.of("b", 2, "a", 1, "a", 3));
+        assertThat(map.hashCode()).isEqualTo(MultiMap.of("b", 2, "a", 1, "a", 3).hashCode());
+        assertThat(map).isNotEqualTo(MultiMap.of("a", 3, "b", 2, "a", 1));
+        assertThat(map).isNotEqualTo(MultiMap.of("a", 1, "b", 2));
+    }
+
+    @Test
+    public void testToString() {
+        assertThat(MultiMap.of("a", 1, "a", 2).toString()).isEqualTo("MultiMap[a:1, a:2]");
+        assertThat(MultiMap.of("a", 1, "a", 2).get("a").toString()).isEqualTo("Group[1, 2]");
+    }
+}
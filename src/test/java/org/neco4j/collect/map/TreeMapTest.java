@@ -0,0 +1,149 @@
+package org.neco4j.collect.map;
+
+import org.junit.Test;
+import org.neco4j.tuple.Pair;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TreeMapTest {
+
+    @Test
+    public void empty() {
+        TreeMap<String, Integer> map = TreeMap.empty();
+        assertThat(map.isEmpty()).isTrue();
+        assertThat(map.size()).isEqualTo(0L);
+        assertThat(map.getOpt("foo")).isEmpty();
+        assertThat(map.firstOpt()).isEmpty();
+        assertThat(map.lastOpt()).isEmpty();
+        assertThat(map.floorOpt("foo")).isEmpty();
+        assertThat(map.selectOpt(0)).isEmpty();
+        assertThat(map.asKeyValuePairs()).isEmpty();
+        assertThat(map.removeOpt("foo")).isEmpty();
+    }
+
+    @Test
+    public void putAndGet() {
+        TreeMap<String, Integer> map = TreeMap.of("foo", 1, "bar", 2, "baz", 3);
+        assertThat(map.size()).isEqualTo(3L);
+        assertThat(map.getOpt("bar")).containsExactly(2);
+        assertThat(map.getOrElse("quux", 42)).isEqualTo(42);
+        assertThat(map.put("bar", 4).getOrFail("bar")).isEqualTo(4);
+        assertThat(map.put("bar", 2)).isSameAs(map);
+        assertThat(map.addOpt("bar", 5)).isEmpty();
+        assertThat(map.addOpt("quux", 5).getOrFail().size()).isEqualTo(4L);
+        assertThat(map.removeOpt("baz").getOrFail().asKeyValuePairs())
+            .containsExactly(Pair.of("bar", 2), Pair.of("foo", 1));
+        assertThatThrownBy(() -> map.put(null, 1)).isInstanceOf(NullPointerException.class);
+    }
+
+    @Test
+    public void iterationIsSorted() {
+        TreeMap<String, Integer> map = TreeMap.of("foo", 1, "bar", 2, "baz", 3);
+        assertThat(map.asKeyValuePairs()).containsExactly(Pair.of("bar", 2), Pair.of("baz", 3), Pair.of("foo", 1));
+        assertThat(map.stream().map(Pair::get1).collect(Collectors.toList())).containsExactly("bar", "baz", "foo");
+        assertThat(map.toString()).isEqualTo("TreeMap[bar:2, baz:3, foo:1]");
+
+        TreeMap<String, Integer> reversed = TreeMap.<String, Integer>empty(Comparator.reverseOrder())
+                                                .put("foo", 1).put("bar", 2).put("baz", 3);
+        assertThat(reversed.asKeyValuePairs())
+            .containsExactly(Pair.of("foo", 1), Pair.of("baz", 3), Pair.of("bar", 2));
+        assertThat(reversed).isEqualTo(map);
+    }
+
+    @Test
+    public void floorAndCeiling() {
+        TreeMap<Integer, String> map = TreeMap.of(10, "ten", 20, "twenty", 30, "thirty");
+        assertThat(map.floorOpt(20)).containsExactly(Pair.of(20, "twenty"));
+        assertThat(map.floorOpt(25)).containsExactly(Pair.of(20, "twenty"));
+        assertThat(map.floorOpt(5)).isEmpty();
+        assertThat(map.ceilingOpt(25)).containsExactly(Pair.of(30, "thirty"));
+        assertThat(map.ceilingOpt(31)).isEmpty();
+        assertThat(map.firstOpt()).containsExactly(Pair.of(10, "ten"));
+        assertThat(map.lastOpt()).containsExactly(Pair.of(30, "thirty"));
+    }
+
+    @Test
+    public void rankAndSelect() {
+        TreeMap<Integer, String> map = TreeMap.of(10, "ten", 20, "twenty", 30, "thirty");
+        assertThat(map.rank(5)).isEqualTo(0L);
+        assertThat(map.rank(20)).isEqualTo(1L);
+        assertThat(map.rank(25)).isEqualTo(2L);
+        assertThat(map.rank(35)).isEqualTo(3L);
+        assertThat(map.selectOpt(1)).containsExactly(Pair.of(20, "twenty"));
+        assertThat(map.selectOpt(3)).isEmpty();
+        assertThat(map.selectOpt(-1)).isEmpty();
+    }
+
+    @Test
+    public void subMap() {
+        TreeMap<Integer, String> map = TreeMap.of(10, "ten", 20, "twenty", 30, "thirty");
+        TreeMap.SubMap<Integer, String> sub = map.subMap(15, 30);
+        assertThat(sub.size()).isEqualTo(1L);
+        assertThat(sub).containsExactly(Pair.of(20, "twenty"));
+        assertThat(sub.containsKey(20)).isTrue();
+        assertThat(sub.containsKey(30)).isFalse();
+        assertThat(sub.getOpt(10)).isEmpty();
+        assertThat(sub.firstOpt()).containsExactly(Pair.of(20, "twenty"));
+        assertThat(sub.lastOpt()).containsExactly(Pair.of(20, "twenty"));
+        assertThat(sub.toTreeMap()).isEqualTo(TreeMap.of(20, "twenty"));
+        assertThat(map.subMap(10, 31)).containsExactly(Pair.of(10, "ten"), Pair.of(20, "twenty"),
+            Pair.of(30, "thirty"));
+        assertThat(map.subMap(21, 29).isEmpty()).isTrue();
+        assertThat(map.subMap(21, 29).firstOpt()).isEmpty();
+        assertThat(map.subMap(21, 29)).isEmpty();
+        assertThatThrownBy(() -> map.subMap(30, 10)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void randomOperations() {
+        Random random = new Random(42);
+        NavigableMap<Integer, Integer> expected = new java.util.TreeMap<>();
+        TreeMap<Integer, Integer> map = TreeMap.empty();
+        for (int i = 0; i < 20000; i++) {
+            int key = random.nextInt(5000);
+            if (random.nextInt(3) == 0) {
+                expected.remove(key);
+                map = map.removeIfPossible(key);
+            } else {
+                expected.put(key, i);
+                map = map.put(key, i);
+            }
+        }
+        assertThat(map.size()).isEqualTo(expected.size());
+        assertThat(map.asKeyValuePairs()).containsExactlyElementsOf(expected.entrySet().stream()
+            .map(e -> Pair.of(e.getKey(), e.getValue())).collect(Collectors.toList()));
+        for (int i = 0; i < 1000; i++) {
+            int key = random.nextInt(5200) - 100;
+            assertThat(map.floorOpt(key).map(Pair::get1).getOrElse(null)).isEqualTo(expected.floorKey(key));
+            assertThat(map.ceilingOpt(key).map(Pair::get1).getOrElse(null)).isEqualTo(expected.ceilingKey(key));
+            assertThat(map.rank(key)).isEqualTo(expected.headMap(key).size());
+            int to = key + random.nextInt(500);
+            assertThat(map.subMap(key, to).size()).isEqualTo(expected.subMap(key, to).size());
+            assertThat(map.subMap(key, to)).containsExactlyElementsOf(expected.subMap(key, to).entrySet().stream()
+                .map(e -> Pair.of(e.getKey(), e.getValue())).collect(Collectors.toList()));
+        }
+        Integer[] keys = expected.keySet().toArray(new Integer[0]);
+        for (int i = 0; i < keys.length; i += 7) {
+            assertThat(map.selectOpt(i).getOrFail().get1()).isEqualTo(keys[i]);
+        }
+    }
+
+    @Test
+    public void testEqualsAndHashCode() {
+        TreeMap<String, Integer> m1 = TreeMap.of("foo", 1, "bar", 2);
+        TreeMap<String, Integer> m2 = TreeMap.ofAll(Arrays.asList(Pair.of("bar", 2), Pair.of("foo", 1)));
+        assertThat(m1).isEqualTo(m2);
+        assertThat(m1.hashCode()).isEqualTo(m2.hashCode());
+        assertThat(m1.hashCode()).isEqualTo(HashMap.of("foo", 1, "bar", 2).hashCode());
+        assertThat(m1).isNotEqualTo(m1.put("bar", 3));
+        assertThat(m1).isNotEqualTo(m1.put("baz", 3));
+        assertThat(m1).isNotEqualTo(TreeMap.of(1, 2));
+    }
+}
@@ -249,4 +249,12 @@ public class MultiSetTest {
         assertThat(MultiSet.of("foo", 42, "bar", 23).toString())
             .isIn("MultiSet[foo:42, bar:23]", "MultiSet[bar:23, foo:42]");
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testParallelStream() {
+        MultiSet<Integer> ms = MultiSet.ofAll(Arrays.asList(1, 2, 2, 3, 3, 3));
+        assertThat(ms.parallelStream().mapToInt(Pair::get2).sum()).isEqualTo(6);
+        assertThat(ms.parallelStream().count()).isEqualTo(3L);
+        assertThat(ms.stream().map(Pair::get1)).containsExactlyInAnyOrder(1, 2, 3);
+    }
+}
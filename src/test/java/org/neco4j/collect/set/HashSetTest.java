@@ -2,6 +2,11 @@ package org.neco4j.collect.set;
 
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Spliterator;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class HashSetTest {
@@ -47,6 +52,23 @@ public class HashSetTest {
         assertThat(HashSet.of("foo", "bar", "baz", "bar", "foo").size()).isEqualTo(3);
     }
 
+    @Test
+    public void sequentialKeys() {
+        HashSet<Integer> set = HashSet.empty();
+        for (int i = 0; i < 100_000; i++) {
+            set = set.put(i);
+        }
+        assertThat(set.size()).isEqualTo(100_000L);
+        assertThat(set.contains(99_999)).isTrue();
+        assertThat(set.contains(100_000)).isFalse();
+        for (int i = 0; i < 100_000; i += 2) {
+            set = set.removeIfPossible(i);
+        }
+        assertThat(set.size()).isEqualTo(50_000L);
+        assertThat(set.contains(2)).isFalse();
+        assertThat(set.contains(3)).isTrue();
+    }
+
     @Test
     public void testToString() {
         assertThat(HashSet.empty().toString()).isEqualTo("HashSet[]");
@@ -87,4 +109,139 @@ public class HashSetTest {
 
         assertThat(h3).isNotEqualTo(h4);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testParallelStream() {
+        HashSet<Integer> set = HashSet.empty();
+        for (int i = 0; i < 1000; i++) {
+            set = set.put((i * 37) % 1000);
+        }
+        assertThat(set.parallelStream().mapToLong(i -> i).sum()).isEqualTo(999L * 1000 / 2);
+        assertThat(set.parallelStream().distinct().count()).isEqualTo(1000L);
+        // the spliterator is the one of the underlying map, see HashMapTest
+        Spliterator<Integer> spliterator = set.spliterator();
+        assertThat(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED)).isTrue();
+        Spliterator<Integer> split = spliterator.trySplit();
+        assertThat(split.estimateSize() + spliterator.estimateSize()).isEqualTo(1000L);
+        assertThat(HashSet.empty().parallelStream().count()).isEqualTo(0L);
+    }
+
+    @Test
+    public void testHashCodeOfElements() {
+        assertThat(HashSet.empty().hashCode()).isEqualTo(0);
+        HashSet<String> set = HashSet.of("foo", "bar", "baz");
+        assertThat(set.hashCode()).isEqualTo("foo".hashCode() + "bar".hashCode() + "baz".hashCode());
+        assertThat(set.removeIfPossible("bar").hashCode()).isEqualTo("foo".hashCode() + "baz".hashCode());
+        assertThat(HashSet.of("baz", "foo", "bar")).isEqualTo(set);
+    }
+
+    @Test
+    public void intern() {
+        HashSet<String> set = HashSet.of("foo", "bar", "baz");
+        HashSet<String> interned = set.intern();
+        assertThat(interned).isEqualTo(set);
+        assertThat(interned.intern()).isSameAs(interned);
+        assertThat(HashSet.of("foo", "bar", "baz").intern()).isEqualTo(interned);
+        assertThat(interned.put("quux").intern()).containsOnly("foo", "bar", "baz", "quux");
+        assertThat(HashSet.empty().intern()).isEmpty();
+    }
+
+    @Test
+    public void setAlgebra() {
+        HashSet<String> set = HashSet.of("foo", "bar", "baz");
+        HashSet<String> other = HashSet.of("bar", "quux");
+        assertThat(set.union(other)).containsOnly("foo", "bar", "baz", "quux");
+        assertThat(set.intersect(other)).containsOnly("bar");
+        assertThat(set.difference(other)).containsOnly("foo", "baz");
+        assertThat(other.difference(set)).containsOnly("quux");
+        assertThat(set.union(set)).isSameAs(set);
+        assertThat(set.intersect(set)).isSameAs(set);
+        assertThat(set.difference(set)).isEmpty();
+        assertThat(set.union(HashSet.empty())).isSameAs(set);
+        assertThat(set.intersect(HashSet.empty())).isEmpty();
+        assertThat(set.difference(HashSet.empty())).isSameAs(set);
+    }
+
+    @Test
+    public void isSubsetOf() {
+        HashSet<String> set = HashSet.of("foo", "bar", "baz");
+        assertThat(HashSet.<String>empty().isSubsetOf(set)).isTrue();
+        assertThat(set.isSubsetOf(set)).isTrue();
+        assertThat(HashSet.of("foo", "baz").isSubsetOf(set)).isTrue();
+        assertThat(HashSet.of("foo", "quux").isSubsetOf(set)).isFalse();
+        assertThat(set.isSubsetOf(HashSet.of("foo", "baz"))).isFalse();
+        assertThat(set.isSubsetOf(HashSet.empty())).isFalse();
+    }
+
+    @Test
+    public void setAlgebraOfLargeSets() {
+        java.util.Set<Integer> expectedUnion = new java.util.HashSet<>();
+        java.util.Set<Integer> expectedIntersection = new java.util.HashSet<>();
+        java.util.Set<Integer> expectedDifference = new java.util.HashSet<>();
+        HashSet<Integer> set = HashSet.empty();
+        HashSet<Integer> other = HashSet.empty();
+        for (int i = 0; i < 100_000; i++) {
+            if (i % 2 == 0) {
+                set = set.put(i);
+            }
+            if (i % 3 == 0) {
+                other = other.put(i);
+            }
+            if (i % 2 == 0 || i % 3 == 0) {
+                expectedUnion.add(i);
+            }
+            if (i % 6 == 0) {
+                expectedIntersection.add(i);
+            }
+            if (i % 2 == 0 && i % 3 != 0) {
+                expectedDifference.add(i);
+            }
+        }
+        HashSet<Integer> union = set.union(other);
+        HashSet<Integer> intersection = set.intersect(other);
+        HashSet<Integer> difference = set.difference(other);
+        assertThat(union).isEqualTo(HashSet.from(expectedUnion));
+        assertThat(intersection).isEqualTo(HashSet.from(expectedIntersection));
+        assertThat(difference).isEqualTo(HashSet.from(expectedDifference));
+        assertThat(union.size()).isEqualTo(expectedUnion.size());
+        assertThat(intersection.hashCode()).isEqualTo(expectedIntersection.hashCode());
+        assertThat(intersection.isSubsetOf(set)).isTrue();
+        assertThat(intersection.isSubsetOf(other)).isTrue();
+        assertThat(set.isSubsetOf(union)).isTrue();
+        assertThat(union.isSubsetOf(set)).isFalse();
+        assertThat(difference.isSubsetOf(other)).isFalse();
+        assertThat(set.put(7).isSubsetOf(union)).isFalse();
+    }
+
+    @Test
+    public void forEach() {
+        HashSet<String> set = HashSet.empty();
+        List<String> expected = new ArrayList<>();
+        List<String> keys = Arrays.asList("");
+        for (int i = 0; i < 4; i++) {
+            List<String> next = new ArrayList<>();
+            for (String key : keys) {
+                next.add(key + "Aa");
+                next.add(key + "BB");
+            }
+            keys = next;
+        }
+        for (String key : keys) {
+            set = set.put(key);
+            expected.add(key);
+        }
+        for (int i = 0; i < 1000; i++) {
+            set = set.put("key" + i);
+            expected.add("key" + i);
+        }
+        List<String> visited = new ArrayList<>();
+        set.forEach(visited::add);
+        assertThat(visited).containsExactlyInAnyOrderElementsOf(expected);
+        List<String> iterated = new ArrayList<>();
+        set.iterator().forEachRemaining(iterated::add);
+        assertThat(visited).containsExactlyElementsOf(iterated);
+        HashSet.empty().forEach(k -> {
+            throw new AssertionError();
+        });
+    }
+}
@@ -0,0 +1,191 @@
+package org.neco4j.collect.set;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class IntSetTest {
+
+    @Test
+    public void empty() {
+        IntSet set = IntSet.empty();
+        assertThat(set.isEmpty()).isTrue();
+        assertThat(set.size()).isEqualTo(0L);
+        assertThat(set.contains(0)).isFalse();
+        assertThat(set.removeOpt(0)).isEmpty();
+        assertThat(set.iterator().hasNext()).isFalse();
+        assertThat(set.toString()).isEqualTo("IntSet[]");
+    }
+
+    @Test
+    public void putAndContains() {
+        IntSet set = IntSet.of(1, 64, 2047, 2048, 1_000_000, Integer.MAX_VALUE);
+        assertThat(set.size()).isEqualTo(6L);
+        for (int value : new int[]{1, 64, 2047, 2048, 1_000_000, Integer.MAX_VALUE}) {
+            assertThat(set.contains(value)).isTrue();
+            assertThat(set.put(value)).isSameAs(set);
+            assertThat(set.addOpt(value)).isEmpty();
+        }
+        assertThat(set.contains(0)).isFalse();
+        assertThat(set.contains(63)).isFalse();
+        assertThat(set.contains(-1)).isFalse();
+        assertThat(set.contains(Integer.valueOf(64))).isTrue();
+        assertThat(set.addOpt(3).getOrFail().size()).isEqualTo(7L);
+        assertThat(set.size()).isEqualTo(6L);
+    }
+
+    @Test
+    public void negativeValues() {
+        IntSet set = IntSet.of(-1, 5, Integer.MIN_VALUE, 0);
+        assertThat(set.contains(-1)).isTrue();
+        assertThat(set.contains(Integer.MIN_VALUE)).isTrue();
+        assertThat(set.contains(-2)).isFalse();
+        assertThat(set).containsExactly(0, 5, Integer.MIN_VALUE, -1);
+        assertThat(set.removeOpt(-1).getOrFail()).isEqualTo(IntSet.of(0, 5, Integer.MIN_VALUE));
+    }
+
+    @Test
+    public void removeRestoresShape() {
+        IntSet small = IntSet.of(1, 2, 3);
+        IntSet set = small.put(1 << 20).put(-7);
+        assertThat(set.removeOpt(1 << 20).getOrFail().removeOpt(-7).getOrFail()).isEqualTo(small);
+        assertThat(set.removeOpt(4)).isEmpty();
+        IntSet removed = set;
+        for (int value : set) {
+            removed = removed.removeOpt(value).getOrFail();
+        }
+        assertThat(removed).isEqualTo(IntSet.empty());
+        assertThat(removed.isEmpty()).isTrue();
+    }
+
+    @Test
+    public void randomValues() {
+        Random random = new Random(4711);
+        TreeSet<Integer> expected = new TreeSet<>(Integer::compareUnsigned);
+        IntSet set = IntSet.empty();
+        for (int i = 0; i < 20_000; i++) {
+            int value = i % 3 == 0 ? random.nextInt() : random.nextInt(50_000);
+            if (random.nextInt(4) == 0) {
+                assertThat(set.removeOpt(value).isEmpty()).isEqualTo(!expected.remove(value));
+                set = set.removeOpt(value).getOrElse(set);
+            } else {
+                assertThat(set.addOpt(value).isEmpty()).isEqualTo(!expected.add(value));
+                set = set.put(value);
+            }
+        }
+        assertThat(set.size()).isEqualTo(expected.size());
+        assertThat(set).containsExactlyElementsOf(expected);
+        assertThat(set.intStream().boxed()).containsExactlyElementsOf(expected);
+        List<Integer> visited = new ArrayList<>();
+        set.forEachInt(visited::add);
+        assertThat(visited).containsExactlyElementsOf(expected);
+        assertThat(set).isEqualTo(IntSet.from(expected));
+        assertThat(set.hashCode()).isEqualTo(expected.hashCode());
+    }
+
+    @Test
+    public void setAlgebra() {
+        IntSet a = IntSet.of(1, 2, 3, 100, 5000, -1);
+        IntSet b = IntSet.of(2, 3, 4, 5000, 1 << 24);
+        assertThat(a.union(b)).containsExactly(1, 2, 3, 4, 100, 5000, 1 << 24, -1);
+        assertThat(a.intersect(b)).containsExactly(2, 3, 5000);
+        assertThat(a.difference(b)).containsExactly(1, 100, -1);
+        assertThat(b.difference(a)).containsExactly(4, 1 << 24);
+        assertThat(a.intersect(b)).isEqualTo(IntSet.of(2, 3, 5000));
+        assertThat(b.difference(a).size()).isEqualTo(2L);
+        assertThat(a.union(IntSet.empty())).isSameAs(a);
+        assertThat(IntSet.empty().union(a)).isSameAs(a);
+        assertThat(a.union(a.intersect(b))).isSameAs(a);
+        assertThat(a.intersect(IntSet.empty())).isEqualTo(IntSet.empty());
+        assertThat(a.difference(a)).isEqualTo(IntSet.empty());
+        assertThat(a.difference(IntSet.of(-1, 100, 5000)).difference(IntSet.of(1, 2, 3)).isEmpty()).isTrue();
+    }
+
+    @Test
+    public void differenceOfSameShape() {
+        // the result has the same bitmap and size as the right operand, but none of its values
+        assertThat(IntSet.of(0, 1, 2).difference(IntSet.of(2, 3))).containsExactly(0, 1);
+        assertThat(IntSet.of(0, 1, 2, 1 << 20).difference(IntSet.of(2, 3, 1 << 20)))
+            .isEqualTo(IntSet.of(0, 1));
+        assertThat(IntSet.of(0, 1, 5000, 5001).difference(IntSet.of(1, 2, 5001, 5002)))
+            .containsExactly(0, 5000);
+    }
+
+    @Test
+    public void setAlgebraOfRandomSets() {
+        Random random = new Random(42);
+        for (int round = 0; round < 50; round++) {
+            int bound = round % 2 == 0 ? 5000 : Integer.MAX_VALUE;
+            TreeSet<Integer> left = new TreeSet<>(Integer::compareUnsigned);
+            TreeSet<Integer> right = new TreeSet<>(Integer::compareUnsigned);
+            for (int i = 0; i < 500; i++) {
+                left.add(random.nextInt(bound));
+                right.add(random.nextInt(bound / (1 + round % 3)));
+            }
+            IntSet a = IntSet.from(left);
+            IntSet b = IntSet.from(right);
+            TreeSet<Integer> union = new TreeSet<>(left);
+            union.addAll(right);
+            TreeSet<Integer> intersection = new TreeSet<>(left);
+            intersection.retainAll(right);
+            TreeSet<Integer> difference = new TreeSet<>(left);
+            difference.removeAll(right);
+            assertThat(a.union(b)).containsExactlyElementsOf(union).isEqualTo(IntSet.from(union));
+            assertThat(a.intersect(b)).containsExactlyElementsOf(intersection).isEqualTo(IntSet.from(intersection));
+            assertThat(a.difference(b)).containsExactlyElementsOf(difference).isEqualTo(IntSet.from(difference));
+            assertThat(a.union(b).size()).isEqualTo(union.size());
+            assertThat(a.intersect(b).size()).isEqualTo(intersection.size());
+            assertThat(a.difference(b).size()).isEqualTo(difference.size());
+            assertThat(a.isSubsetOf(b)).isEqualTo(right.containsAll(left));
+            assertThat(a.intersect(b).isSubsetOf(b)).isTrue();
+            assertThat(a.isSubsetOf(a.union(b))).isTrue();
+        }
+    }
+
+    @Test
+    public void isSubsetOf() {
+        IntSet set = IntSet.of(1, 2, 3, 1 << 20);
+        assertThat(IntSet.empty().isSubsetOf(set)).isTrue();
+        assertThat(set.isSubsetOf(IntSet.empty())).isFalse();
+        assertThat(IntSet.of(2, 3).isSubsetOf(set)).isTrue();
+        assertThat(IntSet.of(2, 4).isSubsetOf(set)).isFalse();
+        assertThat(set.isSubsetOf(IntSet.of(2, 3))).isFalse();
+        assertThat(IntSet.of(1 << 20).isSubsetOf(set)).isTrue();
+        assertThat(IntSet.of(1 << 21).isSubsetOf(set)).isFalse();
+        assertThat(set.isSubsetOf(set.put(-1))).isTrue();
+    }
+
+    @Test
+    public void denseRange() {
+        IntSet set = IntSet.empty();
+        for (int i = 0; i < 100_000; i++) {
+            set = set.put(i);
+        }
+        assertThat(set.size()).isEqualTo(100_000L);
+        assertThat(set.contains(99_999)).isTrue();
+        assertThat(set.contains(100_000)).isFalse();
+        assertThat(set.intStream().asLongStream().sum()).isEqualTo(99_999L * 100_000 / 2);
+        assertThat(set.spliterator().getExactSizeIfKnown()).isEqualTo(100_000L);
+    }
+
+    @Test
+    public void testHashCodeAndEquals() {
+        IntSet set = IntSet.of(3, 1, 2);
+        assertThat(set).isEqualTo(IntSet.from(Arrays.asList(1, 2, 3)));
+        assertThat(set.hashCode()).isEqualTo(HashSet.of(1, 2, 3).hashCode());
+        assertThat(set).isNotEqualTo(IntSet.of(1, 2));
+        assertThat(set).isNotEqualTo(IntSet.of(1, 2, 3, 1 << 30));
+        assertThat(set).isNotEqualTo(HashSet.of(1, 2, 3));
+    }
+
+    @Test
+    public void testToString() {
+        assertThat(IntSet.of(3, 1, 2).toString()).isEqualTo("IntSet[1, 2, 3]");
+    }
+}
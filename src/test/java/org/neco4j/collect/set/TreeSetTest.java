@@ -0,0 +1,77 @@
+package org.neco4j.collect.set;
+
+import org.junit.Test;
+
+import java.util.Comparator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TreeSetTest {
+
+    @Test
+    public void empty() {
+        TreeSet<String> set = TreeSet.empty();
+        assertThat(set.isEmpty()).isTrue();
+        assertThat(set.contains("foo")).isFalse();
+        assertThat(set.firstOpt()).isEmpty();
+        assertThat(set).isEmpty();
+    }
+
+    @Test
+    public void addAndRemove() {
+        TreeSet<String> set = TreeSet.of("foo", "bar", "baz");
+        assertThat(set.size()).isEqualTo(3L);
+        assertThat(set.contains("bar")).isTrue();
+        assertThat(set.addOpt("bar")).isEmpty();
+        assertThat(set.put("bar")).isSameAs(set);
+        assertThat(set.addOpt("quux").getOrFail()).containsExactly("bar", "baz", "foo", "quux");
+        assertThat(set.removeOpt("baz").getOrFail()).containsExactly("bar", "foo");
+        assertThat(set.removeOpt("quux")).isEmpty();
+        assertThat(set.toString()).isEqualTo("TreeSet[bar, baz, foo]");
+    }
+
+    @Test
+    public void orderedQueries() {
+        TreeSet<Integer> set = TreeSet.of(30, 10, 20);
+        assertThat(set).containsExactly(10, 20, 30);
+        assertThat(set.stream()).containsExactly(10, 20, 30);
+        assertThat(set.firstOpt()).containsExactly(10);
+        assertThat(set.lastOpt()).containsExactly(30);
+        assertThat(set.floorOpt(25)).containsExactly(20);
+        assertThat(set.ceilingOpt(25)).containsExactly(30);
+        assertThat(set.ceilingOpt(31)).isEmpty();
+        assertThat(set.rank(25)).isEqualTo(2L);
+        assertThat(set.selectOpt(0)).containsExactly(10);
+
+        TreeSet.SubSet<Integer> sub = set.subSet(10, 30);
+        assertThat(sub.size()).isEqualTo(2L);
+        assertThat(sub).containsExactly(10, 20);
+        assertThat(sub.contains(30)).isFalse();
+        assertThat(sub.lastOpt()).containsExactly(20);
+        assertThat(sub.toTreeSet()).isEqualTo(TreeSet.of(10, 20));
+
+        TreeSet<Integer> reversed = TreeSet.<Integer>empty(Comparator.reverseOrder()).put(10).put(30).put(20);
+        assertThat(reversed).containsExactly(30, 20, 10);
+        assertThat(reversed).isEqualTo(set);
+    }
+
+    @Test
+    public void streamWithCustomComparator() {
+        TreeSet<Integer> set = TreeSet.<Integer>empty(Comparator.reverseOrder()).put(1).put(2).put(3);
+        assertThat(set.stream()).containsExactly(3, 2, 1);
+        assertThat(set.stream().sorted()).containsExactly(1, 2, 3);
+        assertThat(set.subSet(3, 1).stream().sorted()).containsExactly(2, 3);
+        assertThat(TreeSet.of(3, 1, 2).spliterator().getComparator()).isNull();
+    }
+
+    @Test
+    public void testEqualsAndHashCode() {
+        TreeSet<String> s1 = TreeSet.of("foo", "bar");
+        TreeSet<String> s2 = TreeSet.of("bar", "foo");
+        assertThat(s1).isEqualTo(s2);
+        assertThat(s1.hashCode()).isEqualTo(s2.hashCode());
+        assertThat(s1.hashCode()).isEqualTo(HashSet.of("foo", "bar").hashCode());
+        assertThat(s1).isNotEqualTo(s1.put("baz"));
+        assertThat(s1).isNotEqualTo(TreeSet.of(1, 2));
+    }
+}